@@ -22,6 +22,7 @@ import bio.overture.score.client.cli.Terminal;
 import bio.overture.score.client.command.ClientCommand;
 import bio.overture.score.client.exception.BadManifestException;
 import bio.overture.score.client.metadata.EntityNotFoundException;
+import bio.overture.score.client.transport.TransferRecording;
 import com.beust.jcommander.*;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +34,7 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -72,6 +74,9 @@ public class ClientMain implements CommandLineRunner {
   @Getter
   @Parameter(names = "--silent", description = "Do not produce any informational messages", required = false, help = true)
   private boolean silent = false;
+  @Getter
+  @Parameter(names = "--profile-transfer", description = "Record part transfers with Java Flight Recorder, written to score-client-<timestamp>.jfr in the working directory on exit", required = false, help = true)
+  private boolean profileTransfer = false;
   @Parameter(names = "--version", description = "Show version information", required = false, help = true)
   private boolean version = false;
   @Parameter(names = "--help", description = "Show help information", required = false, help = true)
@@ -219,6 +224,11 @@ public class ClientMain implements CommandLineRunner {
       out.close();
     }
 
+    if (options.isProfileTransfer()) {
+      val recording = TransferRecording.start(new File(System.getProperty("user.dir")));
+      err.println("Recording transfers to " + recording.getAbsolutePath());
+    }
+
     // Pass to spring
     System.setProperty("client.silent", Boolean.toString(options.isSilent()));
     System.setProperty("client.quiet", Boolean.toString(options.isQuiet()));
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.cache;
+
+import bio.overture.score.client.config.CacheProperties;
+import bio.overture.score.core.util.MD5s;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * On-disk cache of fixed-size blocks of BAM/CRAM objects, keyed by object id, MD5 and file offset.
+ * <p>
+ * Like the {@link IndexCache}, blocks are immutable files published with an atomic rename, so concurrent clients on the
+ * same host never see partial content, and a block deleted by another client's eviction is simply a miss. The
+ * last-modified time is refreshed whenever a block is read from disk and the least recently used blocks are evicted
+ * once the total size exceeds {@code cache.block.maxSize}. Eviction runs after every tenth of that size has been added
+ * to the cache.
+ * <p>
+ * The last few blocks read of each object are also kept in memory, so that the many small sequential reads of a
+ * decoder only read each block from disk once.
+ */
+@Slf4j
+@Component
+public class BlockCache {
+
+  private static final String DIR_NAME = "block";
+  private static final String SUFFIX = ".blk";
+
+  /**
+   * Blocks of each object kept in memory, enough for a few concurrent readers to each read sequentially.
+   */
+  private static final int RECENT_BLOCKS = 8;
+
+  /**
+   * Fetches {@code length} bytes of an object starting at {@code start}, fewer at the end of the object.
+   */
+  public interface BlockLoader {
+
+    byte[] load(long start, int length) throws IOException;
+
+  }
+
+  /**
+   * Configuration.
+   */
+  @Autowired
+  private CacheProperties properties;
+
+  /**
+   * State.
+   */
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong added = new AtomicLong();
+
+  public boolean isEnabled() {
+    return properties.getBlock().isEnabled() && properties.getDir() != null;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the blocks of {@code objectId}, loaded with {@code loader} on a miss.
+   */
+  public ObjectBlocks forObject(@NonNull String objectId, @NonNull String md5, @NonNull BlockLoader loader) {
+    val hexMd5 = MD5s.isBase64(md5) ? MD5s.toHex(md5) : md5;
+    return new ObjectBlocks(objectId + "." + hexMd5.toLowerCase(), properties.getBlock().getBlockSize(), loader);
+  }
+
+  @RequiredArgsConstructor
+  public class ObjectBlocks {
+
+    private final String prefix;
+    @Getter
+    private final int blockSize;
+    private final BlockLoader loader;
+    private final Cache<Long, byte[]> recent = CacheBuilder.newBuilder().maximumSize(RECENT_BLOCKS).build();
+
+    /**
+     * Copies the bytes starting at {@code position}, up to the end of the block that holds it.
+     * 
+     * @return the number of bytes copied, {@code -1} at the end of the object
+     */
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+      val start = position - position % blockSize;
+      val block = get(start);
+      val available = start + block.length - position;
+      if (available <= 0) {
+        return -1;
+      }
+
+      val count = (int) Math.min(length, available);
+      System.arraycopy(block, (int) (position - start), buffer, offset, count);
+      return count;
+    }
+
+    /**
+     * Returns a range of the object, typically for prefetching. Blocks that are not cached are fetched with one request
+     * per run of consecutive missing blocks, rather than one per block, and added to the cache.
+     *
+     * @return the {@code length} bytes starting at {@code start}, fewer at the end of the object
+     */
+    public byte[] getRange(long start, int length) throws IOException {
+      val dir = getDir();
+      val firstBlock = start - start % blockSize;
+      val blocks = Lists.<byte[]> newArrayList();
+      long runStart = -1;
+      for (long blockStart = firstBlock; blockStart < start + length; blockStart += blockSize) {
+        val block = getCached(dir, blockStart, false);
+        if (block != null) {
+          if (runStart >= 0) {
+            blocks.addAll(load(dir, runStart, blockStart));
+            runStart = -1;
+          }
+          blocks.add(block);
+        } else if (runStart < 0) {
+          runStart = blockStart;
+        }
+      }
+      if (runStart >= 0) {
+        blocks.addAll(load(dir, runStart, start + length));
+      }
+
+      // Copy out the requested range, which may start and end within blocks
+      val range = new byte[length];
+      int copied = 0;
+      long blockStart = firstBlock;
+      for (val block : blocks) {
+        val from = (int) Math.max(0, start + copied - blockStart);
+        val count = Math.min(length - copied, block.length - from);
+        if (count <= 0) {
+          break;
+        }
+        System.arraycopy(block, from, range, copied, count);
+        copied += count;
+        if (block.length < blockSize) {
+          // End of the object
+          break;
+        }
+        blockStart += blockSize;
+      }
+      return copied == length ? range : Arrays.copyOf(range, copied);
+    }
+
+    private byte[] get(long start) throws IOException {
+      val dir = getDir();
+      val block = getCached(dir, start, true);
+      if (block != null) {
+        return block;
+      }
+
+      val loaded = load(dir, start, start + blockSize).get(0);
+      if (loaded.length > 0) {
+        recent.put(start, loaded);
+      }
+      return loaded;
+    }
+
+    /**
+     * @return the cached block at {@code start}, or {@code null} if it isn't cached
+     */
+    private byte[] getCached(File dir, long start, boolean remember) throws IOException {
+      val inMemory = recent.getIfPresent(start);
+      if (inMemory != null) {
+        hits.incrementAndGet();
+        return inMemory;
+      }
+
+      val file = getFile(dir, start);
+      try {
+        val block = Files.readAllBytes(file.toPath());
+        file.setLastModified(System.currentTimeMillis());
+        hits.incrementAndGet();
+        if (remember) {
+          recent.put(start, block);
+        }
+        return block;
+      } catch (NoSuchFileException e) {
+        // Not cached, or evicted by another client since
+        return null;
+      }
+    }
+
+    /**
+     * Fetches the blocks from {@code start} up to the one holding {@code end - 1} in one request and caches them.
+     *
+     * @return the blocks, the last one short at the end of the object
+     */
+    private List<byte[]> load(File dir, long start, long end) throws IOException {
+      val blockCount = (int) ((end - start + blockSize - 1) / blockSize);
+      val data = loader.load(start, blockCount * blockSize);
+
+      val blocks = Lists.<byte[]> newArrayList();
+      int offset = 0;
+      do {
+        val block = Arrays.copyOfRange(data, offset, Math.min(data.length, offset + blockSize));
+        misses.incrementAndGet();
+        if (block.length > 0) {
+          // A read at or past the end of the object returns nothing, which is not worth caching
+          put(dir, getFile(dir, start + offset), block);
+        }
+        blocks.add(block);
+        offset += blockSize;
+      } while (offset < data.length);
+      return blocks;
+    }
+
+    private File getFile(File dir, long start) {
+      return new File(dir, prefix + "." + start + "." + blockSize + SUFFIX);
+    }
+
+  }
+
+  private void put(File dir, File file, byte[] block) throws IOException {
+    val temp = File.createTempFile(file.getName() + ".", ".tmp", dir);
+    try {
+      Files.write(temp.toPath(), block);
+      Files.move(temp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      temp.delete();
+    }
+
+    val maxSize = properties.getBlock().getMaxSize();
+    if (added.addAndGet(block.length) >= maxSize / 10) {
+      added.set(0);
+      evict(dir, maxSize);
+    }
+  }
+
+  private File getDir() throws IOException {
+    val dir = new File(properties.getDir(), DIR_NAME);
+    if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+      throw new IOException("Could not create block cache directory " + dir);
+    }
+
+    return dir;
+  }
+
+  /**
+   * Deletes the least recently used blocks until the cache fits in {@code maxSize}. Files being deleted concurrently by
+   * another client are skipped.
+   */
+  private synchronized void evict(File dir, long maxSize) {
+    val files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+    if (files == null) {
+      return;
+    }
+
+    // Snapshot the times, since hits from other threads and clients update them while sorting
+    val lastModified = Arrays.stream(files).mapToLong(File::lastModified).toArray();
+    val order = new Integer[files.length];
+    Arrays.setAll(order, i -> i);
+    Arrays.sort(order, Comparator.<Integer> comparingLong(i -> lastModified[i]).reversed());
+
+    long total = 0;
+    int evicted = 0;
+    for (val i : order) {
+      val file = files[i];
+      total += file.length();
+      if (total > maxSize) {
+        total -= file.length();
+        if (file.delete()) {
+          evicted++;
+        }
+      }
+    }
+    log.debug("Evicted {} cached blocks from {}", evicted, dir);
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.cache;
+
+import bio.overture.score.client.config.CacheProperties;
+import bio.overture.score.core.util.MD5s;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Content-addressed cache of BAM/CRAM index files, keyed by object id and MD5.
+ * <p>
+ * Entries are immutable files that are published with an atomic rename, so concurrent clients on the same host never
+ * see partial content. The last-modified time is refreshed on every hit and the least recently used entries are evicted
+ * once the total size exceeds {@code cache.index.maxSize}.
+ */
+@Slf4j
+@Component
+public class IndexCache {
+
+  private static final String DIR_NAME = "index";
+  private static final String SUFFIX = ".idx";
+
+  /**
+   * Configuration.
+   */
+  @Autowired
+  private CacheProperties properties;
+
+  public boolean isEnabled() {
+    return properties.getIndex().isEnabled() && properties.getDir() != null;
+  }
+
+  /**
+   * Returns the cached index file of {@code objectId}, downloading it from {@code url} on a miss.
+   */
+  @SneakyThrows
+  public File get(@NonNull String objectId, @NonNull String md5, @NonNull URL url) {
+    val dir = getDir();
+    val file = new File(dir, getFileName(objectId, md5));
+    if (file.exists()) {
+      log.info("Using cached index for {}", objectId);
+      file.setLastModified(System.currentTimeMillis());
+      return file;
+    }
+
+    log.info("Caching index for {}", objectId);
+    val temp = File.createTempFile(objectId + ".", ".tmp", dir);
+    try {
+      download(url, temp, md5);
+      Files.move(temp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      temp.delete();
+    }
+
+    evict(dir, file);
+    return file;
+  }
+
+  private File getDir() throws IOException {
+    val dir = new File(properties.getDir(), DIR_NAME);
+    if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+      throw new IOException("Could not create index cache directory " + dir);
+    }
+
+    return dir;
+  }
+
+  private static String getFileName(String objectId, String md5) {
+    val hexMd5 = MD5s.isBase64(md5) ? MD5s.toHex(md5) : md5;
+    return objectId + "." + hexMd5.toLowerCase() + SUFFIX;
+  }
+
+  @SneakyThrows
+  private static void download(URL url, File file, String md5) {
+    val digest = MessageDigest.getInstance("MD5");
+    try (val inputStream = url.openStream();
+        val outputStream = new DigestOutputStream(new FileOutputStream(file), digest)) {
+      ByteStreams.copy(inputStream, outputStream);
+    }
+
+    val actual = BaseEncoding.base16().lowerCase().encode(digest.digest());
+    if (!MD5s.isEqual(actual, md5)) {
+      throw new IOException(String.format("MD5 of downloaded index was %s but was expecting %s", actual, md5));
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache fits in its maximum size. Files being deleted concurrently by
+   * another client are skipped.
+   */
+  private void evict(File dir, File keep) {
+    val files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+    if (files == null) {
+      return;
+    }
+
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    long total = 0;
+    for (val file : files) {
+      total += file.length();
+      if (total > properties.getIndex().getMaxSize() && !file.equals(keep)) {
+        log.debug("Evicting cached index {}", file);
+        total -= file.length();
+        file.delete();
+      }
+    }
+  }
+
+}
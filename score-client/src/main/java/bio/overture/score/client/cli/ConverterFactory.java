@@ -53,6 +53,14 @@ public class ConverterFactory implements IStringConverterFactory {
 
   }
 
+  public static class StatsFormatConverter extends EnumConverter<ViewCommand.StatsFormat> {
+
+    public StatsFormatConverter(String optionName) {
+      super(ViewCommand.StatsFormat.class, optionName);
+    }
+
+  }
+
   public static class OutputFormatConverter extends EnumConverter<ViewCommand.OutputFormat> {
 
     public OutputFormatConverter(String optionName) {
@@ -8,4 +8,7 @@ import java.net.URL;
 public class PresignedUrls {
   URL file;
   URL index;
+  String indexObjectId;
+  String indexMd5;
+  String fileMd5;
 }
@@ -17,8 +17,12 @@
  */
 package bio.overture.score.client.command;
 
+import bio.overture.score.client.cache.BlockCache;
+import bio.overture.score.client.cache.BlockCache.ObjectBlocks;
+import bio.overture.score.client.cache.IndexCache;
 import bio.overture.score.client.cli.ConverterFactory.OutputFormatConverter;
 import bio.overture.score.client.cli.ConverterFactory.OutputTypeConverter;
+import bio.overture.score.client.cli.ConverterFactory.StatsFormatConverter;
 import bio.overture.score.client.cli.CreatableDirectoryValidator;
 import bio.overture.score.client.cli.FileValidator;
 import bio.overture.score.client.cli.ObjectIdValidator;
@@ -28,17 +32,22 @@ import bio.overture.score.client.manifest.ManifestResource;
 import bio.overture.score.client.manifest.ManifestService;
 import bio.overture.score.client.metadata.Entity;
 import bio.overture.score.client.metadata.MetadataService;
+import bio.overture.score.client.reference.SharedReferenceSource;
+import bio.overture.score.client.slicing.BamHeaderReader;
+import bio.overture.score.client.slicing.RegionSet;
 import bio.overture.score.client.slicing.SamFileBuilder;
+import bio.overture.score.client.slicing.SamReaderSource;
+import bio.overture.score.client.transport.HttpRangeInputStream;
+import bio.overture.score.client.transport.HttpRanges;
+import bio.overture.score.client.transport.RangeBuffer;
+import bio.overture.score.client.util.RecordingLogger;
 import bio.overture.score.client.view.Viewer;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import htsjdk.tribble.AbstractFeatureReader;
-import htsjdk.tribble.Feature;
-import htsjdk.tribble.bed.BEDCodec;
-import htsjdk.tribble.bed.BEDFeature;
-import htsjdk.tribble.readers.LineIterator;
+import com.google.common.collect.Maps;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.seekablestream.SeekableStream;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -55,8 +64,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static bio.overture.score.client.cli.Parameters.checkParameter;
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.isNull;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.util.StringUtils.isEmpty;
@@ -75,9 +88,20 @@ public class ViewCommand extends RepositoryAccessCommand {
     TRIMMED, MERGED, CROSS
   }
 
+  public enum StatsFormat {
+    TSV, JSON
+  }
+
   // arbitrary limit - accounting for pathname as well
   public final static int MAX_FILENAME_LENGTH = 120;
 
+  // concurrent range requests and memory used to prefetch the blocks of a query, across all objects processed at once
+  public final static int PREFETCH_THREADS = 4;
+  public final static long PREFETCH_CAPACITY = 512L * 1024L * 1024L;
+
+  // size of the first range request for --header-only, which covers most BAM headers
+  public final static int HEADER_FETCH_SIZE = 256 * 1024;
+
   public final static String PROGRAM_NAME = "Score Client";
   public final static String ICGC = "ICGC";
 
@@ -102,7 +126,7 @@ public class ViewCommand extends RepositoryAccessCommand {
   private File sequenceFile = null;
   @Parameter(names = "--input-file-index", description = "Explicit local path to index file (requires --input-file)", validateValueWith = FileValidator.class)
   private File indexFile = null;
-  @Parameter(names = "--reference-file", description = "Explicit local path to the fasta file that a cram file was encoded with", validateValueWith = FileValidator.class)
+  @Parameter(names = "--reference-file", description = "Explicit local path to the fasta file that a cram file was encoded with. With a .fai index (and .gzi when bgzipped) it is memory-mapped and shared by all readers", validateValueWith = FileValidator.class)
   private File referenceFile = null;
   @Parameter(names = "--query", description = "Query to define extract from BAM file (coordinate format 'sequence:start-end'). Multiple"
       + " ranges separated by space", variableArity = true)
@@ -111,7 +135,7 @@ public class ViewCommand extends RepositoryAccessCommand {
   private File bedFile = null;
   @Parameter(names = "--manifest", description = "Path to manifest id, url or file containing object id's and query ranges for batch")
   private ManifestResource manifestResource;
-  @Parameter(names = "--output-type", description = "File output structure for queries. TRIMMED, MERGED, CROSS. Only used with --manifest", converter = OutputTypeConverter.class)
+  @Parameter(names = "--output-type", description = "File output structure for queries. TRIMMED, MERGED, CROSS. MERGED writes one coordinate-sorted file for all objects. Only used with --manifest", converter = OutputTypeConverter.class)
   private OutputType outputType = OutputType.TRIMMED;
   @Parameter(names = "--output-dir", description = "Path to output directory. Only used with --manifest", validateValueWith = CreatableDirectoryValidator.class)
   private File outputDir;
@@ -121,6 +145,22 @@ public class ViewCommand extends RepositoryAccessCommand {
   private boolean stdout = false;
   @Parameter(names = "--verify-connection", description = "Verify connection to repository", arity = 1)
   private boolean verifyConnection = true;
+  @Parameter(names = "--threads", description = "Number of threads used to query regions in parallel. Each query thread opens its own connection to the file")
+  private int threads = 1;
+  @Parameter(names = "--compression-threads", description = "Number of threads used to compress BAM output. Defaults to the value of --threads")
+  private Integer compressionThreads;
+  @Parameter(names = "--manifest-threads", description = "Number of manifest entries processed concurrently. Only used with --manifest")
+  private int manifestThreads = 4;
+  @Parameter(names = "--merge-batch-size", description = "Maximum number of files open at once for MERGED output. Larger manifests are merged in batches through temporary BAM files. Only used with --manifest")
+  private int mergeBatchSize = SamFileBuilder.DEFAULT_MERGE_BATCH_SIZE;
+  @Parameter(names = "--prefetch", description = "Use the BAM index to fetch the blocks of a query in a few large concurrent range requests", arity = 1)
+  private boolean prefetch = true;
+  @Parameter(names = "--stats", description = "Output read counts per region and read group instead of the alignments")
+  private boolean stats = false;
+  @Parameter(names = "--stats-format", description = "Format of the --stats report. TSV or JSON", converter = StatsFormatConverter.class)
+  private StatsFormat statsFormat = StatsFormat.TSV;
+  @Parameter(names = "--stats-bin-size", description = "Also report base coverage of each region in bins of this many bases. 0 disables coverage. Only used with --stats")
+  private int statsBinSize = 0;
 
   /**
    * Dependencies.
@@ -132,8 +172,17 @@ public class ViewCommand extends RepositoryAccessCommand {
   @Autowired
   private DownloadService downloadService;
   @Autowired
+  private IndexCache indexCache;
+  @Autowired
+  private BlockCache blockCache;
+  @Autowired
   private ApplicationArguments applicationArguments;
 
+  /**
+   * Regions read from --bed-query
+   */
+  private RegionSet regions;
+
   /**
    * Session logger
    */
@@ -155,20 +204,22 @@ public class ViewCommand extends RepositoryAccessCommand {
     }
 
     if (bedFile != null) {
-      query = handleBedFile(bedFile);
+      regions = RegionSet.readBed(bedFile);
+      session.info("Read {} regions from {}", regions.size(), bedFile);
     }
 
     if (sequenceFile != null) {
         v = new Viewer(referenceFile);
         val indexFileExists = !isNull(indexFile);
-        val builder = configureBuilder(v.getBuilder(sequenceFile,indexFile));
+        val builder = configureBuilder(v.getBuilder(sequenceFile,indexFile))
+            .readerSource(v.getReaderSource(sequenceFile, indexFile));
         build(builder, indexFileExists);
     } else if (objectId != null) {
       // Ad-hoc single - supercedes --manifest
       if (manifestResource != null) {
         terminal.println("Ignoring --manifest argument; --object-id supercedes");
       }
-      process(ImmutableList.of(objectId));
+      process(objectId, PREFETCH_CAPACITY, session);
     } else if (manifestResource != null) {
       // Manifest based
       val manifest = manifestService.getDownloadManifest(manifestResource);
@@ -181,7 +232,20 @@ public class ViewCommand extends RepositoryAccessCommand {
       }
 
       val entries = filterManifest(allEntries);
-      process(entries.stream().map(entry -> entry.getFileUuid()).collect(toList()));
+      val objectIds = entries.stream().map(entry -> entry.getFileUuid()).collect(toList());
+      val status = outputType == OutputType.MERGED && !headerOnly && !stats ? processMerged(objectIds) : process(objectIds);
+      if (status != SUCCESS_STATUS) {
+        return status;
+      }
+    }
+    if (referenceFile != null) {
+      val residency = SharedReferenceSource.getResidency(referenceFile);
+      if (residency != null) {
+        session.info("Reference {}: {}", referenceFile, residency);
+      }
+    }
+    if (blockCache.isEnabled()) {
+      session.info("Block cache: {} hits, {} misses", blockCache.getHits(), blockCache.getMisses());
     }
     session.info("Done");
     if (!stdout) {
@@ -198,7 +262,7 @@ public class ViewCommand extends RepositoryAccessCommand {
     return msg.toString();
   }
 
-  private Entity getEntity(String oid) {
+  private Entity getEntity(String oid, Logger session) {
     val e = fetchEntity(oid);
 
     if (!e.isPresent()) {
@@ -224,26 +288,70 @@ public class ViewCommand extends RepositoryAccessCommand {
         .outputIndex(outputIndex)
         .stdout(stdout)
         .queries(query)
-        .bedFile(bedFile);
+        .bedFile(bedFile)
+        .regions(regions)
+        .statsFormat(statsFormat)
+        .statsBinSize(statsBinSize)
+        .threads(threads)
+        .compressionThreads(compressionThreads == null ? threads : compressionThreads)
+        .mergeBatchSize(mergeBatchSize);
     log.info("Constructed SamFileBuilder: " + builder.toString());
     return builder;
   }
 
+  /**
+   * Slices one object, prefetching into at most {@code prefetchCapacity} bytes of memory.
+   */
   @SneakyThrows
-  int process(String oid) {
-    val entity = getEntity(oid);
+  int process(String oid, long prefetchCapacity, Logger session) {
+    val entity = getEntity(oid, session);
+    if (headerOnly && isBAM(entity.getFileName())) {
+      return processHeaderOnly(entity, session);
+    }
+
     val urls = getPresignedUrls(entity);
 
     val indexExists = !isNull(urls.index);
-    val inputStream = Viewer.openInputStream(urls.file);
-    val indexStream = indexExists ? Viewer.openIndexStream(urls.index) : null;
+    val cachedBlocks = getCachedBlocks(entity, urls);
+    val rangeBuffer = prefetch ?
+        new RangeBuffer(urls.file, Math.max(threads, PREFETCH_THREADS), prefetchCapacity, cachedBlocks) : null;
+    val inputStream = Viewer.openInputStream(urls.file, rangeBuffer, cachedBlocks);
+    val indexFile = indexExists ? getCachedIndexFile(urls) : null;
     val isCram = isCRAM(entity.getFileName());
     val viewer = new Viewer(referenceFile);
 
-    val builder = configureBuilder(viewer.getBuilder(inputStream, indexStream, isCram));
+    SeekableStream indexStream;
+    SamReaderSource readerSource;
+    if (!isNull(indexFile)) {
+      indexStream = Viewer.openIndexStream(indexFile);
+      readerSource = viewer.getReaderSource(urls.file, indexFile, isCram, rangeBuffer, cachedBlocks);
+    } else {
+      indexStream = indexExists ? Viewer.openIndexStream(urls.index) : null;
+      readerSource = viewer.getReaderSource(urls.file, urls.index, isCram, rangeBuffer, cachedBlocks);
+    }
+
+    val builder = configureBuilder(viewer.getBuilder(inputStream, indexStream, isCram))
+        .session(session)
+        .readerSource(readerSource)
+        .rangeBuffer(rangeBuffer);
     return build(builder.entity(entity), indexExists);
   }
 
+  /**
+   * Decodes the header from the first blocks of the BAM, without looking up or reading the index.
+   */
+  @SneakyThrows
+  private int processHeaderOnly(Entity entity, Logger session) {
+    val url = downloadService.getUrl(entity.getId());
+    val header = BamHeaderReader.read(new HttpRangeInputStream(url, HEADER_FETCH_SIZE), entity.getFileName());
+
+    configureBuilder(new SamFileBuilder())
+        .session(session)
+        .entity(entity)
+        .buildHeaderOnly(header);
+    return SUCCESS_STATUS;
+  }
+
   private boolean isQueryDefined(){
     return !isEmpty(bedFile) || !isNull(query) && !query.isEmpty();
   }
@@ -253,7 +361,9 @@ public class ViewCommand extends RepositoryAccessCommand {
     if (isQueryDefined() && !hasIndex){
       log.warn("Supplied query or bedfile will not be used since no index is available");
     }
-    if (headerOnly || !hasIndex) {
+    if (stats) {
+      builder.buildStats();
+    } else if (headerOnly || !hasIndex) {
       builder.buildHeaderOnly();
     } else {
       switch (outputType) {
@@ -261,7 +371,7 @@ public class ViewCommand extends RepositoryAccessCommand {
         builder.buildTrimmed();
         break;
       case MERGED:
-        terminal.printError("Output type '%s' not implemented", outputType.toString());
+        builder.buildMerged();
         break;
       case CROSS:
         terminal.printError("Output type '%s' not implemented", outputType.toString());
@@ -271,17 +381,93 @@ public class ViewCommand extends RepositoryAccessCommand {
     return SUCCESS_STATUS;
   }
 
+  /**
+   * Processes up to {@code --manifest-threads} objects at a time. Each object is sliced with its own readers into its own
+   * output file, and its session log entries are written in manifest order once it completes. A failed object does not
+   * stop the others; failures are summarized at the end. The prefetch capacity is divided between the concurrent
+   * objects so that the total stays within {@link #PREFETCH_CAPACITY}.
+   */
   @SneakyThrows
   int process(List<String> objectIds) {
+    if (objectIds.isEmpty()) {
+      return SUCCESS_STATUS;
+    }
+
+    val concurrency = Math.min(manifestThreads, objectIds.size());
+    val prefetchCapacity = PREFETCH_CAPACITY / concurrency;
+    val executor = Executors.newFixedThreadPool(concurrency);
+    val recorders = Lists.<RecordingLogger> newArrayList();
+    val results = Lists.<Future<Integer>> newArrayList();
     for (val objectId : objectIds) {
-      if (process(objectId) != SUCCESS_STATUS) {
-        log.error("Failed to process {}", objectId);
-        return FAILURE_STATUS;
+      val recorder = new RecordingLogger(session.getName());
+      recorders.add(recorder);
+      results.add(executor.submit(() -> process(objectId, prefetchCapacity, recorder.getLogger())));
+    }
+    executor.shutdown();
+
+    val failures = Maps.<String, String> newLinkedHashMap();
+    for (int i = 0; i < objectIds.size(); i++) {
+      val objectId = objectIds.get(i);
+      try {
+        if (results.get(i).get() != SUCCESS_STATUS) {
+          failures.put(objectId, "Unsuccessful status");
+        }
+      } catch (ExecutionException e) {
+        log.error("Failed to process {}", objectId, e.getCause());
+        failures.put(objectId, e.getCause().getMessage());
+      } finally {
+        recorders.get(i).replay(session);
       }
     }
+
+    session.info("Processed {} objects: {} succeeded, {} failed", objectIds.size(), objectIds.size() - failures.size(),
+        failures.size());
+    failures.forEach((objectId, reason) -> {
+      session.info("  Failed {}: {}", objectId, reason);
+      terminal.printError("Failed to process %s: %s", objectId, reason);
+    });
+
+    return failures.isEmpty() ? SUCCESS_STATUS : FAILURE_STATUS;
+  }
+
+  /**
+   * Merges the query results of all objects into a single coordinate-sorted output. Up to {@code --manifest-threads}
+   * objects are opened and queried at a time, and records are streamed from all of them into one writer. Prefetching is
+   * not used, so memory stays bounded by the number of objects rather than the size of the query.
+   */
+  @SneakyThrows
+  int processMerged(List<String> objectIds) {
+    if (objectIds.isEmpty()) {
+      return SUCCESS_STATUS;
+    }
+    if (!isQueryDefined()) {
+      terminal.printError("A --query or --bed-query must be specified with --output-type %s", outputType);
+      return FAILURE_STATUS;
+    }
+
+    val viewer = new Viewer(referenceFile);
+    val sources = objectIds.stream()
+        .map(objectId -> (SamReaderSource) () -> openIndexedReader(viewer, objectId))
+        .collect(toList());
+
+    configureBuilder(new SamFileBuilder()).session(session).buildMerged(sources, manifestThreads);
     return SUCCESS_STATUS;
   }
 
+  private SamReader openIndexedReader(Viewer viewer, String oid) {
+    val entity = getEntity(oid, session);
+    val urls = getPresignedUrls(entity);
+    checkState(!isNull(urls.index), "No index available for object id %s", oid);
+
+    val indexFile = getCachedIndexFile(urls);
+    val cachedBlocks = getCachedBlocks(entity, urls);
+    val isCram = isCRAM(entity.getFileName());
+    val readerSource = isNull(indexFile) ?
+        viewer.getReaderSource(urls.file, urls.index, isCram, null, cachedBlocks) :
+        viewer.getReaderSource(urls.file, indexFile, isCram, null, cachedBlocks);
+    return readerSource.open();
+  }
+
   private Optional<Entity> fetchEntity(String oid) {
     // fetch the entity for the given object id from our metadata service
     return Optional
@@ -290,10 +476,47 @@ public class ViewCommand extends RepositoryAccessCommand {
 
   public PresignedUrls getPresignedUrls(Entity entity) {
     val indexEntity = metadataService.getIndexEntity(entity);
-    val bamFileUrl = downloadService.getUrl(entity.getId());
-    val indexFileUrl = indexEntity.map(x -> downloadService.getUrl(x.getId())).orElse(null);
+    val objectIds = Lists.newArrayList(entity.getId());
+    indexEntity.ifPresent(x -> objectIds.add(x.getId()));
+
+    // File and index are resolved in a single request
+    val specs = downloadService.getExternalSpecifications(objectIds);
+    val fileSpec = specs.get(entity.getId());
+    val bamFileUrl = DownloadService.getUrl(fileSpec);
+    val indexSpec = indexEntity.map(x -> specs.get(x.getId()));
+    val indexFileUrl = indexSpec.map(DownloadService::getUrl).orElse(null);
+
+    return new PresignedUrls(bamFileUrl, indexFileUrl, indexSpec.map(x -> x.getObjectId()).orElse(null),
+        indexSpec.map(x -> x.getObjectMd5()).orElse(null), fileSpec.getObjectMd5());
+  }
 
-    return new PresignedUrls(bamFileUrl, indexFileUrl);
+  /**
+   * Returns the blocks of the object in the block cache, or {@code null} if they can't be cached. Only region queries
+   * are cached: a whole-file stream would just cycle the object through the cache.
+   */
+  private ObjectBlocks getCachedBlocks(Entity entity, PresignedUrls urls) {
+    if (!blockCache.isEnabled() || isNull(urls.fileMd5) || !isQueryDefined()) {
+      return null;
+    }
+
+    return blockCache.forObject(entity.getId(), urls.fileMd5,
+        (start, length) -> HttpRanges.get(urls.file, start, length));
+  }
+
+  /**
+   * Returns the local copy of the index from the index cache, or {@code null} if it can't be cached.
+   */
+  private File getCachedIndexFile(PresignedUrls urls) {
+    if (!indexCache.isEnabled() || isNull(urls.indexMd5)) {
+      return null;
+    }
+
+    try {
+      return indexCache.get(urls.indexObjectId, urls.indexMd5, urls.index);
+    } catch (Exception e) {
+      log.warn("Could not cache index {}: {}", urls.indexObjectId, e.getMessage());
+      return null;
+    }
   }
 
   private void validateParms() {
@@ -309,6 +532,14 @@ public class ViewCommand extends RepositoryAccessCommand {
     checkParameter(objectId != null || sequenceFile != null || manifestResource != null,
       "One of --object-id, --input-file or --manifest must be specified");
 
+    checkParameter(threads > 0, "--threads must be greater than 0");
+    checkParameter(compressionThreads == null || compressionThreads > 0,
+      "--compression-threads must be greater than 0");
+    checkParameter(manifestThreads > 0, "--manifest-threads must be greater than 0");
+    checkParameter(mergeBatchSize > 1, "--merge-batch-size must be greater than 1");
+    checkParameter(!(stats && headerOnly), "--stats cannot be combined with --header-only");
+    checkParameter(statsBinSize >= 0, "--stats-bin-size must not be negative");
+
     if (objectId == null && sequenceFile == null) {
       checkParameter(manifestResource != null && outputDir != null,
         "--output-dir must be specified when using --manifest");
@@ -320,21 +551,6 @@ public class ViewCommand extends RepositoryAccessCommand {
   }
 
 
-  @SneakyThrows
-  private List<String> handleBedFile(File bedFile) {
-    val query = new ArrayList<String>();
-    query.clear();
-    final BEDCodec codec = new BEDCodec();
-    final AbstractFeatureReader<BEDFeature, LineIterator> bfs =
-      AbstractFeatureReader.getFeatureReader(bedFile.getAbsolutePath(), codec, false);
-    for (final Feature feat : bfs.iterator()) {
-      val region = String.format("%s:%d-%d", feat.getContig(), feat.getStart(), feat.getEnd());
-      System.out.println(region);
-      query.add(region);
-    }
-    return query;
-  }
-
   private List<DownloadManifest.ManifestEntry> filterManifest(List<DownloadManifest.ManifestEntry> entries) {
     val result = Lists.<DownloadManifest.ManifestEntry> newArrayList();
     // we're only going to process CRAM/BAM/SAM files
@@ -353,6 +569,10 @@ public class ViewCommand extends RepositoryAccessCommand {
     return result;
   }
 
+  public static boolean isBAM(String filename) {
+    return filename.toLowerCase().endsWith(ViewCommand.OutputFormat.BAM.toString().toLowerCase());
+  }
+
   public static boolean isCRAM(String filename) {
     return filename.toLowerCase().endsWith(ViewCommand.OutputFormat.CRAM.toString().toLowerCase());
   }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local caches used to avoid re-fetching immutable object data.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache")
+public class CacheProperties {
+
+  /** Root directory of all caches */
+  private String dir;
+
+  private IndexProperties index = new IndexProperties();
+
+  @Data
+  public static class IndexProperties {
+
+    /** Cache BAM/CRAM index files used by the view command? */
+    private boolean enabled = true;
+
+    /** Maximum total size of cached index files, in bytes */
+    private long maxSize = 1024L * 1024L * 1024L;
+
+  }
+
+  private BlockProperties block = new BlockProperties();
+
+  @Data
+  public static class BlockProperties {
+
+    /** Cache BAM/CRAM data blocks read by region queries of the view command? */
+    private boolean enabled = true;
+
+    /** Maximum total size of cached blocks, in bytes */
+    private long maxSize = 4L * 1024L * 1024L * 1024L;
+
+    /** Size of each cached block, in bytes. Reads are rounded out to whole blocks */
+    private int blockSize = 1024 * 1024;
+
+  }
+
+}
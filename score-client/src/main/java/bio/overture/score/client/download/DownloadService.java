@@ -28,6 +28,7 @@ import bio.overture.score.client.transport.Transport;
 import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.Part;
 import bio.overture.score.core.util.MD5s;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.BaseEncoding;
 import lombok.NonNull;
 import lombok.SneakyThrows;
@@ -47,11 +48,16 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 @Slf4j
 @Component
@@ -97,7 +103,30 @@ public class DownloadService {
   @SneakyThrows
   public URL getUrl(@NonNull String objectId, long offset, long length) {
     val spec = storageService.getExternalDownloadSpecification(objectId, offset, length);
-    val file = getOnlyElement(spec.getParts()); // Throws IllegalArgumentException if more than one part
+    return getUrl(spec);
+  }
+
+  /**
+   * Returns the specification holding the pre-signed URL of the whole object, along with its MD5.
+   */
+  @SneakyThrows
+  public ObjectSpecification getExternalSpecification(@NonNull String objectId) {
+    return storageService.getExternalDownloadSpecification(objectId, 0, -1);
+  }
+
+  /**
+   * Returns the specifications holding the pre-signed URLs of the whole objects, keyed by object id, resolved in as few
+   * requests as the storage service allows.
+   */
+  @SneakyThrows
+  public Map<String, ObjectSpecification> getExternalSpecifications(@NonNull Collection<String> objectIds) {
+    val specs = storageService.getDownloadSpecifications(ImmutableList.copyOf(objectIds), true, false);
+    return specs.stream().collect(toMap(ObjectSpecification::getObjectId, identity(), (a, b) -> a));
+  }
+
+  @SneakyThrows
+  public static URL getUrl(@NonNull ObjectSpecification externalSpec) {
+    val file = getOnlyElement(externalSpec.getParts()); // Throws IllegalArgumentException if more than one part
 
     return new URL(file.getUrl());
   }
@@ -213,15 +242,23 @@ public class DownloadService {
   }
 
   /**
-   * Computes space requirements for download and ensure there is sufficient space locally to store it
+   * Computes space requirements for download and ensure there is sufficient space locally to store it. Objects missing
+   * from the batch sizes response are sized from their own download specification.
    */
   @SneakyThrows
   public long getSpaceRequired(Set<Entity> entities) {
-    long total = 0L;
+    val objectIds = entities.stream().map(Entity::getId).collect(toList());
+    val sizes = storageService.getObjectSizes(objectIds);
 
-    for (val entity : entities) {
-      val spec = storageService.getDownloadSpecification(entity.getId());
-      total += spec.getObjectSize();
+    long total = 0L;
+    for (val objectId : objectIds) {
+      val size = sizes.get(objectId);
+      if (size == null) {
+        log.warn("No size returned for object {}; retrieving its download specification", objectId);
+        total += storageService.getDownloadSpecification(objectId).getObjectSize();
+      } else {
+        total += size;
+      }
     }
 
     return total;
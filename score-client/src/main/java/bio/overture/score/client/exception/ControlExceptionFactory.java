@@ -43,6 +43,11 @@ public class ControlExceptionFactory {
         + IOUtils.toString(response.getBody())));
   }
 
+  public static NotFoundException notFoundException(String prefix, ClientHttpResponse response) throws IOException {
+    return new NotFoundException(new IOException((prefix == null ? "" : prefix)
+        + IOUtils.toString(response.getBody())));
+  }
+
   public static NotResumableException notResumableException(ClientHttpResponse response) throws IOException {
     return notResumableException(null, response);
   }
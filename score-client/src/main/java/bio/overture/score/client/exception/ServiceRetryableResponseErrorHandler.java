@@ -35,6 +35,10 @@ public class ServiceRetryableResponseErrorHandler extends DefaultResponseErrorHa
   public void handleError(ClientHttpResponse response) throws IOException {
     switch (response.getStatusCode()) {
     case NOT_FOUND:
+    case METHOD_NOT_ALLOWED:
+      log.warn("Not found. Stop processing: {}", response.getStatusText());
+      throw notFoundException("Storage client error: ", response);
+
     case BAD_REQUEST:
       log.warn("Bad request. Stop processing: {}", response.getStatusText());
       throw notRetryableException("Storage client error: ", response);
@@ -28,12 +28,14 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import lombok.*;
 
 import java.io.IOException;
 import java.net.URL;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -103,7 +105,22 @@ public class MountStorageContext implements StorageContext {
   @Override
   @SneakyThrows
   public URL getUrl(String objectId) {
-    return getUrlCache().get(objectId);
+    val urlCache = getUrlCache();
+    val url = urlCache.getIfPresent(objectId);
+    if (url != null) {
+      return url;
+    }
+
+    // Resolve the URLs of the other files of the same analysis (e.g. the index of a BAM) along with it, since they are
+    // typically opened next
+    val file = getFile(objectId);
+    val objectIds = new LinkedHashSet<String>();
+    objectIds.add(objectId);
+    if (file != null) {
+      getFilesByGnosId(file.getGnosId()).forEach(f -> objectIds.add(f.getObjectId()));
+    }
+
+    return urlCache.getAll(objectIds).get(objectId);
   }
 
   @Override
@@ -174,7 +191,20 @@ public class MountStorageContext implements StorageContext {
   }
 
   private LoadingCache<String, URL> createURLCache() {
-    val loader = CacheLoader.<String, URL> from(objectId -> downloadService.getUrl(objectId));
+    val loader = new CacheLoader<String, URL>() {
+
+      @Override
+      public URL load(String objectId) {
+        return downloadService.getUrl(objectId);
+      }
+
+      @Override
+      public Map<String, URL> loadAll(Iterable<? extends String> objectIds) {
+        val specs = downloadService.getExternalSpecifications(ImmutableList.copyOf(objectIds));
+        return Maps.transformValues(specs, DownloadService::getUrl);
+      }
+
+    };
     val cache = CacheBuilder.newBuilder();
 
     // See https://jira.oicr.on.ca/browse/COL-131
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.reference;
+
+import com.google.common.collect.Maps;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A samtools {@code .fai} index: for each sequence, its length and where its bases start in the (uncompressed) FASTA,
+ * along with the line layout needed to turn a base position into a byte offset.
+ */
+public class FastaIndex {
+
+  @Value
+  public static class Entry {
+
+    String name;
+    long length;
+    long offset;
+    int basesPerLine;
+    int bytesPerLine;
+
+    /**
+     * @return offset in the uncompressed FASTA of the 0-based base {@code position}
+     */
+    public long getOffset(long position) {
+      return offset + position / basesPerLine * bytesPerLine + position % basesPerLine;
+    }
+
+  }
+
+  private final Map<String, Entry> entries;
+
+  private FastaIndex(Map<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  public static File getIndexFile(@NonNull File fasta) {
+    return new File(fasta.getPath() + ".fai");
+  }
+
+  @SneakyThrows
+  public static FastaIndex read(@NonNull File file) {
+    val entries = Maps.<String, Entry> newLinkedHashMap();
+    for (val line : Files.readAllLines(file.toPath())) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      val fields = line.split("\t");
+      if (fields.length < 5) {
+        throw new IllegalArgumentException(String.format("Malformed FASTA index line in %s: '%s'", file, line));
+      }
+      entries.put(fields[0], new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+          Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+    }
+    return new FastaIndex(entries);
+  }
+
+  public Entry getEntry(String name) {
+    return entries.get(name);
+  }
+
+  public Collection<Entry> getEntries() {
+    return entries.values();
+  }
+
+}
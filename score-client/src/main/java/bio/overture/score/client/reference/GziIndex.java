@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.reference;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A bgzip {@code .gzi} index: the compressed and uncompressed offsets of each BGZF block after the first. Translates
+ * an offset in the uncompressed data into the virtual file pointer of a {@code BlockCompressedInputStream}.
+ */
+public class GziIndex {
+
+  /**
+   * Block offsets, including the implicit first block at (0, 0).
+   */
+  private final long[] compressedOffsets;
+  private final long[] uncompressedOffsets;
+
+  private GziIndex(long[] compressedOffsets, long[] uncompressedOffsets) {
+    this.compressedOffsets = compressedOffsets;
+    this.uncompressedOffsets = uncompressedOffsets;
+  }
+
+  public static File getIndexFile(@NonNull File fasta) {
+    return new File(fasta.getPath() + ".gzi");
+  }
+
+  @SneakyThrows
+  public static GziIndex read(@NonNull File file) {
+    try (val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      val count = (int) readLong(in);
+      val compressed = new long[count + 1];
+      val uncompressed = new long[count + 1];
+      for (int i = 1; i <= count; i++) {
+        compressed[i] = readLong(in);
+        uncompressed[i] = readLong(in);
+      }
+      return new GziIndex(compressed, uncompressed);
+    }
+  }
+
+  /**
+   * @return virtual file pointer of uncompressed {@code offset}
+   */
+  public long getFilePointer(long offset) {
+    int block = Arrays.binarySearch(uncompressedOffsets, offset);
+    if (block < 0) {
+      block = -block - 2;
+    }
+    return compressedOffsets[block] << 16 | (offset - uncompressedOffsets[block]);
+  }
+
+  /**
+   * The index is little-endian.
+   */
+  private static long readLong(DataInputStream in) throws IOException {
+    return Long.reverseBytes(in.readLong());
+  }
+
+}
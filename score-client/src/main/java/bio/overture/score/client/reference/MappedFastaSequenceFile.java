@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.reference;
+
+import com.google.common.io.ByteStreams;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Random access to an indexed FASTA that reads only the bytes of the requested region.
+ * <p>
+ * A plain FASTA is memory-mapped one sequence at a time, so its bases live in the OS page cache rather than on the heap
+ * and are shared by every reader of the file. A bgzipped FASTA ({@code .gz} with a {@code .gzi} index) is read by
+ * seeking to the BGZF block that holds the start of the region. Safe for concurrent use.
+ */
+public class MappedFastaSequenceFile implements ReferenceSequenceFile {
+
+  private final File file;
+  private final FastaIndex index;
+  @Getter
+  private final SAMSequenceDictionary sequenceDictionary;
+
+  /**
+   * Set for a bgzipped FASTA, otherwise the file is mapped through {@code channel}.
+   */
+  private final GziIndex gzi;
+  private final FileChannel channel;
+  private final Map<String, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+  private Iterator<FastaIndex.Entry> entries;
+
+  @SneakyThrows
+  public MappedFastaSequenceFile(@NonNull File file) {
+    this.file = file;
+    this.index = FastaIndex.read(FastaIndex.getIndexFile(file));
+    this.sequenceDictionary = new SAMSequenceDictionary(index.getEntries().stream()
+        .map(entry -> new SAMSequenceRecord(entry.getName(), (int) entry.getLength()))
+        .collect(toList()));
+
+    val gziFile = GziIndex.getIndexFile(file);
+    if (gziFile.exists()) {
+      this.gzi = GziIndex.read(gziFile);
+      this.channel = null;
+    } else {
+      checkArgument(!isCompressed(file), "Compressed FASTA %s requires a bgzip index %s", file, gziFile);
+      this.gzi = null;
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+    reset();
+  }
+
+  /**
+   * @return whether {@code fasta} has the index(es) needed to open it
+   */
+  public static boolean isIndexed(@NonNull File fasta) {
+    return FastaIndex.getIndexFile(fasta).exists() && (!isCompressed(fasta) || GziIndex.getIndexFile(fasta).exists());
+  }
+
+  public boolean isCompressed() {
+    return gzi != null;
+  }
+
+  public boolean hasSequence(String name) {
+    return index.getEntry(name) != null;
+  }
+
+  @Override
+  public ReferenceSequence getSequence(String contig) {
+    return getSubsequenceAt(contig, 1, getEntry(contig).getLength());
+  }
+
+  /**
+   * @param start 1-based, inclusive
+   * @param stop 1-based, inclusive
+   */
+  @Override
+  @SneakyThrows
+  public ReferenceSequence getSubsequenceAt(String contig, long start, long stop) {
+    val entry = getEntry(contig);
+    checkArgument(start >= 1 && start <= stop + 1 && stop <= entry.getLength(),
+        "Invalid region %s:%s-%s of sequence with length %s", contig, start, stop, entry.getLength());
+
+    val bases = new byte[(int) (stop - start + 1)];
+    if (isCompressed()) {
+      readCompressed(entry, start - 1, bases);
+    } else {
+      readMapped(entry, start - 1, bases);
+    }
+    return new ReferenceSequence(contig, sequenceDictionary.getSequenceIndex(contig), bases);
+  }
+
+  /**
+   * @return number of sequences currently mapped
+   */
+  public int getMappedSequences() {
+    return mappings.size();
+  }
+
+  /**
+   * @return bytes of the FASTA currently mapped
+   */
+  public long getMappedBytes() {
+    return mappings.values().stream().mapToLong(ByteBuffer::capacity).sum();
+  }
+
+  /**
+   * @return bytes of the mapped sequences that are likely resident in physical memory
+   */
+  public long getLoadedBytes() {
+    return mappings.values().stream().filter(MappedByteBuffer::isLoaded).mapToLong(ByteBuffer::capacity).sum();
+  }
+
+  @Override
+  public synchronized ReferenceSequence nextSequence() {
+    return entries.hasNext() ? getSequence(entries.next().getName()) : null;
+  }
+
+  @Override
+  public synchronized void reset() {
+    entries = index.getEntries().iterator();
+  }
+
+  @Override
+  public boolean isIndexed() {
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mappings.clear();
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return file.getAbsolutePath();
+  }
+
+  private FastaIndex.Entry getEntry(String contig) {
+    val entry = index.getEntry(contig);
+    checkArgument(entry != null, "Sequence %s not found in %s", contig, file);
+    return entry;
+  }
+
+  /**
+   * Copies line by line from the mapping of the sequence, skipping line terminators.
+   */
+  private void readMapped(FastaIndex.Entry entry, long position, byte[] bases) {
+    val buffer = mappings.computeIfAbsent(entry.getName(), name -> map(entry)).duplicate();
+    int copied = 0;
+    while (copied < bases.length) {
+      val length = (int) Math.min(entry.getBasesPerLine() - position % entry.getBasesPerLine(), bases.length - copied);
+      buffer.position((int) (entry.getOffset(position) - entry.getOffset()));
+      buffer.get(bases, copied, length);
+      copied += length;
+      position += length;
+    }
+  }
+
+  /**
+   * Reads line by line from the block holding the first base, skipping line terminators.
+   */
+  private void readCompressed(FastaIndex.Entry entry, long position, byte[] bases) throws IOException {
+    if (bases.length == 0) {
+      return;
+    }
+    try (val in = new BlockCompressedInputStream(file)) {
+      in.seek(gzi.getFilePointer(entry.getOffset(position)));
+      read(in, entry, position, bases);
+    }
+  }
+
+  private static void read(InputStream in, FastaIndex.Entry entry, long position, byte[] bases) throws IOException {
+    val terminator = entry.getBytesPerLine() - entry.getBasesPerLine();
+    int copied = 0;
+    while (true) {
+      val length = (int) Math.min(entry.getBasesPerLine() - position % entry.getBasesPerLine(), bases.length - copied);
+      ByteStreams.readFully(in, bases, copied, length);
+      copied += length;
+      position += length;
+      if (copied == bases.length) {
+        return;
+      }
+      ByteStreams.skipFully(in, terminator);
+    }
+  }
+
+  @SneakyThrows
+  private MappedByteBuffer map(FastaIndex.Entry entry) {
+    val size = entry.getLength() == 0 ? 0 : entry.getOffset(entry.getLength() - 1) + 1 - entry.getOffset();
+    return channel.map(FileChannel.MapMode.READ_ONLY, entry.getOffset(), size);
+  }
+
+  private static boolean isCompressed(File file) {
+    val name = file.getName().toLowerCase();
+    return name.endsWith(".gz") || name.endsWith(".bgz");
+  }
+
+}
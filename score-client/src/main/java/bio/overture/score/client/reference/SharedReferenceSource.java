@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.reference;
+
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.util.SequenceUtil;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CRAM reference source shared by every reader of the same FASTA in the process.
+ * <p>
+ * A {@link ReferenceSource} per reader keeps its own copy of each contig it decodes against, so concurrent slices of
+ * chr1 hold several copies of chr1. This source loads each contig once from a {@link MappedFastaSequenceFile} and hands
+ * the same (softly referenced) bases to all readers. Contigs missing from the FASTA fall back to the lookup of
+ * {@link ReferenceSource} (by MD5 from the reference cache or ENA).
+ */
+@Slf4j
+public class SharedReferenceSource extends ReferenceSource {
+
+  private static final Map<File, ReferenceSource> SOURCES = new ConcurrentHashMap<>();
+
+  @Value
+  public static class Residency {
+
+    int cachedContigs;
+    long cachedBytes;
+    int mappedContigs;
+    long mappedBytes;
+    long loadedBytes;
+    long hits;
+    long misses;
+
+    @Override
+    public String toString() {
+      return String.format("%d contigs cached (%d MB), %d contigs mapped (%d MB, %d MB resident), %d hits, %d misses",
+          cachedContigs, cachedBytes >> 20, mappedContigs, mappedBytes >> 20, loadedBytes >> 20, hits, misses);
+    }
+
+  }
+
+  private final MappedFastaSequenceFile fasta;
+  private final Map<String, SoftReference<byte[]>> cache = new ConcurrentHashMap<>();
+  private final Map<String, Object> locks = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  SharedReferenceSource(@NonNull MappedFastaSequenceFile fasta) {
+    super(fasta);
+    this.fasta = fasta;
+  }
+
+  /**
+   * @return the reference source shared by all readers of {@code file}. A FASTA without a {@code .fai} (and
+   * {@code .gzi} when bgzipped) is still shared, but read through a plain {@link ReferenceSource}.
+   */
+  public static ReferenceSource get(@NonNull File file) {
+    return SOURCES.computeIfAbsent(file.getAbsoluteFile(), f -> {
+      if (!MappedFastaSequenceFile.isIndexed(f)) {
+        log.warn("No index found for reference {}; reading it without memory mapping", f);
+        return new ReferenceSource(f);
+      }
+      return new SharedReferenceSource(new MappedFastaSequenceFile(f));
+    });
+  }
+
+  /**
+   * @return residency of the shared source of {@code file}, or {@code null} if it is not memory mapped
+   */
+  public static Residency getResidency(@NonNull File file) {
+    val source = SOURCES.get(file.getAbsoluteFile());
+    return source instanceof SharedReferenceSource ? ((SharedReferenceSource) source).getResidency() : null;
+  }
+
+  public Residency getResidency() {
+    int contigs = 0;
+    long bytes = 0;
+    for (val reference : cache.values()) {
+      val bases = reference.get();
+      if (bases != null) {
+        contigs++;
+        bytes += bases.length;
+      }
+    }
+    return new Residency(contigs, bytes, fasta.getMappedSequences(), fasta.getMappedBytes(), fasta.getLoadedBytes(),
+        hits.get(), misses.get());
+  }
+
+  @Override
+  public byte[] getReferenceBases(@NonNull SAMSequenceRecord record, boolean tryNameVariants) {
+    val name = record.getSequenceName();
+    byte[] bases = getCached(name);
+    if (bases != null) {
+      hits.incrementAndGet();
+      return bases;
+    }
+
+    // one load per contig, however many readers ask for it at once
+    synchronized (locks.computeIfAbsent(name, key -> new Object())) {
+      bases = getCached(name);
+      if (bases != null) {
+        hits.incrementAndGet();
+        return bases;
+      }
+
+      misses.incrementAndGet();
+      bases = load(name, tryNameVariants);
+      if (bases == null) {
+        return super.getReferenceBases(record, tryNameVariants);
+      }
+      cache.put(name, new SoftReference<>(bases));
+      log.debug("Loaded reference sequence {} ({} bases) from {}", name, bases.length, fasta);
+      return bases;
+    }
+  }
+
+  @Override
+  public void clearCache() {
+    cache.clear();
+    super.clearCache();
+  }
+
+  private byte[] getCached(String name) {
+    val reference = cache.get(name);
+    return reference == null ? null : reference.get();
+  }
+
+  private byte[] load(String name, boolean tryNameVariants) {
+    for (val candidate : tryNameVariants ? getVariants(name) : ImmutableList.of(name)) {
+      if (fasta.hasSequence(candidate)) {
+        return SequenceUtil.upperCase(fasta.getSequence(candidate).getBases());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Common spellings of the same contig: with and without the {@code chr} prefix, and {@code chrM} / {@code MT}.
+   */
+  static List<String> getVariants(String name) {
+    val variants = ImmutableList.<String> builder().add(name);
+    if (name.equals("chrM")) {
+      variants.add("MT");
+    } else if (name.equals("MT")) {
+      variants.add("chrM");
+    }
+    if (name.startsWith("chr")) {
+      variants.add(name.substring(3));
+    } else {
+      variants.add("chr" + name);
+    }
+    return variants.build();
+  }
+
+}
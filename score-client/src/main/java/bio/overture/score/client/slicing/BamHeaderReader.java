@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.StringLineReader;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Decodes the header at the start of a BAM stream without opening a {@code SamReader}, so only the first BGZF blocks
+ * are read and no index is needed.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class BamHeaderReader {
+
+  private static final byte[] BAM_MAGIC = { 'B', 'A', 'M', 1 };
+
+  /**
+   * Follows htsjdk's {@code BAMFileReader.readHeader}: the binary sequence records are used when the text header has
+   * no @SQ lines.
+   * @param inputStream BGZF compressed BAM data, from the start of the file
+   * @param source Name of the source, for error messages
+   * @return the decoded header
+   */
+  @SneakyThrows
+  public static SAMFileHeader read(@NonNull InputStream inputStream, String source) {
+    try {
+      return decode(inputStream, source);
+    } catch (RuntimeException e) {
+      throw new IOException(String.format("Could not read BAM header from %s: %s", source, e.getMessage()), e);
+    }
+  }
+
+  private static SAMFileHeader decode(InputStream inputStream, String source) throws IOException {
+    val codec = new BinaryCodec(new BlockCompressedInputStream(inputStream));
+
+    val magic = new byte[BAM_MAGIC.length];
+    codec.readBytes(magic);
+    if (!Arrays.equals(magic, BAM_MAGIC)) {
+      throw new IOException(String.format("Invalid BAM file header in %s", source));
+    }
+
+    val textLength = codec.readInt();
+    val text = textLength > 0 ? trimNulls(codec.readString(textLength)) : "";
+    val textCodec = new SAMTextHeaderCodec();
+    textCodec.setValidationStringency(ValidationStringency.LENIENT);
+    val header = textCodec.decode(new StringLineReader(text), source);
+
+    val sequenceCount = codec.readInt();
+    if (header.getSequenceDictionary().isEmpty() && sequenceCount > 0) {
+      val sequences = new ArrayList<SAMSequenceRecord>(sequenceCount);
+      for (int i = 0; i < sequenceCount; i++) {
+        val nameLength = codec.readInt();
+        val name = codec.readString(nameLength - 1);
+        codec.readByte(); // null terminator
+        sequences.add(new SAMSequenceRecord(name, codec.readInt()));
+      }
+      header.setSequenceDictionary(new SAMSequenceDictionary(sequences));
+    }
+
+    return header;
+  }
+
+  private static String trimNulls(String text) {
+    val end = text.indexOf('\0');
+    return end == -1 ? text : text.substring(0, end);
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import htsjdk.samtools.BAMFileSpan;
+import htsjdk.samtools.BAMIndexer;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileSource;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.ProgressLoggerInterface;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.TreeMap;
+
+import static htsjdk.samtools.util.BlockCompressedFilePointerUtil.getBlockAddress;
+import static htsjdk.samtools.util.BlockCompressedFilePointerUtil.getBlockOffset;
+
+/**
+ * BAM writer that compresses its output on multiple threads using a {@link ParallelBlockCompressedOutputStream}.
+ * Records are expected in the order of the header, as with htsjdk's writer for presorted output.
+ * <p>
+ * When an index is requested, each record is held until the addresses of the blocks it spans are known, and is then
+ * passed to a {@link BAMIndexer} with its virtual file pointers, so the index is built while the file is written.
+ */
+@Slf4j
+public class ParallelBAMFileWriter implements SAMFileWriter {
+
+  private static final byte[] BAM_MAGIC = { 'B', 'A', 'M', 1 };
+
+  private final SAMFileHeader header;
+  private final ParallelBlockCompressedOutputStream out;
+  private final BAMRecordCodec codec;
+  private final BAMIndexer indexer;
+  private ProgressLoggerInterface progressLogger;
+
+  /**
+   * Records waiting for the addresses of their blocks, and the known addresses by block number.
+   */
+  private final Deque<PendingRecord> pending = new ArrayDeque<>();
+  private final TreeMap<Long, Long> blockAddresses = new TreeMap<>();
+
+  @SneakyThrows
+  public ParallelBAMFileWriter(@NonNull SAMFileHeader header, @NonNull File file, int nThreads, boolean createIndex) {
+    this.header = header;
+    this.indexer = createIndex ? createIndexer(header, file) : null;
+    this.out = new ParallelBlockCompressedOutputStream(new BufferedOutputStream(new FileOutputStream(file)), nThreads,
+        BlockCompressedOutputStream.getDefaultCompressionLevel());
+    if (indexer != null) {
+      out.listener(this::blockWritten);
+    }
+
+    writeHeader();
+    this.codec = new BAMRecordCodec(header);
+    codec.setOutputStream(out, file.getPath());
+  }
+
+  @Override
+  public void addAlignment(SAMRecord record) {
+    if (indexer == null) {
+      codec.encode(record);
+    } else {
+      val entry = new PendingRecord(record, out.getPosition(), -1);
+      pending.add(entry);
+      codec.encode(record);
+      entry.end = out.getPosition();
+    }
+
+    if (progressLogger != null) {
+      progressLogger.record(record);
+    }
+  }
+
+  @Override
+  public SAMFileHeader getFileHeader() {
+    return header;
+  }
+
+  @Override
+  public void setProgressLogger(ProgressLoggerInterface logger) {
+    progressLogger = logger;
+  }
+
+  @Override
+  @SneakyThrows
+  public void close() {
+    out.flush();
+    out.close();
+    if (indexer != null) {
+      indexRecords(Long.MAX_VALUE);
+      indexer.finish();
+    }
+  }
+
+  private void writeHeader() {
+    val text = new StringWriter();
+    new SAMTextHeaderCodec().encode(text, header);
+
+    val binary = new BinaryCodec(out);
+    binary.writeBytes(BAM_MAGIC);
+    binary.writeString(text.toString(), true, false);
+    binary.writeInt(header.getSequenceDictionary().size());
+    for (val sequence : header.getSequenceDictionary().getSequences()) {
+      binary.writeString(sequence.getSequenceName(), true, true);
+      binary.writeInt(sequence.getSequenceLength());
+    }
+  }
+
+  /**
+   * The address of the block after the one written is known too, which resolves records ending at a block boundary.
+   */
+  private void blockWritten(long blockNumber, long address, int size) {
+    blockAddresses.put(blockNumber, address);
+    blockAddresses.put(blockNumber + 1, address + size);
+    indexRecords(blockNumber + 1);
+  }
+
+  /**
+   * Indexes the pending records that end in or before block {@code lastBlock}, and forgets the addresses of blocks no
+   * pending record starts in.
+   */
+  private void indexRecords(long lastBlock) {
+    while (!pending.isEmpty() && pending.peek().end >= 0 && getBlockAddress(pending.peek().end) <= lastBlock) {
+      val entry = pending.poll();
+      val chunk = new Chunk(toVirtualFilePointer(entry.start), toVirtualFilePointer(entry.end));
+      indexer.processAlignment(new IndexedRecord(entry.record, chunk));
+    }
+
+    if (!pending.isEmpty()) {
+      blockAddresses.headMap(getBlockAddress(pending.peek().start)).clear();
+    } else if (!blockAddresses.isEmpty()) {
+      blockAddresses.headMap(blockAddresses.lastKey()).clear();
+    }
+  }
+
+  private long toVirtualFilePointer(long position) {
+    val address = blockAddresses.get(getBlockAddress(position));
+    return ParallelBlockCompressedOutputStream.makeFilePointer(address, getBlockOffset(position));
+  }
+
+  /**
+   * Same conditions and naming as htsjdk's writer: {@code name.bam} is indexed to {@code name.bai}.
+   */
+  private static BAMIndexer createIndexer(SAMFileHeader header, File file) {
+    if (header.getSortOrder() != SortOrder.coordinate) {
+      log.warn("Not creating BAM index since not sorted by coordinates: {}", header.getSortOrder());
+      return null;
+    }
+
+    val path = file.getPath();
+    val indexPath = path.endsWith(".bam") ? path.substring(0, path.length() - 4) + ".bai" : path + ".bai";
+    return new BAMIndexer(new File(indexPath), header);
+  }
+
+  /**
+   * The parts of a record read by the indexer, with the record's location in the output. The file source of a record
+   * can only be set by a subclass.
+   */
+  private static class IndexedRecord extends SAMRecord {
+
+    private IndexedRecord(SAMRecord record, Chunk chunk) {
+      super(record.getHeader());
+      setReferenceIndex(record.getReferenceIndex());
+      setAlignmentStart(record.getAlignmentStart());
+      setCigar(record.getCigar());
+      setFlags(record.getFlags());
+      setFileSource(new SAMFileSource(null, new BAMFileSpan(chunk)));
+    }
+
+  }
+
+  @AllArgsConstructor
+  private static class PendingRecord {
+
+    private final SAMRecord record;
+    private final long start;
+    private long end;
+
+  }
+
+}
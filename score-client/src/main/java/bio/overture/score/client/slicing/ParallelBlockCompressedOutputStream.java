@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static htsjdk.samtools.util.BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH;
+import static htsjdk.samtools.util.BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
+import static htsjdk.samtools.util.BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE;
+import static htsjdk.samtools.util.BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK;
+import static htsjdk.samtools.util.BlockCompressedStreamConstants.GZIP_BLOCK_PREAMBLE;
+import static htsjdk.samtools.util.BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE;
+
+/**
+ * BGZF output stream that deflates blocks on a pool of threads and writes them to the underlying stream in order.
+ * At most twice the number of threads blocks are in flight at a time.
+ * <p>
+ * The compressed address of a block is only known once the blocks before it are written, so positions in the stream
+ * are reported by {@link #getPosition()} as a block number and offset (packed like a virtual file pointer). A
+ * {@link BlockListener} is told the address of each block as it is written; it is called on the writing thread.
+ */
+public class ParallelBlockCompressedOutputStream extends OutputStream {
+
+  public interface BlockListener {
+
+    void blockWritten(long blockNumber, long address, int size);
+
+  }
+
+  private final OutputStream out;
+  private final ExecutorService executor;
+  private final int maxInFlight;
+  private final ThreadLocal<Deflater> deflaters;
+  private final Set<Deflater> allDeflaters = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+  private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+  private BlockListener listener;
+
+  private byte[] buffer = new byte[DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+  private int count = 0;
+  private long blockNumber = 0;
+  private long writtenBlocks = 0;
+  private long address = 0;
+  private boolean closed = false;
+
+  public ParallelBlockCompressedOutputStream(@NonNull OutputStream out, int nThreads, int compressionLevel) {
+    this.out = out;
+    this.executor = Executors.newFixedThreadPool(nThreads,
+        new ThreadFactoryBuilder().setNameFormat("bgzf-compress-%d").setDaemon(true).build());
+    this.maxInFlight = 2 * nThreads;
+    this.deflaters = ThreadLocal.withInitial(() -> {
+      val deflater = new Deflater(compressionLevel, true);
+      allDeflaters.add(deflater);
+      return deflater;
+    });
+  }
+
+  public ParallelBlockCompressedOutputStream listener(BlockListener blockListener) {
+    listener = blockListener;
+    return this;
+  }
+
+  /**
+   * @return block number and offset within the block of the next byte written
+   */
+  public long getPosition() {
+    return makeFilePointer(blockNumber, count);
+  }
+
+  /**
+   * Packs a block number or address and an offset within the block the way BGZF virtual file pointers are.
+   */
+  static long makeFilePointer(long block, int offset) {
+    return block << 16 | offset;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    buffer[count++] = (byte) b;
+    if (count == buffer.length) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      val n = Math.min(len, buffer.length - count);
+      System.arraycopy(b, off, buffer, count, n);
+      count += n;
+      off += n;
+      len -= n;
+      if (count == buffer.length) {
+        submitBlock();
+      }
+    }
+  }
+
+  /**
+   * Ends the current block and waits for all blocks to be written.
+   */
+  @Override
+  public void flush() throws IOException {
+    submitBlock();
+    drain(0);
+    out.flush();
+  }
+
+  /**
+   * Writes the remaining blocks followed by the BGZF end-of-file marker.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      flush();
+      out.write(EMPTY_GZIP_BLOCK);
+      out.close();
+    } finally {
+      executor.shutdownNow();
+      endDeflaters();
+    }
+  }
+
+  /**
+   * Releases the native memory of the per-thread deflaters once the pool has stopped using them.
+   */
+  private void endDeflaters() {
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (allDeflaters) {
+      allDeflaters.forEach(Deflater::end);
+      allDeflaters.clear();
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    if (count == 0) {
+      return;
+    }
+
+    val data = Arrays.copyOf(buffer, count);
+    inFlight.add(executor.submit(() -> compress(data)));
+    blockNumber++;
+    count = 0;
+    drain(maxInFlight);
+  }
+
+  /**
+   * Writes completed blocks in order, waiting while more than {@code limit} are in flight.
+   */
+  private void drain(int limit) throws IOException {
+    while (!inFlight.isEmpty() && (inFlight.size() > limit || inFlight.peek().isDone())) {
+      val block = getBlock(inFlight.poll());
+      out.write(block);
+      if (listener != null) {
+        listener.blockWritten(writtenBlocks, address, block.length);
+      }
+      writtenBlocks++;
+      address += block.length;
+    }
+  }
+
+  @SneakyThrows
+  private static byte[] getBlock(Future<byte[]> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Compresses {@code data} into a complete BGZF block. Data that doesn't shrink is stored uncompressed, as htsjdk's
+   * {@code BlockCompressedOutputStream} does.
+   */
+  private byte[] compress(byte[] data) {
+    val deflater = deflaters.get();
+    deflater.reset();
+    deflater.setInput(data);
+    deflater.finish();
+    val compressed = new byte[MAX_COMPRESSED_BLOCK_SIZE - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH];
+    int size = deflater.deflate(compressed);
+
+    if (!deflater.finished()) {
+      val store = new Deflater(Deflater.NO_COMPRESSION, true);
+      try {
+        store.setInput(data);
+        store.finish();
+        size = store.deflate(compressed);
+      } finally {
+        store.end();
+      }
+    }
+
+    val crc = new CRC32();
+    crc.update(data);
+
+    val blockSize = BLOCK_HEADER_LENGTH + size + BLOCK_FOOTER_LENGTH;
+    val block = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+    block.put(GZIP_BLOCK_PREAMBLE);
+    block.putShort((short) (blockSize - 1));
+    block.put(compressed, 0, size);
+    block.putInt((int) crc.getValue());
+    block.putInt(data.length);
+    return block.array();
+  }
+
+}
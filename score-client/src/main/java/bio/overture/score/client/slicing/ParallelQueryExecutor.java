@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a multi-region query as several shards, each on its own reader, and concatenates the results in shard order.
+ * <p>
+ * Intervals are expected to be sorted and optimized (see {@link QueryInterval#optimizeIntervals}), so shards are
+ * contiguous runs of coordinates and concatenation preserves coordinate order. An alignment spanning a shard boundary is
+ * only kept by the first shard that returns it, which makes the output identical to a single
+ * {@code reader.query(intervals, containedOnly)} call.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ParallelQueryExecutor {
+
+  @NonNull
+  private final SamReaderSource source;
+  private final int nThreads;
+  private final boolean containedOnly;
+
+  @SneakyThrows
+  public List<SAMRecord> query(@NonNull QueryInterval[] intervals) {
+    val shards = partition(intervals, nThreads);
+    log.debug("Querying {} intervals in {} shards", intervals.length, shards.size());
+
+    val executor = Executors.newFixedThreadPool(shards.size());
+    try {
+      val results = ImmutableList.<Future<List<SAMRecord>>> builder();
+      int offset = 0;
+      for (val shard : shards) {
+        val previous = offset == 0 ? null : intervals[offset - 1];
+        results.add(executor.submit(() -> queryShard(shard, previous)));
+        offset += shard.length;
+      }
+
+      val alignments = Lists.<SAMRecord> newArrayList();
+      for (val result : results.build()) {
+        try {
+          alignments.addAll(result.get());
+        } catch (ExecutionException e) {
+          log.debug("Failed to query shard", e.getCause());
+          throw e.getCause();
+        }
+      }
+      return alignments;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @SneakyThrows
+  private List<SAMRecord> queryShard(QueryInterval[] shard, QueryInterval previous) {
+    @Cleanup
+    val reader = source.open();
+    val alignments = Lists.<SAMRecord> newArrayList();
+
+    @Cleanup
+    val iterator = reader.query(shard, containedOnly);
+    while (iterator.hasNext()) {
+      val record = iterator.next();
+      // Already returned by the preceding shard
+      if (!containedOnly && previous != null && overlaps(record, previous)) {
+        continue;
+      }
+      alignments.add(record);
+    }
+
+    return alignments;
+  }
+
+  /**
+   * Splits {@code intervals} into at most {@code count} contiguous, similarly sized shards.
+   */
+  static List<QueryInterval[]> partition(@NonNull QueryInterval[] intervals, int count) {
+    val shardCount = Math.max(1, Math.min(count, intervals.length));
+    val shards = Lists.<QueryInterval[]> newArrayListWithCapacity(shardCount);
+
+    int from = 0;
+    for (int i = 0; i < shardCount; i++) {
+      val to = (int) ((long) intervals.length * (i + 1) / shardCount);
+      shards.add(Arrays.copyOfRange(intervals, from, to));
+      from = to;
+    }
+
+    return shards;
+  }
+
+  /**
+   * Same overlap semantics as the BAM query iterator: non-positive interval bounds are open ended and unmapped reads
+   * placed with their mate occupy a single base.
+   */
+  static boolean overlaps(SAMRecord record, QueryInterval interval) {
+    if (record.getReferenceIndex() != interval.referenceIndex) {
+      return false;
+    }
+
+    val start = record.getAlignmentStart();
+    val end = record.getReadUnmappedFlag() ? start : record.getAlignmentEnd();
+    return (interval.end <= 0 || start <= interval.end) && end >= interval.start;
+  }
+
+}
@@ -22,11 +22,7 @@ import htsjdk.samtools.SAMFileHeader;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
-import lombok.val;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -38,14 +34,7 @@ public final class QueryHandler {
   }
 
   public static QueryInterval[] convertSlices(@NonNull SAMFileHeader header, @NonNull List<Slice> slices) {
-    val converter = new SliceConverter(header.getSequenceDictionary());
-    val intervals = converter.convert(slices);
-
-    // remove nulls - happens when the query specifies sequences that don't exist in SQ
-    List<QueryInterval> list = new ArrayList<QueryInterval>(Arrays.asList(intervals));
-    list.removeAll(Collections.singleton(null));
-    val cleaned = list.toArray(new QueryInterval[list.size()]);
-
-    return QueryInterval.optimizeIntervals(cleaned); // otherwise triggers an assertion
+    // slices on sequences that don't exist in SQ are dropped
+    return RegionSet.of(slices).toQueryIntervals(header.getSequenceDictionary());
   }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import bio.overture.score.client.transport.ByteRange;
+import com.google.common.collect.Lists;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.QueryInterval;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.Collections;
+import java.util.List;
+
+import static htsjdk.samtools.util.BlockCompressedFilePointerUtil.getBlockAddress;
+import static htsjdk.samtools.util.BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE;
+
+/**
+ * Plans the byte ranges of a BAM file that a query will read, using the BAI to resolve the chunks overlapping each
+ * interval.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ReadPlanner {
+
+  /**
+   * Ranges separated by less than this are merged into a single request.
+   */
+  public static final long DEFAULT_MAX_GAP = 256L * 1024L;
+
+  /**
+   * Merged ranges are split into requests of at most this size so they can be fetched concurrently.
+   */
+  public static final long DEFAULT_MAX_RANGE_SIZE = 8L * 1024L * 1024L;
+
+  public static List<ByteRange> plan(@NonNull BAMIndex index, @NonNull QueryInterval[] intervals) {
+    return plan(index, intervals, DEFAULT_MAX_GAP, DEFAULT_MAX_RANGE_SIZE);
+  }
+
+  public static List<ByteRange> plan(@NonNull BAMIndex index, @NonNull QueryInterval[] intervals, long maxGap,
+      long maxRangeSize) {
+    val ranges = Lists.<ByteRange> newArrayList();
+    for (val interval : intervals) {
+      // Same interval normalization as BAMFileReader
+      val start = interval.start <= 0 ? 1 : interval.start;
+      val end = interval.end <= 0 ? -1 : interval.end;
+
+      val span = index.getSpanOverlapping(interval.referenceIndex, start, end);
+      if (span == null) {
+        continue;
+      }
+
+      for (val chunk : span.getChunks()) {
+        // The chunk end points into its last block, which has to be read entirely
+        ranges.add(new ByteRange(getBlockAddress(chunk.getChunkStart()),
+            getBlockAddress(chunk.getChunkEnd()) + MAX_COMPRESSED_BLOCK_SIZE));
+      }
+    }
+
+    return split(coalesce(ranges, maxGap), maxRangeSize);
+  }
+
+  /**
+   * Sorts {@code ranges} and merges the ones that overlap or are separated by at most {@code maxGap} bytes.
+   */
+  static List<ByteRange> coalesce(@NonNull List<ByteRange> ranges, long maxGap) {
+    val sorted = Lists.newArrayList(ranges);
+    Collections.sort(sorted);
+
+    val result = Lists.<ByteRange> newArrayList();
+    ByteRange current = null;
+    for (val range : sorted) {
+      if (current == null) {
+        current = range;
+      } else if (range.getStart() <= current.getEnd() + maxGap) {
+        current = new ByteRange(current.getStart(), Math.max(current.getEnd(), range.getEnd()));
+      } else {
+        result.add(current);
+        current = range;
+      }
+    }
+    if (current != null) {
+      result.add(current);
+    }
+
+    return result;
+  }
+
+  static List<ByteRange> split(@NonNull List<ByteRange> ranges, long maxRangeSize) {
+    val result = Lists.<ByteRange> newArrayList();
+    for (val range : ranges) {
+      for (long start = range.getStart(); start < range.getEnd(); start += maxRangeSize) {
+        result.add(new ByteRange(start, Math.min(range.getEnd(), start + maxRangeSize)));
+      }
+    }
+
+    return result;
+  }
+
+}
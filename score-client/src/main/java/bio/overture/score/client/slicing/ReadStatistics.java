@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTagUtil;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts of a stream of alignments: total, mapped, per read group and, for mapped alignments, per query region. When a
+ * bin size is given, the aligned bases of each region are also summed per bin to report mean depth.
+ * <p>
+ * Alignments must arrive in coordinate order, as returned by a query over {@code intervals}; each is only compared to
+ * the regions that can still overlap it.
+ */
+public class ReadStatistics {
+
+  private static final String UNASSIGNED = "(none)";
+  private static final short READ_GROUP_TAG = SAMTagUtil.getSingleton().RG;
+
+  /**
+   * Most depth bins reported over all regions, which bounds memory and report size.
+   */
+  public static final long MAX_BINS = 10_000_000L;
+
+  private final SAMFileHeader header;
+  private final int binSize;
+
+  /**
+   * Regions, with open ends resolved to the sequence length.
+   */
+  private final int[] references;
+  private final int[] starts;
+  private final int[] ends;
+
+  /**
+   * Counts.
+   */
+  @Getter
+  private long total = 0;
+  @Getter
+  private long mapped = 0;
+  private final long[] regionCounts;
+  private final Map<String, Integer> readGroupIndex = new HashMap<>();
+  private final long[] readGroupCounts;
+  private final long[][] bases;
+
+  private int firstRegion = 0;
+
+  public ReadStatistics(@NonNull SAMFileHeader header, @NonNull QueryInterval[] intervals, int binSize) {
+    this.header = header;
+    this.binSize = binSize;
+
+    val count = intervals.length;
+    references = new int[count];
+    starts = new int[count];
+    ends = new int[count];
+    for (int i = 0; i < count; i++) {
+      val interval = intervals[i];
+      references[i] = interval.referenceIndex;
+      starts[i] = Math.max(1, interval.start);
+      ends[i] = interval.end <= 0 ? header.getSequence(interval.referenceIndex).getSequenceLength() : interval.end;
+    }
+    regionCounts = new long[count];
+
+    val readGroups = header.getReadGroups();
+    for (int i = 0; i < readGroups.size(); i++) {
+      readGroupIndex.put(readGroups.get(i).getId(), i);
+    }
+    readGroupCounts = new long[readGroups.size() + 1];
+
+    // Bins of a region are allocated when its first alignment is counted
+    bases = new long[binSize > 0 ? count : 0][];
+    long bins = 0;
+    for (int i = 0; i < bases.length; i++) {
+      bins += getBinCount(i);
+    }
+    if (bins > MAX_BINS) {
+      throw new IllegalArgumentException(String.format(
+          "A bin size of %d gives %d depth bins over the queried regions, more than the maximum of %d. "
+              + "Use a larger --stats-bin-size or smaller regions", binSize, bins, MAX_BINS));
+    }
+  }
+
+  public void add(@NonNull SAMRecord record) {
+    total++;
+    val readGroup = (String) record.getAttribute(READ_GROUP_TAG);
+    val index = readGroup == null ? null : readGroupIndex.get(readGroup);
+    readGroupCounts[index == null ? readGroupCounts.length - 1 : index]++;
+
+    if (record.getReadUnmappedFlag()) {
+      return;
+    }
+    mapped++;
+
+    val reference = record.getReferenceIndex();
+    val start = record.getAlignmentStart();
+    val end = record.getAlignmentEnd();
+    while (firstRegion < references.length
+        && (references[firstRegion] < reference || references[firstRegion] == reference && ends[firstRegion] < start)) {
+      firstRegion++;
+    }
+    for (int i = firstRegion; i < references.length && references[i] == reference && starts[i] <= end; i++) {
+      if (ends[i] >= start) {
+        regionCounts[i]++;
+        if (binSize > 0) {
+          addBases(i, record);
+        }
+      }
+    }
+  }
+
+  public long getRegionCount(int region) {
+    return regionCounts[region];
+  }
+
+  /**
+   * @return mean depth of bin {@code bin} of region {@code region}
+   */
+  public double getDepth(int region, int bin) {
+    val binStart = starts[region] + bin * binSize;
+    val binEnd = Math.min(ends[region], binStart + binSize - 1);
+    val regionBases = bases[region];
+    return regionBases == null ? 0 : (double) regionBases[bin] / (binEnd - binStart + 1);
+  }
+
+  /**
+   * One line per count: {@code type, name, start, end, value}, with {@code .} for fields that don't apply.
+   */
+  public void writeTsv(@NonNull Writer writer) {
+    val out = new PrintWriter(writer);
+    out.println("#type\tname\tstart\tend\tvalue");
+    out.printf("total\t.\t.\t.\t%d%n", total);
+    out.printf("mapped\t.\t.\t.\t%d%n", mapped);
+    for (int i = 0; i < readGroupCounts.length; i++) {
+      out.printf("read_group\t%s\t.\t.\t%d%n", getReadGroupName(i), readGroupCounts[i]);
+    }
+    for (int i = 0; i < references.length; i++) {
+      out.printf("region\t%s\t%d\t%d\t%d%n", getSequenceName(i), starts[i], ends[i], regionCounts[i]);
+    }
+    for (int i = 0; i < bases.length; i++) {
+      for (int bin = 0; bin < getBinCount(i); bin++) {
+        val binStart = starts[i] + bin * binSize;
+        out.printf("depth\t%s\t%d\t%d\t%.2f%n", getSequenceName(i), binStart,
+            Math.min(ends[i], binStart + binSize - 1), getDepth(i, bin));
+      }
+    }
+    out.flush();
+  }
+
+  public void writeJson(@NonNull Writer writer) throws IOException {
+    val report = Maps.<String, Object> newLinkedHashMap();
+    report.put("total", total);
+    report.put("mapped", mapped);
+
+    val readGroups = Maps.<String, Long> newLinkedHashMap();
+    for (int i = 0; i < readGroupCounts.length; i++) {
+      readGroups.put(getReadGroupName(i), readGroupCounts[i]);
+    }
+    report.put("readGroups", readGroups);
+
+    val regions = Lists.<Map<String, Object>> newArrayList();
+    for (int i = 0; i < references.length; i++) {
+      val region = Maps.<String, Object> newLinkedHashMap();
+      region.put("sequence", getSequenceName(i));
+      region.put("start", starts[i]);
+      region.put("end", ends[i]);
+      region.put("count", regionCounts[i]);
+      if (binSize > 0) {
+        val depth = new double[getBinCount(i)];
+        for (int bin = 0; bin < depth.length; bin++) {
+          depth[bin] = Math.round(getDepth(i, bin) * 100) / 100.0;
+        }
+        region.put("binSize", binSize);
+        region.put("depth", depth);
+      }
+      regions.add(region);
+    }
+    report.put("regions", regions);
+
+    new ObjectMapper().writeValue(writer, report);
+  }
+
+  /**
+   * Adds the aligned bases of {@code record} that fall in region {@code region} to its bins.
+   */
+  private void addBases(int region, SAMRecord record) {
+    if (bases[region] == null) {
+      bases[region] = new long[getBinCount(region)];
+    }
+    for (val block : record.getAlignmentBlocks()) {
+      val blockStart = Math.max(block.getReferenceStart(), starts[region]);
+      val blockEnd = Math.min(block.getReferenceStart() + block.getLength() - 1, ends[region]);
+      int position = blockStart;
+      while (position <= blockEnd) {
+        val bin = (position - starts[region]) / binSize;
+        val binEnd = Math.min(starts[region] + (bin + 1) * binSize - 1, blockEnd);
+        bases[region][bin] += binEnd - position + 1;
+        position = binEnd + 1;
+      }
+    }
+  }
+
+  private int getBinCount(int region) {
+    return (ends[region] - starts[region]) / binSize + 1;
+  }
+
+  private String getSequenceName(int region) {
+    return header.getSequence(references[region]).getSequenceName();
+  }
+
+  private String getReadGroupName(int index) {
+    return index < header.getReadGroups().size() ? header.getReadGroups().get(index).getId() : UNASSIGNED;
+  }
+
+}
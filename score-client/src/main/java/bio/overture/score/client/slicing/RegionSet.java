@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import com.google.common.collect.Maps;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMSequenceDictionary;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Set of query regions, kept per sequence as start/end pairs packed into a {@code long[]}. On first use the regions of
+ * each sequence are sorted and overlapping or abutting regions are merged in a single pass, so the result can be
+ * queried without {@link QueryInterval#optimizeIntervals(QueryInterval[])}.
+ * <p>
+ * Coordinates are 1-based and inclusive. A start or end of 0 or less means the start or end of the sequence.
+ */
+public class RegionSet {
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final Map<String, Regions> sequences = new LinkedHashMap<>();
+  private int size = 0;
+
+  public static RegionSet of(@NonNull List<Slice> slices) {
+    val result = new RegionSet();
+    for (val slice : slices) {
+      result.add(slice.getSequence(), slice.getStart(), slice.getEnd());
+    }
+    return result;
+  }
+
+  /**
+   * Reads the regions of a BED file (optionally gzipped). BED starts are 0-based, so 1 is added to them; header,
+   * {@code track} and {@code browser} lines are skipped.
+   */
+  @SneakyThrows
+  public static RegionSet readBed(@NonNull File bedFile) {
+    InputStream in = new FileInputStream(bedFile);
+    if (bedFile.getName().endsWith(".gz")) {
+      in = new GZIPInputStream(in);
+    }
+
+    try (val reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), 1 << 16)) {
+      return readBed(reader);
+    }
+  }
+
+  @SneakyThrows
+  static RegionSet readBed(@NonNull Reader reader) {
+    val lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    val result = new RegionSet();
+    String line;
+    int lineNumber = 0;
+    while ((line = lines.readLine()) != null) {
+      lineNumber++;
+      if (line.isEmpty() || line.startsWith("#") || line.startsWith("track") || line.startsWith("browser")) {
+        continue;
+      }
+
+      val fields = WHITESPACE.split(line, 4);
+      if (fields.length < 3) {
+        throw new IllegalArgumentException(String.format("Invalid BED line %d: %s", lineNumber, line));
+      }
+      try {
+        result.add(fields[0], Integer.parseInt(fields[1]) + 1, Integer.parseInt(fields[2]));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("Invalid BED line %d: %s", lineNumber, line), e);
+      }
+    }
+    return result;
+  }
+
+  public synchronized void add(@NonNull String sequence, int start, int end) {
+    sequences.computeIfAbsent(sequence, s -> new Regions()).add(start, end);
+    size++;
+  }
+
+  /**
+   * @return number of regions added, before merging
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Maps the merged regions onto {@code dictionary}, ordered by sequence index then start. Regions on sequences that
+   * aren't in the dictionary are dropped.
+   */
+  public synchronized QueryInterval[] toQueryIntervals(@NonNull SAMSequenceDictionary dictionary) {
+    val indexed = new ArrayList<Map.Entry<Integer, Regions>>();
+    int count = 0;
+    for (val entry : sequences.entrySet()) {
+      val index = dictionary.getSequenceIndex(entry.getKey());
+      if (index != -1) {
+        val regions = entry.getValue();
+        regions.merge();
+        indexed.add(Maps.immutableEntry(index, regions));
+        count += regions.size;
+      }
+    }
+    indexed.sort(Map.Entry.comparingByKey());
+
+    val result = new QueryInterval[count];
+    int i = 0;
+    for (val entry : indexed) {
+      val regions = entry.getValue();
+      for (int j = 0; j < regions.size; j++) {
+        result[i++] = new QueryInterval(entry.getKey(), getStart(regions.packed[j]), toQueryEnd(getEnd(regions.packed[j])));
+      }
+    }
+    return result;
+  }
+
+  private static long pack(int start, int end) {
+    return (long) start << 32 | end & 0xFFFFFFFFL;
+  }
+
+  private static int getStart(long packed) {
+    return (int) (packed >> 32);
+  }
+
+  private static int getEnd(long packed) {
+    return (int) packed;
+  }
+
+  private static int toQueryEnd(int end) {
+    return end == Integer.MAX_VALUE ? -1 : end;
+  }
+
+  /**
+   * Regions of one sequence. Open ends are stored as {@code Integer.MAX_VALUE} so they sort and merge as the largest
+   * end.
+   */
+  private static class Regions {
+
+    private long[] packed = new long[16];
+    private int size = 0;
+    private boolean merged = true;
+
+    private void add(int start, int end) {
+      if (size == packed.length) {
+        packed = Arrays.copyOf(packed, size * 2);
+      }
+      packed[size++] = pack(start, end <= 0 ? Integer.MAX_VALUE : end);
+      merged = false;
+    }
+
+    private void merge() {
+      if (merged) {
+        return;
+      }
+      Arrays.sort(packed, 0, size);
+
+      int last = 0;
+      for (int i = 1; i < size; i++) {
+        val start = getStart(packed[i]);
+        val end = getEnd(packed[i]);
+        val lastEnd = getEnd(packed[last]);
+        if (start <= (long) lastEnd + 1) {
+          if (end > lastEnd) {
+            packed[last] = pack(getStart(packed[last]), end);
+          }
+        } else {
+          packed[++last] = packed[i];
+        }
+      }
+      size = Math.min(size, last + 1);
+      merged = true;
+    }
+
+  }
+
+}
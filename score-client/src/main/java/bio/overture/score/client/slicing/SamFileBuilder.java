@@ -18,10 +18,14 @@
 package bio.overture.score.client.slicing;
 
 import bio.overture.score.client.command.ViewCommand.OutputFormat;
+import bio.overture.score.client.command.ViewCommand.StatsFormat;
 import bio.overture.score.client.metadata.Entity;
+import bio.overture.score.client.transport.RangeBuffer;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import htsjdk.samtools.MergingSamRecordIterator;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
@@ -30,11 +34,14 @@ import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMProgramRecord;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamFileHeaderMerger;
 import htsjdk.samtools.SamInputResource;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.RuntimeIOException;
 import lombok.Cleanup;
 import lombok.NonNull;
@@ -47,10 +54,24 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
 @Slf4j
 public class SamFileBuilder {
@@ -58,6 +79,12 @@ public class SamFileBuilder {
   // Arbitrary limit - actual max for file name (not including path) is probably 255
   public final static int MAX_FILENAME_LENGTH = 128;
 
+  // Regions are only listed individually in the session log up to this many
+  public final static int MAX_LOGGED_REGIONS = 100;
+
+  // Readers (and their connections) open at once when merging; larger cohorts are merged in batches
+  public final static int DEFAULT_MERGE_BATCH_SIZE = 64;
+
   /**
    * Options
    */
@@ -69,6 +96,12 @@ public class SamFileBuilder {
   private boolean outputIndex = false;
   private boolean stdout = false;
   private File bedFile;
+  private RegionSet regions;
+  private StatsFormat statsFormat = StatsFormat.TSV;
+  private int statsBinSize = 0;
+  private int threads = 1;
+  private int compressionThreads = 1;
+  private int mergeBatchSize = DEFAULT_MERGE_BATCH_SIZE;
 
   /**
    * Informational - for @PG record
@@ -90,11 +123,43 @@ public class SamFileBuilder {
 
   private boolean queryCompiledFlag = false;
   private SamReader reader;
+  private SamReaderSource readerSource;
+  private RangeBuffer rangeBuffer;
 
   public SamFileBuilder reader(SamReader r) {
     reader = r;
     return this;
   }
+  public SamFileBuilder readerSource(SamReaderSource source) {
+    readerSource = source;
+    return this;
+  }
+
+  public SamFileBuilder rangeBuffer(RangeBuffer buffer) {
+    rangeBuffer = buffer;
+    return this;
+  }
+
+  public SamFileBuilder threads(int count) {
+    threads = count;
+    return this;
+  }
+
+  public SamFileBuilder compressionThreads(int count) {
+    compressionThreads = count;
+    return this;
+  }
+
+  public SamFileBuilder mergeBatchSize(int size) {
+    mergeBatchSize = size;
+    return this;
+  }
+
+  public SamFileBuilder session(Logger logger) {
+    session = logger;
+    return this;
+  }
+
   public SamFileBuilder containedOnly(boolean flag) {
     containedOnly = flag;
     return this;
@@ -130,6 +195,21 @@ public class SamFileBuilder {
     return this;
   }
 
+  public SamFileBuilder regions(RegionSet regionSet) {
+    regions = regionSet;
+    return this;
+  }
+
+  public SamFileBuilder statsFormat(StatsFormat format) {
+    statsFormat = format;
+    return this;
+  }
+
+  public SamFileBuilder statsBinSize(int size) {
+    statsBinSize = size;
+    return this;
+  }
+
   public SamFileBuilder outputIndex(boolean flag) {
     outputIndex = flag;
     return this;
@@ -259,6 +339,28 @@ public class SamFileBuilder {
     return createSamFileWriter(outputHeader, fileName);
   }
 
+  /**
+   * Constructs writer for merged output. The merged header is used as is when the original header is requested;
+   * otherwise it is rebuilt with our @PG record and all of the merged read groups.
+   */
+  @SneakyThrows
+  private SAMFileWriter prepareMergedOutput(@NonNull String fileName, @NonNull SAMFileHeader mergedHeader) {
+    if (stdout) {
+      session.info("Preparing to write merged output to stdout");
+    } else {
+      session.info("Preparing to write merged output to {}", fileName);
+    }
+
+    if (useOriginalHeader) {
+      return createSamFileWriter(mergedHeader, fileName);
+    }
+
+    val outputHeader = createNewHeader(mergedHeader);
+    outputHeader.setReadGroups(mergedHeader.getReadGroups());
+    outputHeader.setSortOrder(SortOrder.coordinate);
+    return createSamFileWriter(outputHeader, fileName);
+  }
+
   /**
    * Appends output path to output file name.
    * @param fileName File name
@@ -278,9 +380,17 @@ public class SamFileBuilder {
    * @param reader
    * @param entity
    */
-  @SneakyThrows
   private void createHeaderOnly(SamReader reader, Entity entity) {
-    val sourceHeader = reader.getFileHeader();
+    createHeaderOnly(reader.getFileHeader(), entity);
+  }
+
+  /**
+   * Outputs only the supplied header of the source SAM/BAM file.
+   * @param sourceHeader
+   * @param entity
+   */
+  @SneakyThrows
+  private void createHeaderOnly(SAMFileHeader sourceHeader, Entity entity) {
     val outputFileName = generateHeaderOnlyOutputFileName(entity);
 
     @Cleanup
@@ -322,11 +432,33 @@ public class SamFileBuilder {
    */
   public QueryInterval[] normalizeQueries(SamReader reader, List<String> queries) {
     val sourceHeader = reader.getFileHeader();
+    val regionSet = getRegions(queries);
+
+    val intervals = regionSet.toQueryIntervals(sourceHeader.getSequenceDictionary());
+    session.info("  Merged abutting and overlapping intervals into {} slices", intervals.length);
+
+    if (!queryCompiledFlag && intervals.length <= MAX_LOGGED_REGIONS) {
+      for (QueryInterval i : intervals) {
+        session.info("  {}:{}-{}", sourceHeader.getSequence(i.referenceIndex).getSequenceName(), i.start, i.end);
+      }
+    }
+    queryCompiledFlag = true;
+    return intervals;
+  }
+
+  /**
+   * Returns the regions read from the BED file, or parses the query strings.
+   */
+  private RegionSet getRegions(List<String> queries) {
+    if (regions != null) {
+      session.info("  {} regions read from {}", regions.size(), bedFile);
+      return regions;
+    }
 
     session.info("  {} regions specified in query", queries.size());
     log.trace("Slicing: ");
     for (val q : queries) {
-      if (!queryCompiledFlag) {
+      if (!queryCompiledFlag && queries.size() <= MAX_LOGGED_REGIONS) {
         session.info("  {}", q);
       }
       log.trace("  {}", q);
@@ -334,39 +466,60 @@ public class SamFileBuilder {
 
     val slices = QueryHandler.parseQueryStrings(queries);
     session.info("  Parsed {} slices", slices.size());
-
-    val intervals = QueryHandler.convertSlices(sourceHeader, slices);
-    session.info("  Merged abutting and overlapping intervals into {} slices", intervals.length);
-
-    for (QueryInterval i : intervals) {
-      if (!queryCompiledFlag) {
-        session.info("  {}:{}-{}", sourceHeader.getSequence(i.referenceIndex).getSequenceName(), i.start, i.end);
-      }
-    }
-    queryCompiledFlag = true;
-    return intervals;
+    return RegionSet.of(slices);
   }
 
   /**
    * Temporarily changed to public
    *
    * Returns list of SAMRecord alignments that satisfy the specified list of queries. Refers to the <b>containedOnly</b>
-   * member variable.
+   * member variable. When a {@link SamReaderSource} and more than one thread are configured, the intervals are queried
+   * in parallel shards, each with its own reader. When a {@link RangeBuffer} is configured, the BAM blocks the query will
+   * touch are fetched into it beforehand.
    * @param reader Instance of the SAM Reader open to source SAM/BAM file
    * @param intervals Sorted list of queries to run
    * @return Ordered list of alignment records that satisfy the specified queries
    */
   public List<SAMRecord> doQuery(SamReader reader, QueryInterval[] intervals) {
-    val alignments = Lists.<SAMRecord> newArrayList();
-    val iterator = reader.query(intervals, containedOnly);
-    while (iterator.hasNext()) {
-      val record = iterator.next();
-      alignments.add(record);
+    try {
+      prefetch(reader, intervals);
+      if (readerSource != null && threads > 1 && intervals.length > 1) {
+        session.info("    Querying {} regions using {} threads", intervals.length, threads);
+        val alignments = new ParallelQueryExecutor(readerSource, threads, containedOnly).query(intervals);
+        session.info("    Query returned {} alignments (entirely contained = {})", alignments.size(), containedOnly);
+        return alignments;
+      }
+
+      val alignments = Lists.<SAMRecord> newArrayList();
+      val iterator = reader.query(intervals, containedOnly);
+      while (iterator.hasNext()) {
+        val record = iterator.next();
+        alignments.add(record);
+      }
+      iterator.close();
+
+      session.info("    Query returned {} alignments (entirely contained = {})", alignments.size(), containedOnly);
+      return alignments;
+    } finally {
+      if (rangeBuffer != null) {
+        rangeBuffer.clear();
+      }
+    }
+  }
+
+  /**
+   * Only BAM is planned: the CRAI is exposed by htsjdk as a BAI of container start offsets, which does not bound the
+   * extent of the last container.
+   */
+  private void prefetch(SamReader reader, QueryInterval[] intervals) {
+    if (rangeBuffer == null || reader.type() != SamReader.Type.BAM_TYPE || !reader.hasIndex()) {
+      return;
     }
-    iterator.close();
 
-    session.info("    Query returned {} alignments (entirely contained = {})", alignments.size(), containedOnly);
-    return alignments;
+    val ranges = ReadPlanner.plan(reader.indexing().getIndex(), intervals);
+    val bytes = ranges.stream().mapToLong(range -> range.length()).sum();
+    session.info("    Prefetching {} bytes in {} range requests", bytes, ranges.size());
+    rangeBuffer.prefetch(ranges);
   }
 
   /**
@@ -438,6 +591,11 @@ public class SamFileBuilder {
         }
       }
 
+      if (outputFormat == OutputFormat.BAM && compressionThreads > 1) {
+        session.info("Compressing BAM output using {} threads", compressionThreads);
+        return new ParallelBAMFileWriter(header, outFile, compressionThreads, outputIndex);
+      }
+
       return outputFormat == OutputFormat.BAM ? factory.makeBAMWriter(header, true, outFile) : factory
           .makeSAMWriter(header, true, outFile);
     }
@@ -471,13 +629,16 @@ public class SamFileBuilder {
    * @return
    */
   private String injectFileNameModifier(Entity entity, String modifier) {
+    // get extension based on specified output format
+    return injectFileNameModifier(entity, modifier, getExtension(outputFormat));
+  }
+
+  private String injectFileNameModifier(Entity entity, String modifier, String newExtension) {
     val fname = entity.getFileName();
     val srcExtension = getExtension(getSourceType(entity));
     val extensionPos = fname.toLowerCase().indexOf(srcExtension);
     val left = StringUtils.left(fname, extensionPos);
 
-    // get extension based on specified output format
-    val newExtension = getExtension(outputFormat);
     return String.format("%s.%s%s", left, modifier, newExtension);
   }
 
@@ -530,6 +691,37 @@ public class SamFileBuilder {
     return addOutputPath(injectFileNameModifier(entity, "header"));
   }
 
+  /**
+   * Construct output file name for merged output, which has no single source file to name it after.
+   * @param queries - ordered list of queries to embed in output file name
+   * @return output file name
+   */
+  String generateMergedOutputFileName(List<String> queries) {
+    val modifier = bedFile == null ? queries.stream().map(this::encodeQuery).collect(joining("__")) : bedFile.getName();
+    val extension = getExtension(outputFormat);
+    return addOutputPath(handleMaxFilenameLength(String.format("merged.%s%s", modifier, extension), extension));
+  }
+
+  /**
+   * Construct output file name for a statistics report.
+   * @param entity - provides base filename to amend
+   * @param queries - ordered list of queries to embed in output file name
+   * @return output file name
+   */
+  String generateStatsOutputFileName(@NonNull Entity entity, List<String> queries) {
+    String modifier;
+    if (bedFile != null) {
+      modifier = bedFile.getName();
+    } else if (queries.isEmpty()) {
+      modifier = "all";
+    } else {
+      modifier = queries.stream().map(this::encodeQuery).collect(joining("__"));
+    }
+
+    val extension = String.format(".stats.%s", statsFormat.toString().toLowerCase());
+    return addOutputPath(handleMaxFilenameLength(injectFileNameModifier(entity, modifier, extension), ".stats"));
+  }
+
   /**
    * In case of a large number of queries, we truncate the output filename if it is longer than MAX_FILENAME_LENGTH
    * characters long.
@@ -564,6 +756,10 @@ public class SamFileBuilder {
     createHeaderOnly(reader, entity); // use original filename and no query
   }
 
+  public void buildHeaderOnly(@NonNull SAMFileHeader header) {
+    createHeaderOnly(header, entity);
+  }
+
   @SneakyThrows
   public void buildTrimmed() {
     session.info("----- Constructing Trimmed Output for {}", entity.getFileName());
@@ -581,15 +777,199 @@ public class SamFileBuilder {
     createTrimmed(reader, entity, query, alignments);
   }
 
+  /**
+   * Counts the alignments that satisfy the queries, or all alignments when there is no query or index, and writes a
+   * {@link ReadStatistics} report instead of the alignments. Alignments are streamed from the reader as they are
+   * counted.
+   */
   @SneakyThrows
+  public void buildStats() {
+    session.info("----- Constructing Statistics for {}", entity.getFileName());
+    val reader = this.reader == null ? createSamReader() : this.reader;
+    val queried = reader.hasIndex() && (regions != null || !query.isEmpty());
+    val intervals = queried ? normalizeQueries(reader, query) : new QueryInterval[0];
+    val statistics = new ReadStatistics(reader.getFileHeader(), intervals, statsBinSize);
+
+    try {
+      if (queried) {
+        prefetch(reader, intervals);
+      }
+      @Cleanup
+      val iterator = queried ? reader.query(intervals, containedOnly) : reader.iterator();
+      while (iterator.hasNext()) {
+        statistics.add(iterator.next());
+      }
+    } finally {
+      if (rangeBuffer != null) {
+        rangeBuffer.clear();
+      }
+    }
+    session.info("    Counted {} alignments, {} mapped (entirely contained = {})", statistics.getTotal(),
+        statistics.getMapped(), containedOnly);
+
+    if (stdout) {
+      val writer = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+      writeStats(statistics, writer);
+      writer.flush();
+    } else {
+      val outputFileName = generateStatsOutputFileName(entity, query);
+      session.info("Writing statistics to {}", outputFileName);
+      @Cleanup
+      val writer = Files.newBufferedWriter(Paths.get(outputFileName), StandardCharsets.UTF_8);
+      writeStats(statistics, writer);
+    }
+  }
+
+  @SneakyThrows
+  private void writeStats(ReadStatistics statistics, Writer writer) {
+    if (statsFormat == StatsFormat.JSON) {
+      statistics.writeJson(writer);
+    } else {
+      statistics.writeTsv(writer);
+    }
+  }
+
+  /**
+   * Merges the query results of the builder's own reader into a single coordinate-sorted output.
+   */
   public void buildMerged() {
-    session.info("----- Constructing Merged Output");
-    @Cleanup
-    val reader = createSamReader();
-    QueryInterval[] intervals = normalizeQueries(reader, query);
+    val source = reader == null ? (SamReaderSource) this::createSamReader : (SamReaderSource) () -> reader;
+    buildMerged(Collections.singletonList(source), 1);
+  }
+
+  /**
+   * Writes the alignments of all {@code sources} that satisfy the queries to a single coordinate-sorted output. Up to
+   * {@code nThreads} sources are opened and queried at a time. The headers are merged (colliding read group ids are
+   * renamed) and the query iterators are merged through a priority queue, so only the current record of each source is
+   * held in memory.
+   * <p>
+   * At most {@code mergeBatchSize} sources are open at once: larger cohorts are merged in batches into temporary BAM
+   * files, which are then merged in turn.
+   * @param sources Sources of the coordinate-sorted, indexed SAM/BAM files to merge
+   * @param nThreads Number of sources opened and queried concurrently
+   */
+  @SneakyThrows
+  public void buildMerged(@NonNull List<SamReaderSource> sources, int nThreads) {
+    session.info("----- Constructing Merged Output for {} files", sources.size());
+    if (!stdout && outputDir == null) {
+      throw new IllegalStateException("Missing output directory");
+    }
+
+    val regionSet = getRegions(query);
+    List<Callable<Map.Entry<SamReader, CloseableIterator<SAMRecord>>>> level = sources.stream()
+        .map(source -> (Callable<Map.Entry<SamReader, CloseableIterator<SAMRecord>>>) () -> {
+          val reader = source.open();
+          val intervals = regionSet.toQueryIntervals(reader.getFileHeader().getSequenceDictionary());
+          return Maps.immutableEntry(reader, reader.query(intervals, containedOnly));
+        })
+        .collect(toList());
+
+    File tempDir = null;
+    try {
+      while (level.size() > mergeBatchSize) {
+        if (tempDir == null) {
+          val parent = stdout ? Paths.get(System.getProperty("java.io.tmpdir")) : outputDir.toPath();
+          tempDir = Files.createTempDirectory(parent, ".merge-").toFile();
+        }
+        session.info("  Merging {} files in batches of {}", level.size(), mergeBatchSize);
+
+        val next = Lists.<Callable<Map.Entry<SamReader, CloseableIterator<SAMRecord>>>> newArrayList();
+        for (val batch : Lists.partition(level, mergeBatchSize)) {
+          val file = File.createTempFile("batch-", ".bam", tempDir);
+          merge(batch, nThreads, header -> {
+            // Temporary files are read back once, so favour speed over size
+            val factory = new SAMFileWriterFactory();
+            factory.setCompressionLevel(1);
+            return factory.makeBAMWriter(header, true, file);
+          });
+          next.add(() -> {
+            val reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.LENIENT).open(file);
+            return Maps.immutableEntry(reader, reader.iterator());
+          });
+        }
+        level = next;
+      }
 
-    for (QueryInterval q : intervals) {
-      doQuery(reader, Collections.singletonList(q).toArray(new QueryInterval[1]));
+      val count = merge(level, nThreads,
+          header -> prepareMergedOutput(generateMergedOutputFileName(query), header));
+      session.info("    Merged {} alignments (entirely contained = {})", count, containedOnly);
+    } finally {
+      if (tempDir != null) {
+        deleteTempDir(tempDir);
+      }
+    }
+  }
+
+  /**
+   * Merges the records of {@code sources} into the writer created for their merged header.
+   *
+   * @return the number of records written
+   */
+  private long merge(List<Callable<Map.Entry<SamReader, CloseableIterator<SAMRecord>>>> sources, int nThreads,
+      Function<SAMFileHeader, SAMFileWriter> writerFactory) {
+    val iterators = open(sources, nThreads);
+    try {
+      val headers = iterators.keySet().stream().map(SamReader::getFileHeader).collect(toList());
+      val merger = new SamFileHeaderMerger(SortOrder.coordinate, headers, true);
+      if (merger.hasReadGroupCollisions()) {
+        session.info("  Renamed colliding read group ids");
+      }
+
+      @Cleanup
+      val iterator = new MergingSamRecordIterator(merger, iterators, true);
+      @Cleanup
+      val writer = writerFactory.apply(merger.getMergedHeader());
+      long count = 0;
+      while (iterator.hasNext()) {
+        writer.addAlignment(iterator.next());
+        count++;
+      }
+      return count;
+    } finally {
+      iterators.keySet().forEach(CloserUtil::close);
+    }
+  }
+
+  /**
+   * Opens the readers and their record iterators, in source order.
+   */
+  @SneakyThrows
+  private Map<SamReader, CloseableIterator<SAMRecord>> open(
+      List<Callable<Map.Entry<SamReader, CloseableIterator<SAMRecord>>>> sources, int nThreads) {
+    val executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, sources.size())));
+    try {
+      val results = Lists.<Future<Map.Entry<SamReader, CloseableIterator<SAMRecord>>>> newArrayList();
+      for (val source : sources) {
+        results.add(executor.submit(source));
+      }
+
+      val iterators = Maps.<SamReader, CloseableIterator<SAMRecord>> newLinkedHashMap();
+      try {
+        for (val result : results) {
+          val entry = result.get();
+          iterators.put(entry.getKey(), entry.getValue());
+        }
+      } catch (ExecutionException e) {
+        iterators.keySet().forEach(CloserUtil::close);
+        throw e.getCause();
+      }
+      return iterators;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void deleteTempDir(File dir) {
+    val files = dir.listFiles();
+    if (files != null) {
+      for (val file : files) {
+        if (!file.delete()) {
+          log.warn("Could not delete temporary merge file {}", file);
+        }
+      }
+    }
+    if (!dir.delete()) {
+      log.warn("Could not delete temporary merge directory {}", dir);
     }
   }
 
@@ -597,8 +977,9 @@ public class SamFileBuilder {
   public String toString() {
     return "SamFileBuilder [containedOnly=" + containedOnly + ", useOriginalHeader=" + useOriginalHeader
         + ", outputFormat=" + outputFormat + ", query=" + query + ", outputDir=" + outputDir + ", outputIndex="
-        + outputIndex + ", bedFile=" + bedFile + ", session=" + session + ", entity=" + entity + ", samInputResource="
-        + samInputResource + ", queryCompiledFlag=" + queryCompiledFlag + "]";
+        + outputIndex + ", bedFile=" + bedFile + ", statsFormat=" + statsFormat + ", statsBinSize=" + statsBinSize
+        + ", threads=" + threads + ", compressionThreads=" + compressionThreads + ", mergeBatchSize=" + mergeBatchSize + ", session=" + session + ", entity="
+        + entity + ", samInputResource=" + samInputResource + ", queryCompiledFlag=" + queryCompiledFlag + "]";
   }
 
 }
@@ -4,13 +4,16 @@ import bio.overture.score.client.download.DownloadStateStore;
 import bio.overture.score.client.exception.NotResumableException;
 import bio.overture.score.client.exception.NotRetryableException;
 import bio.overture.score.client.exception.RetryableException;
+import bio.overture.score.client.transport.PartTransferEvent;
 import bio.overture.score.core.model.DataChannel;
 import bio.overture.score.core.model.Part;
 import bio.overture.score.core.util.Parts;
 import com.google.common.hash.Hashing;
 import com.google.common.hash.HashingInputStream;
+import com.google.common.io.CountingInputStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.retry.RetryCallback;
@@ -36,6 +39,12 @@ public abstract class AbstractStorageService implements StorageService {
 
   protected abstract Optional<String> getEncryptedAccessToken();
 
+  /**
+   * Adds any headers the data GET of the part needs beyond the range and token.
+   */
+  protected void addDataHeaders(HttpHeaders headers, Part part) {
+  }
+
   @Override public void downloadPart(DataChannel channel, Part part, String objectId, File outputDir)
       throws IOException {
     retry.execute(new RetryCallback<Void, IOException>() {
@@ -43,21 +52,31 @@ public abstract class AbstractStorageService implements StorageService {
       @Override
       public Void doWithRetry(RetryContext ctx) throws IOException {
         log.debug("Download Part URL: {}", part.getUrl());
+        val event = PartTransferEvent.begin(PartTransferEvent.DOWNLOAD, objectId, part.getPartNumber(),
+            ctx.getRetryCount());
         try {
           // the actual GET operation
           log.debug("performing GET {}", part.getUrl());
+          val start = System.nanoTime();
           String md5 = dataTemplate.execute(new URI(part.getUrl()), HttpMethod.GET,
 
               request -> {
                 request.getHeaders().set(HttpHeaders.RANGE, Parts.getHttpRangeValue(part));
                 String token = getEncryptedAccessToken().orElse("");
                 request.getHeaders().set(ICGC_TOKEN_KEY, token);
+                addDataHeaders(request.getHeaders(), part);
               },
 
               response -> {
-                try (HashingInputStream his = new HashingInputStream(Hashing.md5(), response.getBody())) {
+                event.timeToFirstByte = PartTransferEvent.since(start);
+                val transferStart = System.nanoTime();
+                val counter = new CountingInputStream(response.getBody());
+                try (HashingInputStream his = new HashingInputStream(Hashing.md5(), counter)) {
                   channel.readFrom(his);
                   return his.hash().toString();
+                } finally {
+                  event.transferTime = PartTransferEvent.since(transferStart);
+                  event.bytes = counter.getCount();
                 }
               });
 
@@ -68,6 +87,7 @@ public abstract class AbstractStorageService implements StorageService {
           // TODO: try catch here for commit
           downloadStateStore.commit(outputDir, objectId, part);
           log.debug("committed {} part# {} to download state store", objectId, part.getPartNumber());
+          event.success = true;
         } catch (NotResumableException | NotRetryableException e) {
           log.error("Cannot proceed. Failed to receive part for part# {} : {}", part.getPartNumber(), e.getMessage());
           throw e;
@@ -75,6 +95,8 @@ public abstract class AbstractStorageService implements StorageService {
           log.warn("Failed to receive part for part number: {}. Retrying. {}", part.getPartNumber(), e.getMessage());
           channel.reset();
           throw new RetryableException(e);
+        } finally {
+          event.commit();
         }
         return null;
       }
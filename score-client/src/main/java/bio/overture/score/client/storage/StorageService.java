@@ -6,10 +6,14 @@ import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.Part;
 import bio.overture.score.core.model.UploadProgress;
 import lombok.SneakyThrows;
+import lombok.val;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface StorageService {
 
@@ -53,4 +57,30 @@ public interface StorageService {
     return getDownloadSpecification(objectId, 0L, -1L);
   }
 
+  /**
+   * Returns the whole-object download specifications of {@code objectIds}, in the same order. Implementations that can
+   * resolve them in bulk should; URLs may be left out when {@code excludeUrls} is set.
+   */
+  default List<ObjectSpecification> getDownloadSpecifications(List<String> objectIds, boolean external,
+      boolean excludeUrls) throws IOException {
+    val specs = new ArrayList<ObjectSpecification>(objectIds.size());
+    for (val objectId : objectIds) {
+      specs.add(external ? getExternalDownloadSpecification(objectId, 0L, -1L) : getDownloadSpecification(objectId));
+    }
+
+    return specs;
+  }
+
+  /**
+   * Returns the size in bytes of each of {@code objectIds}, keyed by object id.
+   */
+  default Map<String, Long> getObjectSizes(List<String> objectIds) throws IOException {
+    val sizes = new LinkedHashMap<String, Long>();
+    for (val spec : getDownloadSpecifications(objectIds, false, true)) {
+      sizes.put(spec.getObjectId(), spec.getObjectSize());
+    }
+
+    return sizes;
+  }
+
 }
@@ -20,10 +20,12 @@ package bio.overture.score.client.storage.score;
 import bio.overture.score.client.config.ClientProperties;
 import bio.overture.score.client.download.DownloadStateStore;
 import bio.overture.score.client.encryption.TokenEncryptionService;
+import bio.overture.score.client.exception.NotFoundException;
 import bio.overture.score.client.exception.NotResumableException;
 import bio.overture.score.client.exception.NotRetryableException;
 import bio.overture.score.client.exception.RetryableException;
 import bio.overture.score.client.storage.AbstractStorageService;
+import bio.overture.score.client.transport.PartTransferEvent;
 import bio.overture.score.core.model.DataChannel;
 import bio.overture.score.core.model.ObjectInfo;
 import bio.overture.score.core.model.ObjectSpecification;
@@ -31,7 +33,9 @@ import bio.overture.score.core.model.Part;
 import bio.overture.score.core.model.UploadProgress;
 import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.google.common.collect.Lists;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -43,6 +47,7 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.retry.RetryCallback;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.support.RetryTemplate;
@@ -57,7 +62,10 @@ import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.springframework.http.HttpMethod.DELETE;
@@ -72,10 +80,23 @@ import static org.springframework.http.HttpMethod.POST;
 @Profile({"dev", "collab", "aws", "default", "!kf"})
 public class ScoreStorageService extends AbstractStorageService {
 
+  /**
+   * Constants.
+   */
+  private static final int DOWNLOAD_BATCH_SIZE = 200;
+  private static final int SIZES_BATCH_SIZE = 1000;
+
   /**
    * Configuration.
    */
   private String endpoint;
+  /**
+   * {@code direct} downloads parts from the object store through pre-signed URLs; {@code proxy} streams them through
+   * the server, for hosts that can only reach the server.
+   */
+  @Setter
+  @Value("${storage.mode:direct}")
+  private String mode = "direct";
 
   /**
    * Dependencies.
@@ -137,24 +158,39 @@ public class ScoreStorageService extends AbstractStorageService {
       @Override
       public Void doWithRetry(RetryContext ctx) throws IOException {
         log.debug("Upload Part URL: {}", part.getUrl());
+        val event = PartTransferEvent.begin(PartTransferEvent.UPLOAD, objectId, part.getPartNumber(),
+            ctx.getRetryCount());
+        val sent = new long[1];
 
         final RequestCallback callback = request -> {
           HttpHeaders requestHeader = request.getHeaders();
           requestHeader.setContentLength(channel.getLength());
+          // Streaming requests connect when the body is opened
+          val start = System.nanoTime();
           try (OutputStream os = request.getBody()) {
+            event.connectTime = PartTransferEvent.since(start);
             channel.writeTo(os);
           }
+          sent[0] = System.nanoTime();
+          event.transferTime = sent[0] - start - event.connectTime;
+          event.bytes = channel.getLength();
         };
 
-        final ResponseExtractor<HttpHeaders> headersExtractor = response -> response.getHeaders();
+        final ResponseExtractor<HttpHeaders> headersExtractor = response -> {
+          event.timeToFirstByte = PartTransferEvent.since(sent[0]);
+          return response.getHeaders();
+        };
 
         try {
           HttpHeaders headers =
               dataTemplate.execute(new URI(part.getUrl()), HttpMethod.PUT, callback, headersExtractor);
 
           try {
+            val checksumStart = System.nanoTime();
             finalizeUploadPart(objectId, uploadId, part.getPartNumber(), channel.getMd5(),
                 cleanUpETag(headers.getETag()), disableChecksum(headers));
+            event.checksumTime = PartTransferEvent.since(checksumStart);
+            event.success = true;
           } catch (NotRetryableException e) {
             log.warn("Checksum failed for part #{}, MD5={}, ETAG={} : {}", part, channel.getMd5(), headers.getETag(),
                 e);
@@ -167,6 +203,8 @@ public class ScoreStorageService extends AbstractStorageService {
           log.warn("Failed to send part for part #{} : {}", part.getPartNumber(), e);
           channel.reset();
           throw new RetryableException(e);
+        } finally {
+          event.commit();
         }
         return null;
       }
@@ -232,12 +270,85 @@ public class ScoreStorageService extends AbstractStorageService {
 
   @Override public ObjectSpecification getDownloadSpecification(String objectId, long offset, long length) throws IOException {
     log.debug("Endpoint: {}", endpoint);
-    return retry.execute(ctx -> {
-      return serviceTemplate.exchange(endpoint + "/download/{object-id}?offset={offset}&length={length}",
+    val proxy = isProxy();
+    val spec = retry.execute(ctx -> {
+      return serviceTemplate.exchange(
+          endpoint + "/download/{object-id}?offset={offset}&length={length}&exclude-urls={exclude-urls}",
           GET,
           defaultEntity(),
-          ObjectSpecification.class, objectId, offset, length).getBody();
+          ObjectSpecification.class, objectId, offset, length, proxy).getBody();
     });
+
+    return proxy ? proxyParts(spec) : spec;
+  }
+
+  /**
+   * Resolves the specifications {@value #DOWNLOAD_BATCH_SIZE} objects per request through the batch endpoint, which
+   * authorizes and reads the objects concurrently on the server. Servers without the batch endpoint are asked one object
+   * at a time.
+   */
+  @Override
+  public List<ObjectSpecification> getDownloadSpecifications(List<String> objectIds, boolean external,
+      boolean excludeUrls) throws IOException {
+    // Part URLs meant for other tools, or not wanted at all, are left alone
+    val proxy = isProxy() && !external && !excludeUrls;
+    val specs = new ArrayList<ObjectSpecification>(objectIds.size());
+    try {
+      for (val batch : Lists.partition(objectIds, DOWNLOAD_BATCH_SIZE)) {
+        log.debug("Requesting download specifications of {} objects", batch.size());
+        val headers = defaultHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        specs.addAll(retry.execute(ctx -> serviceTemplate.exchange(
+            endpoint + "/download/batch?offset=0&length=-1&external={external}&exclude-urls={exclude-urls}",
+            POST,
+            new HttpEntity<Object>(batch, headers),
+            new ParameterizedTypeReference<List<ObjectSpecification>>() {}, external, excludeUrls || proxy).getBody()));
+      }
+    } catch (NotFoundException e) {
+      // An older server, or an unknown object id that the per-object requests will report
+      log.debug("No batch download specifications, requesting one object at a time: {}", e.getMessage());
+      specs.clear();
+      for (val objectId : objectIds) {
+        specs.add(external ? getExternalDownloadSpecification(objectId, 0L, -1L) : getDownloadSpecification(objectId));
+      }
+      return specs;
+    }
+
+    if (proxy) {
+      specs.forEach(this::proxyParts);
+    }
+
+    return specs;
+  }
+
+  /**
+   * Resolves the sizes {@value #SIZES_BATCH_SIZE} objects per request through the sizes endpoint, which only reads the
+   * {@code .meta} files and signs no URL. Servers without the sizes endpoint are asked for the download specifications
+   * instead.
+   */
+  @Override
+  public Map<String, Long> getObjectSizes(List<String> objectIds) throws IOException {
+    val sizes = new LinkedHashMap<String, Long>();
+    try {
+      for (val batch : Lists.partition(objectIds, SIZES_BATCH_SIZE)) {
+        log.debug("Requesting sizes of {} objects", batch.size());
+        val headers = defaultHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        sizes.putAll(retry.execute(ctx -> serviceTemplate.exchange(endpoint + "/download/sizes",
+            POST,
+            new HttpEntity<Object>(batch, headers),
+            new ParameterizedTypeReference<Map<String, Long>>() {}).getBody()));
+      }
+    } catch (NotFoundException e) {
+      // An older server, or an unknown object id that the specification requests will report
+      log.debug("No batch object sizes, reading them from the download specifications: {}", e.getMessage());
+      sizes.clear();
+      for (val spec : getDownloadSpecifications(objectIds, false, true)) {
+        sizes.put(spec.getObjectId(), spec.getObjectSize());
+      }
+    }
+
+    return sizes;
   }
 
   /**
@@ -318,6 +429,29 @@ public class ScoreStorageService extends AbstractStorageService {
     }
   }
 
+  /**
+   * Sends the access token with part downloads proxied through the server, and only with those.
+   */
+  @Override
+  protected void addDataHeaders(HttpHeaders headers, Part part) {
+    if (part.getUrl() != null && part.getUrl().startsWith(endpoint + "/download/")) {
+      headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + properties.getAccessToken());
+    }
+  }
+
+  private boolean isProxy() {
+    return "proxy".equals(mode);
+  }
+
+  /**
+   * Points every part at the server's data endpoint. The part's range goes in the {@code Range} header as usual.
+   */
+  private ObjectSpecification proxyParts(ObjectSpecification spec) {
+    val url = endpoint + "/download/" + spec.getObjectId() + "/data";
+    spec.getParts().forEach(part -> part.setUrl(url));
+    return spec;
+  }
+
   private HttpEntity<Object> defaultEntity() {
     return new HttpEntity<Object>(defaultHeaders());
   }
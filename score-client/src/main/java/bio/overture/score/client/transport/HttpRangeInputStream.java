@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.io.ByteStreams;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * Sequential stream over the start of a remote object, read with bounded HTTP range requests. The first request is for
+ * {@code initialSize} bytes and each following one is twice as large, up to {@link #MAX_REQUEST_SIZE}.
+ * <p>
+ * Unlike {@link NullSourceSeekableHTTPStream} it doesn't need the length of the object up front, so reading a header
+ * usually takes a single request.
+ */
+public class HttpRangeInputStream extends InputStream {
+
+  public static final int MAX_REQUEST_SIZE = 64 * 1024 * 1024;
+
+  private final URL url;
+  private int requestSize;
+
+  private byte[] buffer = new byte[0];
+  private int offset = 0;
+  private long position = 0;
+  private boolean eof = false;
+
+  public HttpRangeInputStream(@NonNull URL url, int initialSize) {
+    this.url = url;
+    this.requestSize = initialSize;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (offset == buffer.length && !fill()) {
+      return -1;
+    }
+    return buffer[offset++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (offset == buffer.length && !fill()) {
+      return -1;
+    }
+
+    val count = Math.min(len, buffer.length - offset);
+    System.arraycopy(buffer, offset, b, off, count);
+    offset += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return buffer.length - offset;
+  }
+
+  /**
+   * Fetches the next range. A short or unsatisfiable range means the end of the object was reached.
+   */
+  private boolean fill() throws IOException {
+    if (eof) {
+      return false;
+    }
+
+    val connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setRequestProperty("Range", String.format("bytes=%d-%d", position, position + requestSize - 1));
+      val code = connection.getResponseCode();
+      if (code == 416) {
+        eof = true;
+        return false;
+      }
+      if (code != HttpURLConnection.HTTP_PARTIAL) {
+        throw new IOException(String.format("Unexpected response code %d for range %d-%d of %s", code, position,
+            position + requestSize - 1, url.getPath()));
+      }
+
+      val block = new byte[requestSize];
+      try (val inputStream = connection.getInputStream()) {
+        val count = ByteStreams.read(inputStream, block, 0, block.length);
+        eof = count < block.length;
+        buffer = eof ? Arrays.copyOf(block, count) : block;
+      }
+    } finally {
+      connection.disconnect();
+    }
+
+    offset = 0;
+    position += buffer.length;
+    requestSize = (int) Math.min(2L * requestSize, MAX_REQUEST_SIZE);
+    return buffer.length > 0;
+  }
+
+}
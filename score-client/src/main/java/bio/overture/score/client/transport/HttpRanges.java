@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.io.ByteStreams;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * Single HTTP range requests against a (presigned) object URL.
+ */
+public final class HttpRanges {
+
+  private HttpRanges() {
+  }
+
+  /**
+   * Fetches {@code length} bytes starting at {@code start}.
+   * 
+   * @return the bytes read, fewer than {@code length} if the range extends past the end of the object
+   */
+  public static byte[] get(@NonNull URL url, long start, int length) throws IOException {
+    val connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setRequestProperty("Range", String.format("bytes=%d-%d", start, start + length - 1));
+      val code = connection.getResponseCode();
+      if (code == 416) {
+        return new byte[0];
+      }
+      if (code != HttpURLConnection.HTTP_PARTIAL) {
+        throw new IOException(String.format("Unexpected response code %d for range %d-%d of %s", code, start,
+            start + length - 1, url.getPath()));
+      }
+
+      val block = new byte[length];
+      try (val inputStream = connection.getInputStream()) {
+        val count = ByteStreams.read(inputStream, block, 0, block.length);
+        return count == block.length ? block : Arrays.copyOf(block, count);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+}
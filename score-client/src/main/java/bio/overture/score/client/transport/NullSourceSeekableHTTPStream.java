@@ -17,8 +17,11 @@
  */
 package bio.overture.score.client.transport;
 
+import bio.overture.score.client.cache.BlockCache.ObjectBlocks;
 import htsjdk.samtools.seekablestream.SeekableHTTPStream;
+import lombok.val;
 
+import java.io.IOException;
 import java.net.Proxy;
 import java.net.URL;
 
@@ -27,11 +30,25 @@ import java.net.URL;
  */
 public class NullSourceSeekableHTTPStream extends SeekableHTTPStream {
 
+  /**
+   * Local block cache consulted before issuing range requests, or {@code null}.
+   */
+  private final ObjectBlocks cachedBlocks;
+
   /**
    * @param url
    */
   public NullSourceSeekableHTTPStream(URL url) {
+    this(url, (ObjectBlocks) null);
+  }
+
+  /**
+   * @param url
+   * @param cachedBlocks - block cache of the object at {@code url}
+   */
+  public NullSourceSeekableHTTPStream(URL url, ObjectBlocks cachedBlocks) {
     super(url);
+    this.cachedBlocks = cachedBlocks;
   }
 
   /**
@@ -40,6 +57,21 @@ public class NullSourceSeekableHTTPStream extends SeekableHTTPStream {
    */
   public NullSourceSeekableHTTPStream(URL url, Proxy proxy) {
     super(url, proxy);
+    this.cachedBlocks = null;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (cachedBlocks == null || len == 0) {
+      return super.read(b, off, len);
+    }
+
+    val position = position();
+    val count = cachedBlocks.read(position, b, off, len);
+    if (count > 0) {
+      seek(position + count);
+    }
+    return count;
   }
 
   /*
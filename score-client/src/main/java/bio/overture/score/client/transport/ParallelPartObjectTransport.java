@@ -203,7 +203,19 @@ public class ParallelPartObjectTransport implements Transport {
 
   // TODO: need unit test confirming case where source MD5 is null
   protected boolean isCorrupted(DataChannel channel, Part part, File outputDir) throws IOException {
-    if ((part.getSourceMd5() != null) && channel.verifyMd5(part.getSourceMd5())) {
+    val event = new PartChecksumEvent();
+    event.begin();
+    val verified = (part.getSourceMd5() != null) && channel.verifyMd5(part.getSourceMd5());
+    event.end();
+    if (event.shouldCommit()) {
+      event.objectId = objectId;
+      event.partNumber = part.getPartNumber();
+      event.bytes = part.getPartSize();
+      event.corrupted = !verified;
+      event.commit();
+    }
+
+    if (verified) {
       return false;
     }
     log.debug("Part is corrupted: {}", part);
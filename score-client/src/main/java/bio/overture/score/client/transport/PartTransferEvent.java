@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one attempt at transferring a part. A part that needed retries produces one event per
+ * attempt, the last one successful unless the transfer was abandoned.
+ * <p>
+ * Recorded when running with {@code --profile-transfer} or any other JFR recording that enables it.
+ */
+@Name(PartTransferEvent.NAME)
+@Label("Part Transfer")
+@Category({ "Score", "Transfer" })
+@Description("Transfer of one part of an object to or from the object store")
+@StackTrace(false)
+public class PartTransferEvent extends Event {
+
+  public static final String NAME = "bio.overture.score.PartTransfer";
+
+  public static final String UPLOAD = "upload";
+  public static final String DOWNLOAD = "download";
+
+  @Label("Object Id")
+  public String objectId;
+
+  @Label("Direction")
+  public String direction;
+
+  @Label("Part Number")
+  public int partNumber;
+
+  @Label("Bytes")
+  @DataAmount
+  public long bytes;
+
+  @Label("Connect Time")
+  @Description("Time to connect, for uploads only: downloads connect as part of the time to first byte")
+  @Timespan
+  public long connectTime;
+
+  @Label("Time To First Byte")
+  @Description("Time from sending the request, or its body, to receiving the response")
+  @Timespan
+  public long timeToFirstByte;
+
+  @Label("Transfer Time")
+  @Description("Time streaming the part body")
+  @Timespan
+  public long transferTime;
+
+  @Label("Checksum Time")
+  @Description("Time having the server verify the part MD5 after an upload; parts are hashed while being transferred")
+  @Timespan
+  public long checksumTime;
+
+  @Label("Retries")
+  @Description("Failed attempts at this part before this one")
+  public int retries;
+
+  @Label("Success")
+  public boolean success;
+
+  public static PartTransferEvent begin(String direction, String objectId, int partNumber, int retries) {
+    PartTransferEvent event = new PartTransferEvent();
+    event.direction = direction;
+    event.objectId = objectId;
+    event.partNumber = partNumber;
+    event.retries = retries;
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Nanoseconds elapsed since {@code start}, as taken from {@link System#nanoTime()}.
+   */
+  public static long since(long start) {
+    return System.nanoTime() - start;
+  }
+
+}
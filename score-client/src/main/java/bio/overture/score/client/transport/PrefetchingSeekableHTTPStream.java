@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.cache.BlockCache.ObjectBlocks;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * HTTP stream that serves reads from a shared {@link RangeBuffer} when possible, falling back to a range request per
+ * read otherwise.
+ */
+public class PrefetchingSeekableHTTPStream extends NullSourceSeekableHTTPStream {
+
+  private final RangeBuffer buffer;
+
+  public PrefetchingSeekableHTTPStream(URL url, @NonNull RangeBuffer buffer) {
+    this(url, buffer, null);
+  }
+
+  public PrefetchingSeekableHTTPStream(URL url, @NonNull RangeBuffer buffer, ObjectBlocks cachedBlocks) {
+    super(url, cachedBlocks);
+    this.buffer = buffer;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    val position = position();
+    val count = buffer.read(position, b, off, len);
+    if (count > 0) {
+      seek(position + count);
+      return count;
+    }
+
+    return super.read(b, off, len);
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.cache.BlockCache.ObjectBlocks;
+import com.google.common.collect.ImmutableList;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Local buffer of byte ranges of a remote object, filled ahead of time with concurrent HTTP range requests.
+ * <p>
+ * Shared by all {@link PrefetchingSeekableHTTPStream}s reading the same object, which serve reads from the buffer and
+ * only go to the network for positions that were not prefetched.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RangeBuffer {
+
+  /**
+   * Configuration.
+   */
+  @NonNull
+  private final URL url;
+  private final int nThreads;
+  private final long capacity;
+
+  /**
+   * Local block cache that ranges are fetched through, or {@code null} to fetch them straight from {@code url}.
+   */
+  private final ObjectBlocks cachedBlocks;
+
+  /**
+   * State.
+   */
+  private final ConcurrentSkipListMap<Long, byte[]> blocks = new ConcurrentSkipListMap<>();
+
+  public RangeBuffer(URL url, int nThreads, long capacity) {
+    this(url, nThreads, capacity, null);
+  }
+
+  /**
+   * Fetches {@code ranges} concurrently, in order, until the buffer capacity is reached. Ranges past the capacity are
+   * left to be read from the network on demand.
+   */
+  @SneakyThrows
+  public void prefetch(@NonNull List<ByteRange> ranges) {
+    if (ranges.isEmpty()) {
+      return;
+    }
+
+    val executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, ranges.size())));
+    try {
+      val results = ImmutableList.<Future<Long>> builder();
+      long reserved = size();
+      for (val range : ranges) {
+        if (reserved + range.length() > capacity) {
+          log.debug("Prefetch capacity of {} bytes reached; remaining ranges will be streamed", capacity);
+          break;
+        }
+        reserved += range.length();
+        results.add(executor.submit(() -> fetch(range)));
+      }
+
+      long bytes = 0;
+      int failed = 0;
+      for (val result : results.build()) {
+        try {
+          bytes += result.get();
+        } catch (ExecutionException e) {
+          // The range is not buffered, so readers fetch it on demand
+          log.warn("Failed to prefetch range from {}: {}", url.getPath(), e.getCause().getMessage());
+          log.debug("Prefetch failure", e.getCause());
+          failed++;
+        }
+      }
+      log.debug("Prefetched {} bytes in {} ranges from {} ({} failed)", bytes, ranges.size(), url.getPath(), failed);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Copies buffered bytes starting at {@code position}.
+   * 
+   * @return the number of bytes copied, {@code 0} if {@code position} has not been prefetched
+   */
+  public int read(long position, byte[] buffer, int offset, int length) {
+    val entry = blocks.floorEntry(position);
+    if (entry == null) {
+      return 0;
+    }
+
+    val start = entry.getKey();
+    val block = entry.getValue();
+    val available = start + block.length - position;
+    if (available <= 0) {
+      return 0;
+    }
+
+    val count = (int) Math.min(length, available);
+    System.arraycopy(block, (int) (position - start), buffer, offset, count);
+    return count;
+  }
+
+  public long size() {
+    return blocks.values().stream().mapToLong(block -> block.length).sum();
+  }
+
+  public void clear() {
+    blocks.clear();
+  }
+
+  private long fetch(ByteRange range) throws IOException {
+    val block = isNull(cachedBlocks) ?
+        HttpRanges.get(url, range.getStart(), (int) range.length()) :
+        cachedBlocks.getRange(range.getStart(), (int) range.length());
+
+    // The last range may extend past the end of the object
+    blocks.put(range.getStart(), block);
+    return block.length;
+  }
+
+}
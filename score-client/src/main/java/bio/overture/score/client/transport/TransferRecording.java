@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+/**
+ * Flight recording of part transfers, enabled by {@code --profile-transfer}.
+ * <p>
+ * Records the JVM's default event set along with {@link PartTransferEvent} and {@link PartChecksumEvent}, and dumps it
+ * to a file when the client exits.
+ */
+public final class TransferRecording {
+
+  private TransferRecording() {
+  }
+
+  /**
+   * Starts recording to a timestamped file in {@code dir}.
+   * 
+   * @return the file the recording will be dumped to
+   */
+  public static File start(@NonNull File dir) {
+    val file = new File(dir, "score-client-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jfr");
+    start(getConfiguration(), file);
+    return file;
+  }
+
+  @SneakyThrows
+  static Recording start(Configuration configuration, File file) {
+    val recording = new Recording(configuration);
+    recording.setName("score-transfer");
+    recording.enable(PartTransferEvent.class);
+    recording.enable(PartChecksumEvent.class);
+    recording.setDestination(file.toPath());
+    recording.setDumpOnExit(true);
+    recording.start();
+    return recording;
+  }
+
+  @SneakyThrows
+  private static Configuration getConfiguration() {
+    return Configuration.getConfiguration("default");
+  }
+
+}
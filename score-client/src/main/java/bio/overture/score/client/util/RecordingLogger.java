@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.util;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import org.slf4j.Logger;
+import org.slf4j.event.EventRecodingLogger;
+import org.slf4j.event.SubstituteLoggingEvent;
+import org.slf4j.helpers.SubstituteLogger;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Logger that records events instead of writing them, so that the output of concurrent units of work can be replayed
+ * to a shared log in a deterministic order.
+ */
+public class RecordingLogger {
+
+  private final Queue<SubstituteLoggingEvent> events = new ConcurrentLinkedQueue<>();
+
+  @Getter
+  private final Logger logger;
+
+  public RecordingLogger(@NonNull String name) {
+    this.logger = new EventRecodingLogger(new SubstituteLogger(name, events, false), events);
+  }
+
+  /**
+   * Writes the recorded events to {@code target} in the order they were recorded and forgets them.
+   */
+  public void replay(@NonNull Logger target) {
+    SubstituteLoggingEvent event;
+    while ((event = events.poll()) != null) {
+      val message = event.getMessage();
+      val args = getArguments(event);
+      switch (event.getLevel()) {
+      case ERROR:
+        target.error(message, args);
+        break;
+      case WARN:
+        target.warn(message, args);
+        break;
+      case INFO:
+        target.info(message, args);
+        break;
+      case DEBUG:
+        target.debug(message, args);
+        break;
+      default:
+        target.trace(message, args);
+      }
+    }
+  }
+
+  private static Object[] getArguments(SubstituteLoggingEvent event) {
+    val args = event.getArgumentArray() == null ? new Object[0] : event.getArgumentArray();
+    if (event.getThrowable() == null) {
+      return args;
+    }
+
+    // A trailing throwable is logged as the exception of the event
+    val result = Arrays.copyOf(args, args.length + 1);
+    result[args.length] = event.getThrowable();
+    return result;
+  }
+
+}
@@ -1,13 +1,19 @@
 package bio.overture.score.client.view;
 
+import bio.overture.score.client.cache.BlockCache.ObjectBlocks;
 import bio.overture.score.client.metadata.Entity;
+import bio.overture.score.client.reference.SharedReferenceSource;
 import bio.overture.score.client.slicing.SamFileBuilder;
+import bio.overture.score.client.slicing.SamReaderSource;
 import bio.overture.score.client.transport.NullSourceSeekableHTTPStream;
+import bio.overture.score.client.transport.PrefetchingSeekableHTTPStream;
+import bio.overture.score.client.transport.RangeBuffer;
 import htsjdk.samtools.CRAMFileReader;
 import htsjdk.samtools.SamInputResource;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import lombok.NonNull;
 import lombok.SneakyThrows;
@@ -15,6 +21,7 @@ import lombok.val;
 
 import java.io.File;
 import java.net.URL;
+import java.util.function.Supplier;
 
 import static java.util.Objects.isNull;
 
@@ -25,6 +32,13 @@ public class Viewer {
     this.referenceFile=referenceFile;
   }
 
+  /**
+   * Readers of the same reference file share one source, so each contig is held in memory once.
+   */
+  public ReferenceSource getReferenceSource() {
+    return isNull(referenceFile) ? new ReferenceSource((File) null) : SharedReferenceSource.get(referenceFile);
+  }
+
   public static SamInputResource getFileResource(@NonNull File bamFile, File baiFile) {
     if (isNull(baiFile)) {
       return SamInputResource.of(bamFile);
@@ -45,15 +59,31 @@ public class Viewer {
     return new NullSourceSeekableHTTPStream(url);
   }
 
+  public static SeekableStream openInputStream(URL url, RangeBuffer buffer) {
+    return openInputStream(url, buffer, null);
+  }
+
+  public static SeekableStream openInputStream(URL url, RangeBuffer buffer, ObjectBlocks cachedBlocks) {
+    if (isNull(buffer)) {
+      return new NullSourceSeekableHTTPStream(url, cachedBlocks);
+    }
+    return new PrefetchingSeekableHTTPStream(url, buffer, cachedBlocks);
+  }
+
   public static SeekableStream openIndexStream(URL url) {
     return new NullSourceSeekableHTTPStream(url);
   }
 
+  @SneakyThrows
+  public static SeekableStream openIndexStream(File file) {
+    return new SeekableFileStream(file);
+  }
+
   @SneakyThrows
   public SamFileBuilder getBuilder(@NonNull File sequenceFile, File indexFile) {
     val entity = new Entity();
     entity.setFileName(sequenceFile.toString());
-    val reference=new ReferenceSource(referenceFile);
+    val reference = getReferenceSource();
     val resource = getFileResource(sequenceFile, indexFile);
     val builder = new SamFileBuilder()
         .entity(entity)
@@ -70,18 +100,68 @@ public class Viewer {
     val builder = new SamFileBuilder().samInput(resource);
 
     if (isCram) {
-      // Since CRAM is a compressed form of BAM file that saves space by only recording
-      // the differences between an individual BAM file and a standard reference file.
-      // we need to have the reference file in order to decode the CRAM file.
-      val reference = new ReferenceSource(referenceFile);
-      val primitiveReader = new CRAMFileReader(inputStream, indexStream,reference, ValidationStringency.DEFAULT_STRINGENCY);
-      val reader = new SamReader.PrimitiveSamReaderToSamReaderAdapter(
-        primitiveReader, resource);
-      return builder.reader(reader);
+      return builder.reader(openCramReader(inputStream, indexStream, resource));
     }
     val reader = builder.createSamReader();
     return builder.reader(reader);
   }
+
+  /**
+   * Each reader opened by the returned source reads the local files independently.
+   */
+  public SamReaderSource getReaderSource(@NonNull File sequenceFile, File indexFile) {
+    return () -> new SamFileBuilder()
+        .samInput(getFileResource(sequenceFile, indexFile))
+        .cramReferenceSource(getReferenceSource())
+        .createSamReader();
+  }
+
+  /**
+   * Each reader opened by the returned source gets its own HTTP streams over the (presigned) URLs.
+   */
+  public SamReaderSource getReaderSource(@NonNull URL fileUrl, URL indexUrl, boolean isCram) {
+    return getReaderSource(fileUrl, indexUrl, isCram, null, null);
+  }
+
+  /**
+   * As above, with data reads served from {@code buffer} when prefetched, then from {@code cachedBlocks} when cached.
+   */
+  public SamReaderSource getReaderSource(@NonNull URL fileUrl, URL indexUrl, boolean isCram, RangeBuffer buffer,
+      ObjectBlocks cachedBlocks) {
+    return getReaderSource(fileUrl, () -> isNull(indexUrl) ? null : openIndexStream(indexUrl), isCram, buffer,
+        cachedBlocks);
+  }
+
+  /**
+   * As above, with the index read from a local copy.
+   */
+  public SamReaderSource getReaderSource(@NonNull URL fileUrl, @NonNull File indexFile, boolean isCram,
+      RangeBuffer buffer, ObjectBlocks cachedBlocks) {
+    return getReaderSource(fileUrl, () -> openIndexStream(indexFile), isCram, buffer, cachedBlocks);
+  }
+
+  private SamReaderSource getReaderSource(URL fileUrl, Supplier<SeekableStream> indexStreams, boolean isCram,
+      RangeBuffer buffer, ObjectBlocks cachedBlocks) {
+    return () -> {
+      val inputStream = openInputStream(fileUrl, buffer, cachedBlocks);
+      val indexStream = indexStreams.get();
+      val resource = getStreamResource(inputStream, indexStream);
+      if (isCram) {
+        return openCramReader(inputStream, indexStream, resource);
+      }
+      return new SamFileBuilder().samInput(resource).createSamReader();
+    };
+  }
+
+  @SneakyThrows
+  private SamReader openCramReader(SeekableStream inputStream, SeekableStream indexStream, SamInputResource resource) {
+    // Since CRAM is a compressed form of BAM file that saves space by only recording
+    // the differences between an individual BAM file and a standard reference file.
+    // we need to have the reference file in order to decode the CRAM file.
+    val reference = getReferenceSource();
+    val primitiveReader = new CRAMFileReader(inputStream, indexStream,reference, ValidationStringency.DEFAULT_STRINGENCY);
+    return new SamReader.PrimitiveSamReaderToSamReaderAdapter(primitiveReader, resource);
+  }
 }
 
 
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.cache;
+
+import bio.overture.score.client.config.CacheProperties;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlockCacheTest {
+
+  private static final String MD5 = "d41d8cd98f00b204e9800998ecf8427e";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  CacheProperties properties;
+  BlockCache sut;
+
+  byte[] data;
+  AtomicInteger loads;
+  BlockCache.BlockLoader loader;
+
+  @Before
+  @SneakyThrows
+  public void setUp() {
+    properties = new CacheProperties();
+    properties.setDir(tmp.newFolder("cache").getAbsolutePath());
+    properties.getBlock().setBlockSize(100);
+    sut = new BlockCache();
+    ReflectionTestUtils.setField(sut, "properties", properties);
+
+    data = new byte[250];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    loads = new AtomicInteger();
+    loader = (start, length) -> {
+      loads.incrementAndGet();
+      return Arrays.copyOfRange(data, (int) Math.min(start, data.length), (int) Math.min(start + length, data.length));
+    };
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_miss_then_hit() {
+    val blocks = sut.forObject("obj-a", MD5, loader);
+    assertThat(blocks.getRange(50, 200)).isEqualTo(Arrays.copyOfRange(data, 50, 250));
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(sut.getMisses()).isEqualTo(3);
+
+    // Another client of the same object is served from disk
+    val other = new BlockCache();
+    ReflectionTestUtils.setField(other, "properties", properties);
+    val buffer = new byte[30];
+    assertThat(other.forObject("obj-a", MD5, loader).read(190, buffer, 0, 30)).isEqualTo(10);
+    assertThat(Arrays.copyOf(buffer, 10)).isEqualTo(Arrays.copyOfRange(data, 190, 200));
+    assertThat(other.getHits()).isEqualTo(1);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_coalesces_missing_blocks() {
+    val blocks = sut.forObject("obj-e", MD5, loader);
+    blocks.getRange(100, 10);
+    assertThat(loads.get()).isEqualTo(1);
+
+    // One request on either side of the cached block
+    assertThat(blocks.getRange(0, 250)).isEqualTo(data);
+    assertThat(loads.get()).isEqualTo(3);
+    assertThat(sut.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_sequential_reads_from_memory() {
+    sut.forObject("obj-f", MD5, loader).getRange(0, 100);
+
+    val blocks = sut.forObject("obj-f", MD5, loader);
+    val buffer = new byte[10];
+    for (int position = 0; position < 100; position += 10) {
+      assertThat(blocks.read(position, buffer, 0, 10)).isEqualTo(10);
+      assertThat(buffer).isEqualTo(Arrays.copyOfRange(data, position, position + 10));
+    }
+    // One hit from disk, then nine from memory
+    assertThat(sut.getHits()).isEqualTo(10);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_end_of_object() {
+    val blocks = sut.forObject("obj-b", MD5, loader);
+    assertThat(blocks.getRange(200, 100)).hasSize(50);
+    assertThat(blocks.read(250, new byte[10], 0, 10)).isEqualTo(-1);
+    assertThat(blocks.read(300, new byte[10], 0, 10)).isEqualTo(-1);
+
+    // Empty blocks past the end are not cached
+    val files = new File(properties.getDir(), "block").listFiles((dir, name) -> name.endsWith(".blk"));
+    assertThat(files).hasSize(1).allMatch(file -> file.length() == 50);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_keyed_by_md5() {
+    sut.forObject("obj-c", MD5, loader).getRange(0, 10);
+    sut.forObject("obj-c", "00000000000000000000000000000000", loader).getRange(0, 10);
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_evicts_least_recently_used() {
+    properties.getBlock().setMaxSize(200);
+    val blocks = sut.forObject("obj-d", MD5, loader);
+    blocks.getRange(0, 10);
+    val first = new File(properties.getDir(), "block").listFiles()[0];
+    first.setLastModified(System.currentTimeMillis() - 60_000);
+
+    blocks.getRange(100, 150);
+
+    val files = new File(properties.getDir(), "block").list((dir, name) -> name.endsWith(".blk"));
+    assertThat(files).hasSize(2).doesNotContain(first.getName());
+  }
+
+}
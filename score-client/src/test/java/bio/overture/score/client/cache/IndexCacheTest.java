@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.cache;
+
+import bio.overture.score.client.config.CacheProperties;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IndexCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  CacheProperties properties;
+  IndexCache sut;
+
+  @Before
+  @SneakyThrows
+  public void setUp() {
+    properties = new CacheProperties();
+    properties.setDir(tmp.newFolder("cache").getAbsolutePath());
+    sut = new IndexCache();
+    ReflectionTestUtils.setField(sut, "properties", properties);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_miss_then_hit() {
+    val source = createSource("a.bai", "index-a");
+
+    val first = sut.get("obj-a", md5(source), source.toURI().toURL());
+    assertThat(Files.toString(first, UTF_8)).isEqualTo("index-a");
+
+    // A hit must not read the source again
+    source.delete();
+    val second = sut.get("obj-a", md5(first), source.toURI().toURL());
+    assertThat(second).isEqualTo(first);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_md5_mismatch_is_not_cached() {
+    val source = createSource("b.bai", "index-b");
+
+    assertThatThrownBy(() -> sut.get("obj-b", "d41d8cd98f00b204e9800998ecf8427e", source.toURI().toURL()))
+        .isInstanceOf(IOException.class);
+    assertThat(new File(properties.getDir(), "index").list((dir, name) -> name.endsWith(".idx"))).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_least_recently_used_is_evicted() {
+    properties.getIndex().setMaxSize(10);
+    val a = createSource("a.bai", "123456");
+    val b = createSource("b.bai", "abcdef");
+
+    val cachedA = sut.get("obj-a", md5(a), a.toURI().toURL());
+    cachedA.setLastModified(System.currentTimeMillis() - 60_000);
+    val cachedB = sut.get("obj-b", md5(b), b.toURI().toURL());
+
+    assertThat(cachedA).doesNotExist();
+    assertThat(cachedB).exists();
+  }
+
+  @SneakyThrows
+  private File createSource(String name, String content) {
+    val file = tmp.newFile(name);
+    Files.write(content, file, UTF_8);
+    return file;
+  }
+
+  @SneakyThrows
+  private static String md5(File file) {
+    return Files.hash(file, Hashing.md5()).toString();
+  }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.reference;
+
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import lombok.Cleanup;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedFastaSequenceFileTest {
+
+  private static final int LINE_LENGTH = 60;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private String chr1;
+  private String chr2;
+  private byte[] fasta;
+
+  @Before
+  public void setUp() {
+    val random = new Random(42);
+    chr1 = randomBases(random, 100_000);
+    chr2 = randomBases(random, 1_234);
+
+    val text = new StringBuilder();
+    append(text, "chr1", chr1);
+    append(text, "chr2", chr2);
+    fasta = text.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void test_reads_regions_of_plain_fasta() throws Exception {
+    val file = tmp.newFile("ref.fa");
+    Files.write(file.toPath(), fasta);
+    writeFai(file);
+
+    @Cleanup
+    val reference = new MappedFastaSequenceFile(file);
+    assertRegions(reference);
+    assertThat(reference.isCompressed()).isFalse();
+    assertThat(reference.getMappedSequences()).isEqualTo(2);
+    assertThat(reference.getMappedBytes()).isEqualTo(100_000 + 100_000 / LINE_LENGTH + 1_234 + 1_234 / LINE_LENGTH);
+  }
+
+  @Test
+  public void test_reads_regions_of_bgzipped_fasta() throws Exception {
+    val file = new File(tmp.getRoot(), "ref.fa.gz");
+    writeBgzip(file);
+    writeFai(file);
+
+    @Cleanup
+    val reference = new MappedFastaSequenceFile(file);
+    assertRegions(reference);
+    assertThat(reference.isCompressed()).isTrue();
+    assertThat(reference.getMappedSequences()).isEqualTo(0);
+  }
+
+  @Test
+  public void test_bgzipped_fasta_requires_gzi() throws Exception {
+    val file = tmp.newFile("ref.fa.gz");
+    writeFai(file);
+
+    assertThat(MappedFastaSequenceFile.isIndexed(file)).isFalse();
+    assertThatThrownBy(() -> new MappedFastaSequenceFile(file)).isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(".gzi");
+  }
+
+  @Test
+  public void test_shared_source_loads_each_contig_once() throws Exception {
+    val file = tmp.newFile("shared.fa");
+    Files.write(file.toPath(), fasta.clone());
+    writeFai(file);
+
+    val source = SharedReferenceSource.get(file);
+    assertThat(source).isInstanceOf(SharedReferenceSource.class).isSameAs(SharedReferenceSource.get(file));
+
+    val first = source.getReferenceBases(new SAMSequenceRecord("1", 100_000), true);
+    val second = source.getReferenceBases(new SAMSequenceRecord("chr1", 100_000), true);
+    assertThat(new String(first, StandardCharsets.US_ASCII)).isEqualTo(chr1);
+    assertThat(second).isEqualTo(first);
+
+    val residency = SharedReferenceSource.getResidency(file);
+    assertThat(residency.getCachedBytes()).isEqualTo(2 * 100_000);
+    assertThat(residency.getMisses()).isEqualTo(2);
+    assertThat(residency.getMappedContigs()).isEqualTo(1);
+
+    assertThat(source.getReferenceBases(new SAMSequenceRecord("chr1", 100_000), true)).isSameAs(second);
+    assertThat(SharedReferenceSource.getResidency(file).getHits()).isEqualTo(1);
+  }
+
+  private void assertRegions(MappedFastaSequenceFile reference) {
+    assertThat(reference.getSequenceDictionary().getSequence("chr1").getSequenceLength()).isEqualTo(100_000);
+    assertThat(bases(reference, "chr1", 1, 100_000)).isEqualTo(chr1);
+    assertThat(bases(reference, "chr1", 1, 60)).isEqualTo(chr1.substring(0, 60));
+    assertThat(bases(reference, "chr1", 59, 62)).isEqualTo(chr1.substring(58, 62));
+    assertThat(bases(reference, "chr1", 70_001, 80_000)).isEqualTo(chr1.substring(70_000, 80_000));
+    assertThat(bases(reference, "chr2", 1_200, 1_234)).isEqualTo(chr2.substring(1_199));
+    assertThat(new String(reference.getSequence("chr2").getBases(), StandardCharsets.US_ASCII)).isEqualTo(chr2);
+    assertThat(reference.nextSequence().getName()).isEqualTo("chr1");
+  }
+
+  private static String bases(MappedFastaSequenceFile reference, String contig, long start, long stop) {
+    return new String(reference.getSubsequenceAt(contig, start, stop).getBases(), StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Small blocks, so that regions span several of them.
+   */
+  private void writeBgzip(File file) throws Exception {
+    @Cleanup
+    val gzi = new DataOutputStream(new FileOutputStream(GziIndex.getIndexFile(file)));
+    val blocks = (fasta.length - 1) / 4096;
+    gzi.writeLong(Long.reverseBytes(blocks));
+
+    @Cleanup
+    val out = new BlockCompressedOutputStream(file);
+    for (int offset = 0; offset < fasta.length; offset += 4096) {
+      if (offset > 0) {
+        gzi.writeLong(Long.reverseBytes(out.getFilePointer() >> 16));
+        gzi.writeLong(Long.reverseBytes(offset));
+      }
+      out.write(fasta, offset, Math.min(4096, fasta.length - offset));
+      out.flush();
+    }
+  }
+
+  private void writeFai(File file) throws Exception {
+    @Cleanup
+    val out = new PrintWriter(FastaIndex.getIndexFile(file));
+    val chr1Offset = ">chr1\n".length();
+    val chr2Offset = chr1Offset + chr1.length() + (chr1.length() + LINE_LENGTH - 1) / LINE_LENGTH + ">chr2\n".length();
+    out.printf("chr1\t%d\t%d\t%d\t%d%n", chr1.length(), chr1Offset, LINE_LENGTH, LINE_LENGTH + 1);
+    out.printf("chr2\t%d\t%d\t%d\t%d%n", chr2.length(), chr2Offset, LINE_LENGTH, LINE_LENGTH + 1);
+  }
+
+  private static void append(StringBuilder text, String name, String bases) {
+    text.append('>').append(name).append('\n');
+    for (int i = 0; i < bases.length(); i += LINE_LENGTH) {
+      text.append(bases, i, Math.min(bases.length(), i + LINE_LENGTH)).append('\n');
+    }
+  }
+
+  private static String randomBases(Random random, int length) {
+    val bases = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      bases.append("ACGT".charAt(random.nextInt(4)));
+    }
+    return bases.toString();
+  }
+
+}
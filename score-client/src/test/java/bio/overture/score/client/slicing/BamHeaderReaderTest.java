@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import lombok.Cleanup;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BamHeaderReaderTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_read_header() throws Exception {
+    val sequences = new ArrayList<SAMSequenceRecord>();
+    for (int i = 1; i <= 5000; i++) {
+      sequences.add(new SAMSequenceRecord("contig" + i, i * 1000));
+    }
+    val header = new SAMFileHeader();
+    header.setSortOrder(SortOrder.coordinate);
+    header.setSequenceDictionary(new SAMSequenceDictionary(sequences));
+    header.addReadGroup(new SAMReadGroupRecord("rg1"));
+
+    val file = new File(tmp.getRoot(), "test.bam");
+    new SAMFileWriterFactory().makeBAMWriter(header, true, file).close();
+
+    @Cleanup
+    val in = new FileInputStream(file);
+    val result = BamHeaderReader.read(in, file.getName());
+
+    assertThat(result.getSortOrder()).isEqualTo(SortOrder.coordinate);
+    assertThat(result.getSequenceDictionary().size()).isEqualTo(5000);
+    assertThat(result.getSequence("contig5000").getSequenceLength()).isEqualTo(5_000_000);
+    assertThat(result.getReadGroup("rg1")).isNotNull();
+  }
+
+  @Test
+  public void test_read_invalid_header() {
+    assertThatThrownBy(() -> BamHeaderReader.read(new ByteArrayInputStream("@HD\tVN:1.4\n".getBytes()), "test.sam"))
+        .hasMessageContaining("test.sam");
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import lombok.Cleanup;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelBAMFileWriterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_compressed_stream_round_trip() throws Exception {
+    val data = new byte[1024 * 1024];
+    val random = new Random(1);
+    for (int i = 0; i < data.length; i++) {
+      // mix of compressible and incompressible stretches
+      data[i] = (byte) ((i / 100_000) % 2 == 0 ? i % 7 : random.nextInt());
+    }
+
+    val file = tmp.newFile("data.gz");
+    val out = new ParallelBlockCompressedOutputStream(new FileOutputStream(file), 3, 5);
+    out.write(data, 0, 1000);
+    out.write(data[1000]);
+    out.write(data, 1001, data.length - 1001);
+    out.close();
+
+    @Cleanup
+    val in = new BlockCompressedInputStream(file);
+    val result = new ByteArrayOutputStream();
+    val buffer = new byte[8192];
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      result.write(buffer, 0, n);
+    }
+
+    assertThat(result.toByteArray()).isEqualTo(data);
+    assertThat(BlockCompressedInputStream.checkTermination(file))
+        .isEqualTo(BlockCompressedInputStream.FileTermination.HAS_TERMINATOR_BLOCK);
+  }
+
+  @Test
+  public void test_index_built_while_writing() throws Exception {
+    val header = new SAMFileHeader();
+    header.setSortOrder(SortOrder.coordinate);
+    header.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(
+        new SAMSequenceRecord("1", 10_000_000), new SAMSequenceRecord("2", 10_000_000))));
+
+    val file = new File(tmp.getRoot(), "out.bam");
+    val writer = new ParallelBAMFileWriter(header, file, 4, true);
+    for (int referenceIndex = 0; referenceIndex < 2; referenceIndex++) {
+      for (int start = 1; start < 5_000_000; start += 100) {
+        writer.addAlignment(createRecord(header, referenceIndex, start));
+      }
+    }
+    writer.close();
+
+    assertThat(new File(tmp.getRoot(), "out.bai")).exists();
+
+    @Cleanup
+    val reader = SamReaderFactory.makeDefault().open(file);
+    assertThat(reader.hasIndex()).isTrue();
+
+    // records start at 1, 101, 201, ... so 1:1000000-1100000 overlaps those starting at 1000001 to 1099901
+    int count = 0;
+    val iterator = reader.query(new QueryInterval[] { new QueryInterval(0, 1_000_000, 1_100_000) }, false);
+    while (iterator.hasNext()) {
+      val record = iterator.next();
+      assertThat(record.getReferenceIndex()).isEqualTo(0);
+      count++;
+    }
+    iterator.close();
+    assertThat(count).isEqualTo(1000);
+
+    int total = 0;
+    for (val record : reader) {
+      total++;
+    }
+    assertThat(total).isEqualTo(100_000);
+  }
+
+  private static SAMRecord createRecord(SAMFileHeader header, int referenceIndex, int start) {
+    val record = new SAMRecord(header);
+    record.setReadName("r" + referenceIndex + "-" + start);
+    record.setReferenceIndex(referenceIndex);
+    record.setAlignmentStart(start);
+    record.setCigarString("50M");
+    record.setReadString("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTAC");
+    record.setBaseQualityString("IIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIII");
+    return record;
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelQueryExecutorTest {
+
+  @Test
+  public void test_partition_keeps_order_and_all_intervals() {
+    val intervals = new QueryInterval[] {
+        new QueryInterval(0, 1, 10), new QueryInterval(0, 20, 30), new QueryInterval(0, 40, 50),
+        new QueryInterval(1, 1, 10), new QueryInterval(1, 20, 30) };
+
+    val shards = ParallelQueryExecutor.partition(intervals, 3);
+
+    assertThat(shards).hasSize(3);
+    assertThat(shards.stream().flatMap(Arrays::stream).toArray()).containsExactly((Object[]) intervals);
+  }
+
+  @Test
+  public void test_partition_never_creates_empty_shards() {
+    val intervals = new QueryInterval[] { new QueryInterval(0, 1, 10), new QueryInterval(0, 20, 30) };
+
+    val shards = ParallelQueryExecutor.partition(intervals, 8);
+
+    assertThat(shards).hasSize(2);
+    assertThat(shards).allMatch(shard -> shard.length == 1);
+  }
+
+  @Test
+  public void test_overlaps() {
+    val record = createRecord(0, 100, "50M");
+
+    assertThat(ParallelQueryExecutor.overlaps(record, new QueryInterval(0, 1, 100))).isTrue();
+    assertThat(ParallelQueryExecutor.overlaps(record, new QueryInterval(0, 149, 200))).isTrue();
+    assertThat(ParallelQueryExecutor.overlaps(record, new QueryInterval(0, 150, 200))).isFalse();
+    assertThat(ParallelQueryExecutor.overlaps(record, new QueryInterval(0, 1, 99))).isFalse();
+    assertThat(ParallelQueryExecutor.overlaps(record, new QueryInterval(0, 1, -1))).isTrue();
+    assertThat(ParallelQueryExecutor.overlaps(record, new QueryInterval(1, 1, -1))).isFalse();
+  }
+
+  private static SAMRecord createRecord(int referenceIndex, int start, String cigar) {
+    val dictionary = new SAMSequenceDictionary(Arrays.asList(
+        new SAMSequenceRecord("1", 1000), new SAMSequenceRecord("2", 1000)));
+    val header = new SAMFileHeader();
+    header.setSequenceDictionary(dictionary);
+
+    val record = new SAMRecord(header);
+    record.setReferenceIndex(referenceIndex);
+    record.setAlignmentStart(start);
+    record.setCigarString(cigar);
+    return record;
+  }
+
+}
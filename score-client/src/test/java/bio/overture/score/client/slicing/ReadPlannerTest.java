@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import bio.overture.score.client.transport.ByteRange;
+import com.google.common.collect.ImmutableList;
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReadPlannerTest {
+
+  @Test
+  public void test_coalesce_merges_overlapping_and_nearby_ranges() {
+    val ranges = ImmutableList.of(
+        new ByteRange(5000, 6000),
+        new ByteRange(0, 100),
+        new ByteRange(50, 200),
+        new ByteRange(250, 300));
+
+    val result = ReadPlanner.coalesce(ranges, 100);
+
+    assertThat(result).containsExactly(new ByteRange(0, 300), new ByteRange(5000, 6000));
+  }
+
+  @Test
+  public void test_coalesce_keeps_distant_ranges() {
+    val ranges = ImmutableList.of(new ByteRange(0, 100), new ByteRange(201, 300));
+
+    assertThat(ReadPlanner.coalesce(ranges, 100)).containsExactly(new ByteRange(0, 100), new ByteRange(201, 300));
+  }
+
+  @Test
+  public void test_split_large_ranges() {
+    val ranges = ImmutableList.of(new ByteRange(0, 250), new ByteRange(1000, 1050));
+
+    val result = ReadPlanner.split(ranges, 100);
+
+    assertThat(result).containsExactly(
+        new ByteRange(0, 100), new ByteRange(100, 200), new ByteRange(200, 250), new ByteRange(1000, 1050));
+  }
+
+}
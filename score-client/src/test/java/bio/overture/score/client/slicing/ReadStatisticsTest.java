@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class ReadStatisticsTest {
+
+  private SAMFileHeader header;
+
+  @Before
+  public void setUp() {
+    header = new SAMFileHeader();
+    header.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(
+        new SAMSequenceRecord("chr1", 1000), new SAMSequenceRecord("chr2", 500))));
+    header.addReadGroup(new SAMReadGroupRecord("rg1"));
+    header.addReadGroup(new SAMReadGroupRecord("rg2"));
+  }
+
+  @Test
+  public void test_counts_regions_and_read_groups() {
+    val intervals = new QueryInterval[] {
+        new QueryInterval(0, 100, 200), new QueryInterval(0, 300, 400), new QueryInterval(1, 1, -1) };
+    val statistics = new ReadStatistics(header, intervals, 0);
+
+    statistics.add(record("r1", 0, 150, "50M", "rg1"));
+    statistics.add(record("r2", 0, 180, "150M", "rg1"));
+    statistics.add(record("r3", 0, 350, "10M", "rg2"));
+    statistics.add(record("r4", 1, 10, "10M", null));
+    statistics.add(unmapped("r5", "rg2"));
+
+    assertThat(statistics.getTotal()).isEqualTo(5);
+    assertThat(statistics.getMapped()).isEqualTo(4);
+    assertThat(statistics.getRegionCount(0)).isEqualTo(2);
+    assertThat(statistics.getRegionCount(1)).isEqualTo(2);
+    assertThat(statistics.getRegionCount(2)).isEqualTo(1);
+
+    val tsv = new StringWriter();
+    statistics.writeTsv(tsv);
+    assertThat(tsv.toString().split("\n")).containsExactly(
+        "#type\tname\tstart\tend\tvalue",
+        "total\t.\t.\t.\t5",
+        "mapped\t.\t.\t.\t4",
+        "read_group\trg1\t.\t.\t2",
+        "read_group\trg2\t.\t.\t2",
+        "read_group\t(none)\t.\t.\t1",
+        "region\tchr1\t100\t200\t2",
+        "region\tchr1\t300\t400\t2",
+        "region\tchr2\t1\t500\t1");
+  }
+
+  @Test
+  public void test_depth_bins_count_aligned_bases_only() {
+    val statistics = new ReadStatistics(header, new QueryInterval[] { new QueryInterval(0, 101, 140) }, 10);
+
+    // 5 bases before the region, 10 in the first bin, a 20 base deletion, then 5 in the last bin
+    statistics.add(record("r1", 0, 96, "15M20D5M", "rg1"));
+    statistics.add(record("r2", 0, 111, "10M", "rg1"));
+
+    assertThat(statistics.getDepth(0, 0)).isCloseTo(1.0, within(0.001));
+    assertThat(statistics.getDepth(0, 1)).isCloseTo(1.0, within(0.001));
+    assertThat(statistics.getDepth(0, 2)).isCloseTo(0.0, within(0.001));
+    assertThat(statistics.getDepth(0, 3)).isCloseTo(0.5, within(0.001));
+  }
+
+  @Test
+  public void test_write_json() throws Exception {
+    val statistics = new ReadStatistics(header, new QueryInterval[] { new QueryInterval(0, 1, 20) }, 10);
+    statistics.add(record("r1", 0, 1, "10M", "rg1"));
+
+    val json = new StringWriter();
+    statistics.writeJson(json);
+    assertThat(json.toString()).isEqualTo("{\"total\":1,\"mapped\":1,\"readGroups\":{\"rg1\":1,\"rg2\":0,\"(none)\":0},"
+        + "\"regions\":[{\"sequence\":\"chr1\",\"start\":1,\"end\":20,\"count\":1,\"binSize\":10,\"depth\":[1.0,0.0]}]}");
+  }
+
+  @Test
+  public void test_too_many_bins_are_rejected() {
+    val large = new SAMFileHeader();
+    large.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(new SAMSequenceRecord("chr1", 248_956_422))));
+    val wholeChromosome = new QueryInterval[] { new QueryInterval(0, 1, -1) };
+
+    assertThatThrownBy(() -> new ReadStatistics(large, wholeChromosome, 10))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("--stats-bin-size");
+    assertThat(new ReadStatistics(large, wholeChromosome, 100).getTotal()).isZero();
+  }
+
+  private SAMRecord record(String name, int reference, int start, String cigar, String readGroup) {
+    val record = new SAMRecord(header);
+    record.setReadName(name);
+    record.setReferenceIndex(reference);
+    record.setAlignmentStart(start);
+    record.setCigarString(cigar);
+    if (readGroup != null) {
+      record.setAttribute(SAMTag.RG.name(), readGroup);
+    }
+    return record;
+  }
+
+  private SAMRecord unmapped(String name, String readGroup) {
+    val record = new SAMRecord(header);
+    record.setReadName(name);
+    record.setReadUnmappedFlag(true);
+    record.setAttribute(SAMTag.RG.name(), readGroup);
+    return record;
+  }
+
+}
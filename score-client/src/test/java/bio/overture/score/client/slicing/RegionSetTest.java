@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.slicing;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import lombok.Cleanup;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RegionSetTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final SAMSequenceDictionary dictionary = new SAMSequenceDictionary(Arrays.asList(
+      new SAMSequenceRecord("chr1", 250_000_000), new SAMSequenceRecord("chr2", 250_000_000),
+      new SAMSequenceRecord("chr10", 250_000_000)));
+
+  @Test
+  public void test_merges_overlapping_and_abutting_regions() {
+    val regions = new RegionSet();
+    regions.add("chr1", 500, 600);
+    regions.add("chr1", 100, 200);
+    regions.add("chr1", 201, 300);
+    regions.add("chr1", 150, 250);
+    regions.add("chr1", 302, 400);
+
+    assertThat(format(regions.toQueryIntervals(dictionary))).containsExactly("0:100-300", "0:302-400", "0:500-600");
+  }
+
+  @Test
+  public void test_orders_by_dictionary_and_drops_unknown_sequences() {
+    val regions = new RegionSet();
+    regions.add("chr10", 1, 10);
+    regions.add("chrUn", 1, 10);
+    regions.add("chr2", 1, 10);
+    regions.add("chr1", 1, 10);
+
+    assertThat(format(regions.toQueryIntervals(dictionary))).containsExactly("0:1-10", "1:1-10", "2:1-10");
+  }
+
+  @Test
+  public void test_open_ended_regions() {
+    val regions = RegionSet.of(Arrays.asList(new Slice("chr1", 100), new Slice("chr1", 200, 300), new Slice("chr2")));
+
+    assertThat(format(regions.toQueryIntervals(dictionary))).containsExactly("0:100--1", "1:-1--1");
+  }
+
+  @Test
+  public void test_read_bed() {
+    val bed = "track name=test\n#comment\nchr1\t99\t200\tname\t0\t+\n\nchr2 0 10\n";
+
+    val regions = RegionSet.readBed(new StringReader(bed));
+
+    assertThat(regions.size()).isEqualTo(2);
+    assertThat(format(regions.toQueryIntervals(dictionary))).containsExactly("0:100-200", "1:1-10");
+  }
+
+  @Test
+  public void test_read_invalid_bed() {
+    assertThatThrownBy(() -> RegionSet.readBed(new StringReader("chr1\t100\n")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("line 1");
+  }
+
+  @Test
+  public void test_read_large_bed() throws Exception {
+    val file = tmp.newFile("regions.bed");
+    @Cleanup
+    val writer = new BufferedWriter(new FileWriter(file));
+    for (int i = 0; i < 1_000_000; i++) {
+      // alternating between two sequences, 1000 bp apart on each
+      val start = (i / 2) * 1000 + (i % 2) * 50;
+      writer.write(String.format("chr%d\t%d\t%d\n", i % 2 + 1, start, start + 100));
+    }
+    writer.close();
+
+    val regions = RegionSet.readBed(file);
+    val intervals = regions.toQueryIntervals(dictionary);
+
+    assertThat(regions.size()).isEqualTo(1_000_000);
+    assertThat(intervals).hasSize(1_000_000);
+    assertThat(format(intervals[0])).isEqualTo("0:1-100");
+    assertThat(format(intervals[500_000])).isEqualTo("1:51-150");
+    assertThat(QueryInterval.optimizeIntervals(intervals)).hasSize(intervals.length);
+  }
+
+  private static String[] format(QueryInterval... intervals) {
+    return Arrays.stream(intervals).map(RegionSetTest::format).toArray(String[]::new);
+  }
+
+  private static String format(QueryInterval interval) {
+    return String.format("%d:%d-%d", interval.referenceIndex, interval.start, interval.end);
+  }
+
+}
@@ -19,10 +19,24 @@ package bio.overture.score.client.slicing;
 
 import bio.overture.score.client.command.ViewCommand;
 import bio.overture.score.client.metadata.Entity;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReaderFactory;
+import lombok.Cleanup;
+import lombok.val;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
@@ -34,6 +48,9 @@ import static org.junit.Assert.assertThat;
  */
 public class SamFileBuilderTest {
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   SamFileBuilder sut;
 
   @Before
@@ -121,4 +138,97 @@ public class SamFileBuilderTest {
     String result = sut.generateOutputFileName(stub, queries);
     assertThat(result, equalTo(fname));
   }
+
+  @Test
+  public void test_merged_filename_construction() {
+    sut.outputFormat(ViewCommand.OutputFormat.BAM);
+
+    List<String> queries = new ArrayList<String>();
+    queries.add("chr1:1000-2000");
+    queries.add("chr5:150000-250000");
+
+    String result = sut.generateMergedOutputFileName(queries);
+    assertThat(result, equalTo("merged.chr1_1000-2000__chr5_150000-250000.bam"));
+  }
+
+  @Test
+  public void test_merged_output_is_sorted_with_reconciled_read_groups() throws Exception {
+    val first = createBam("first.bam", "sample-1", 100, 300, 500);
+    val second = createBam("second.bam", "sample-2", 200, 400, 2000);
+    val outputDir = tmp.newFolder("out");
+
+    sut.outputFormat(ViewCommand.OutputFormat.BAM)
+        .outputDir(outputDir)
+        .queries(Arrays.asList("1:1-1000"))
+        .buildMerged(Arrays.asList(
+            () -> SamReaderFactory.makeDefault().open(first),
+            () -> SamReaderFactory.makeDefault().open(second)), 2);
+
+    @Cleanup
+    val reader = SamReaderFactory.makeDefault().open(new File(outputDir, "merged.1_1-1000.bam"));
+    val starts = new ArrayList<Integer>();
+    val readGroups = new ArrayList<String>();
+    for (val record : reader) {
+      starts.add(record.getAlignmentStart());
+      readGroups.add(record.getReadGroup().getSample());
+    }
+
+    assertThat(starts, equalTo(Arrays.asList(100, 200, 300, 400, 500)));
+    assertThat(readGroups, equalTo(Arrays.asList("sample-1", "sample-2", "sample-1", "sample-2", "sample-1")));
+    assertThat(reader.getFileHeader().getReadGroups().size(), equalTo(2));
+  }
+
+  @Test
+  public void test_merged_output_in_batches() throws Exception {
+    val first = createBam("first.bam", "sample-1", 100, 400);
+    val second = createBam("second.bam", "sample-2", 200, 500);
+    val third = createBam("third.bam", "sample-3", 300);
+    val outputDir = tmp.newFolder("batched");
+
+    sut.outputFormat(ViewCommand.OutputFormat.BAM)
+        .outputDir(outputDir)
+        .queries(Arrays.asList("1:1-1000"))
+        .mergeBatchSize(2)
+        .buildMerged(Arrays.asList(
+            () -> SamReaderFactory.makeDefault().open(first),
+            () -> SamReaderFactory.makeDefault().open(second),
+            () -> SamReaderFactory.makeDefault().open(third)), 2);
+
+    @Cleanup
+    val reader = SamReaderFactory.makeDefault().open(new File(outputDir, "merged.1_1-1000.bam"));
+    val starts = new ArrayList<Integer>();
+    for (val record : reader) {
+      starts.add(record.getAlignmentStart());
+    }
+
+    assertThat(starts, equalTo(Arrays.asList(100, 200, 300, 400, 500)));
+    assertThat(reader.getFileHeader().getReadGroups().size(), equalTo(3));
+    // Temporary batch files are removed
+    assertThat(outputDir.list().length, equalTo(1));
+  }
+
+  private File createBam(String name, String sample, int... starts) {
+    val header = new SAMFileHeader();
+    header.setSortOrder(SortOrder.coordinate);
+    header.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(new SAMSequenceRecord("1", 10000))));
+    val readGroup = new SAMReadGroupRecord("rg");
+    readGroup.setSample(sample);
+    header.addReadGroup(readGroup);
+
+    val file = new File(tmp.getRoot(), name);
+    @Cleanup
+    val writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(header, true, file);
+    for (val start : starts) {
+      val record = new SAMRecord(header);
+      record.setReadName(name + start);
+      record.setReferenceIndex(0);
+      record.setAlignmentStart(start);
+      record.setCigarString("50M");
+      record.setReadString(new String(new char[50]).replace('\0', 'A'));
+      record.setBaseQualityString(new String(new char[50]).replace('\0', 'I'));
+      record.setAttribute("RG", "rg");
+      writer.addAlignment(record);
+    }
+    return file;
+  }
 }
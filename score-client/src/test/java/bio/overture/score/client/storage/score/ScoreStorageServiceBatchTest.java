@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage.score;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import com.google.common.collect.ImmutableList;
+
+import bio.overture.score.client.config.ClientProperties;
+import bio.overture.score.client.download.DownloadStateStore;
+import bio.overture.score.client.encryption.TokenEncryptionService;
+import bio.overture.score.client.exception.NotFoundException;
+import bio.overture.score.core.model.ObjectSpecification;
+import lombok.val;
+
+public class ScoreStorageServiceBatchTest {
+
+  private static final String ENDPOINT = "https://score.example.org";
+
+  private final RestTemplate serviceTemplate = mock(RestTemplate.class);
+  private ScoreStorageService sut;
+
+  @Before
+  public void setUp() {
+    sut = new ScoreStorageService(ENDPOINT, mock(DownloadStateStore.class), mock(RestTemplate.class),
+        new RetryTemplate(), serviceTemplate, mock(RestTemplate.class), "test", new ClientProperties(),
+        mock(TokenEncryptionService.class));
+    for (val objectId : ImmutableList.of("object-1", "object-2")) {
+      when(serviceTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+          eq(ObjectSpecification.class), eq(objectId), eq(0L), eq(-1L), eq(false)))
+              .thenReturn(ResponseEntity.ok(spec(objectId, 10L)));
+    }
+  }
+
+  @Test
+  public void test_specifications_fall_back_to_one_request_per_object() throws Exception {
+    when(serviceTemplate.exchange(contains("/download/batch"), eq(HttpMethod.POST), any(HttpEntity.class),
+        ArgumentMatchers.<ParameterizedTypeReference<List<ObjectSpecification>>> any(), any(), any()))
+            .thenThrow(new NotFoundException(new IOException("Method Not Allowed")));
+
+    val specs = sut.getDownloadSpecifications(ImmutableList.of("object-1", "object-2"), false, true);
+
+    assertThat(specs).extracting(ObjectSpecification::getObjectId).containsExactly("object-1", "object-2");
+  }
+
+  @Test
+  public void test_sizes_fall_back_to_one_request_per_object() throws Exception {
+    when(serviceTemplate.exchange(contains("/download/sizes"), eq(HttpMethod.POST), any(HttpEntity.class),
+        ArgumentMatchers.<ParameterizedTypeReference<Map<String, Long>>> any()))
+            .thenThrow(new NotFoundException(new IOException("Not Found")));
+    when(serviceTemplate.exchange(contains("/download/batch"), eq(HttpMethod.POST), any(HttpEntity.class),
+        ArgumentMatchers.<ParameterizedTypeReference<List<ObjectSpecification>>> any(), any(), any()))
+            .thenThrow(new NotFoundException(new IOException("Method Not Allowed")));
+
+    val sizes = sut.getObjectSizes(ImmutableList.of("object-1", "object-2"));
+
+    assertThat(sizes).containsOnlyKeys("object-1", "object-2").containsValue(10L);
+  }
+
+  private static ObjectSpecification spec(String objectId, long size) {
+    val spec = new ObjectSpecification();
+    spec.setObjectId(objectId);
+    spec.setObjectSize(size);
+    spec.setParts(ImmutableList.of());
+    return spec;
+  }
+
+}
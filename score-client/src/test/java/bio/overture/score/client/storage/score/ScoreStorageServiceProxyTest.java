@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage.score;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import com.google.common.collect.ImmutableList;
+
+import bio.overture.score.client.config.ClientProperties;
+import bio.overture.score.client.download.DownloadStateStore;
+import bio.overture.score.client.encryption.TokenEncryptionService;
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import lombok.val;
+
+public class ScoreStorageServiceProxyTest {
+
+  private static final String ENDPOINT = "https://score.example.org";
+
+  private final RestTemplate serviceTemplate = mock(RestTemplate.class);
+  private final ClientProperties properties = new ClientProperties();
+  private ScoreStorageService sut;
+
+  @Before
+  public void setUp() {
+    properties.setAccessToken("token");
+    sut = new ScoreStorageService(ENDPOINT, mock(DownloadStateStore.class), mock(RestTemplate.class),
+        new RetryTemplate(), serviceTemplate, mock(RestTemplate.class), "test", properties,
+        mock(TokenEncryptionService.class));
+  }
+
+  @Test
+  public void test_proxy_mode_points_parts_at_the_server() throws Exception {
+    sut.setMode("proxy");
+    when(serviceTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+        eq(ObjectSpecification.class), eq("object"), eq(0L), eq(-1L), eq(true)))
+            .thenReturn(ResponseEntity.ok(spec("https://s3.example.org/signed")));
+
+    val spec = sut.getDownloadSpecification("object");
+
+    assertThat(spec.getParts()).extracting(Part::getUrl)
+        .containsOnly(ENDPOINT + "/download/object/data");
+
+    val headers = new HttpHeaders();
+    sut.addDataHeaders(headers, spec.getParts().get(0));
+    assertThat(headers.getFirst(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer token");
+  }
+
+  @Test
+  public void test_direct_mode_keeps_signed_urls_and_token_private() throws Exception {
+    when(serviceTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+        eq(ObjectSpecification.class), eq("object"), eq(0L), eq(-1L), eq(false)))
+            .thenReturn(ResponseEntity.ok(spec("https://s3.example.org/signed")));
+
+    val spec = sut.getDownloadSpecification("object");
+
+    assertThat(spec.getParts()).extracting(Part::getUrl).containsOnly("https://s3.example.org/signed");
+
+    val headers = new HttpHeaders();
+    sut.addDataHeaders(headers, spec.getParts().get(0));
+    assertThat(headers.containsKey(HttpHeaders.AUTHORIZATION)).isFalse();
+  }
+
+  private static ObjectSpecification spec(String url) {
+    val spec = new ObjectSpecification();
+    spec.setObjectId("object");
+    spec.setParts(ImmutableList.of(
+        Part.builder().partNumber(1).offset(0).partSize(10).url(url).build(),
+        Part.builder().partNumber(2).offset(10).partSize(10).url(url).build()));
+    return spec;
+  }
+
+}
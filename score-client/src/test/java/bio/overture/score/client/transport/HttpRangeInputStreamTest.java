@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpRangeInputStreamTest {
+
+  private final byte[] data = new byte[10_000];
+  private final AtomicInteger requests = new AtomicInteger();
+  private HttpServer server;
+  private URL url;
+
+  @Before
+  public void setUp() throws Exception {
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/object", exchange -> {
+      requests.incrementAndGet();
+      val range = exchange.getRequestHeaders().getFirst("Range").replace("bytes=", "").split("-");
+      val start = Integer.parseInt(range[0]);
+      val end = Math.min(Integer.parseInt(range[1]), data.length - 1);
+      if (start >= data.length) {
+        exchange.sendResponseHeaders(416, -1);
+      } else {
+        exchange.sendResponseHeaders(206, end - start + 1);
+        exchange.getResponseBody().write(data, start, end - start + 1);
+      }
+      exchange.close();
+    });
+    server.start();
+    url = new URL("http://localhost:" + server.getAddress().getPort() + "/object");
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void test_small_prefix_takes_one_request() throws Exception {
+    val in = new HttpRangeInputStream(url, 1000);
+    val prefix = new byte[500];
+    ByteStreams.readFully(in, prefix);
+
+    assertThat(prefix).isEqualTo(Arrays.copyOf(data, 500));
+    assertThat(requests.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_read_to_end_with_growing_requests() throws Exception {
+    val in = new HttpRangeInputStream(url, 100);
+
+    assertThat(ByteStreams.toByteArray(in)).isEqualTo(data);
+    // 100 + 200 + ... + 6400 bytes covers the object, the last range is short
+    assertThat(requests.get()).isEqualTo(7);
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.net.httpserver.HttpServer;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RangeBufferTest {
+
+  private final byte[] data = new byte[10_000];
+  private HttpServer server;
+  private URL url;
+
+  @Before
+  public void setUp() throws Exception {
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/object", exchange -> {
+      val range = exchange.getRequestHeaders().getFirst("Range").replace("bytes=", "").split("-");
+      val start = Integer.parseInt(range[0]);
+      val end = Math.min(Integer.parseInt(range[1]), data.length - 1);
+      if (start == 5000) {
+        // Simulates a transient failure of one range
+        exchange.sendResponseHeaders(503, -1);
+      } else {
+        exchange.sendResponseHeaders(206, end - start + 1);
+        exchange.getResponseBody().write(data, start, end - start + 1);
+      }
+      exchange.close();
+    });
+    server.start();
+    url = new URL("http://localhost:" + server.getAddress().getPort() + "/object");
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void test_failed_range_is_left_to_on_demand_reads() {
+    val sut = new RangeBuffer(url, 2, 1_000_000);
+
+    sut.prefetch(ImmutableList.of(new ByteRange(0, 1000), new ByteRange(5000, 6000)));
+
+    val buffer = new byte[1000];
+    assertThat(sut.read(0, buffer, 0, buffer.length)).isEqualTo(1000);
+    assertThat(buffer).isEqualTo(Arrays.copyOf(data, 1000));
+    assertThat(sut.read(5000, buffer, 0, buffer.length)).isZero();
+    assertThat(sut.size()).isEqualTo(1000);
+  }
+
+}
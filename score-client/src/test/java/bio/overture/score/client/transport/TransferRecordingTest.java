@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.val;
+
+public class TransferRecordingTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_part_transfer_is_recorded() throws Exception {
+    val file = tmp.newFile("transfer.jfr");
+    val recording = TransferRecording.start(Configuration.create(new StringReader(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?><configuration version=\"2.0\"/>")), file);
+
+    val event = PartTransferEvent.begin(PartTransferEvent.DOWNLOAD, "object", 3, 1);
+    event.bytes = 1024;
+    event.success = true;
+    event.commit();
+
+    recording.stop();
+    recording.close();
+
+    val events = RecordingFile.readAllEvents(file.toPath());
+    assertThat(events).anySatisfy(recorded -> {
+      assertThat(recorded.getEventType().getName()).isEqualTo(PartTransferEvent.NAME);
+      assertThat(recorded.getString("objectId")).isEqualTo("object");
+      assertThat(recorded.getString("direction")).isEqualTo(PartTransferEvent.DOWNLOAD);
+      assertThat(recorded.getInt("partNumber")).isEqualTo(3);
+      assertThat(recorded.getLong("bytes")).isEqualTo(1024);
+      assertThat(recorded.getInt("retries")).isEqualTo(1);
+      assertThat(recorded.getBoolean("success")).isTrue();
+    });
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.util;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import lombok.val;
+
+public class RecordingLoggerTest {
+
+  @Test
+  public void test_replay_in_recorded_order_at_recorded_levels() {
+    val sut = new RecordingLogger("test");
+    val logger = sut.getLogger();
+    val exception = new IllegalStateException("boom");
+    logger.info("first {}", 1);
+    logger.warn("second");
+    logger.error("third {}", "x", exception);
+    logger.debug("fourth {} {}", "a", "b");
+    logger.error("fifth", exception);
+
+    val target = mock(Logger.class);
+    sut.replay(target);
+
+    val inOrder = inOrder(target);
+    // Replay always goes through the varargs overloads, with a trailing throwable as the last argument
+    inOrder.verify(target).info("first {}", new Object[] { 1 });
+    inOrder.verify(target).warn("second", new Object[0]);
+    inOrder.verify(target).error("third {}", new Object[] { "x", exception });
+    inOrder.verify(target).debug("fourth {} {}", new Object[] { "a", "b" });
+    inOrder.verify(target).error("fifth", new Object[] { exception });
+    verifyNoMoreInteractions(target);
+  }
+
+  @Test
+  public void test_replay_forgets_events() {
+    val sut = new RecordingLogger("test");
+    sut.getLogger().info("once");
+
+    val target = mock(Logger.class);
+    sut.replay(target);
+    sut.replay(target);
+
+    inOrder(target).verify(target).info("once", new Object[0]);
+    verifyNoMoreInteractions(target);
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.bulkhead;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import bio.overture.score.server.exception.RetryableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded pool that one class of blocking operations runs on, so a burst of them can only exhaust its own threads
+ * and not the request threads everything else shares. Operations that find the queue full fail straight away with a
+ * {@link RetryableException} (503) for the client to retry, as do operations that don't complete within the
+ * bulkhead's timeout.
+ * <p>
+ * The security context and request attributes of the submitting thread are carried over to the operation, so request
+ * scoped state such as the per-request metadata lookups is shared with it.
+ */
+@Slf4j
+public class Bulkhead implements MeterBinder {
+
+  /**
+   * Times out the operations of every bulkhead.
+   */
+  private static final ScheduledThreadPoolExecutor TIMEOUTS = createTimeouts();
+
+  @Getter
+  private final String name;
+  private final ThreadPoolExecutor executor;
+  private final long timeout;
+
+  /**
+   * Metrics.
+   */
+  private Timer successTimer;
+  private Timer failureTimer;
+  private Counter rejected;
+  private Counter timedOut;
+
+  public Bulkhead(@NonNull String name, @NonNull BulkheadSpec spec) {
+    this.name = name;
+    this.executor = new ThreadPoolExecutor(spec.getThreads(), spec.getThreads(), 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(spec.getQueue()),
+        new ThreadFactoryBuilder().setNameFormat("bulkhead-" + name + "-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    this.timeout = spec.getTimeout();
+  }
+
+  /**
+   * Runs the operation on the bulkhead, completing the returned future with its result.
+   */
+  public <T> CompletableFuture<T> supply(@NonNull Supplier<T> operation) {
+    val future = new CompletableFuture<T>();
+    val start = System.nanoTime();
+    val requestAttributes = forWorker(RequestContextHolder.getRequestAttributes());
+    // Whichever of the operation and its timeout settles the future first, so metrics are recorded before completion
+    val settled = new AtomicBoolean();
+    val task = new DelegatingSecurityContextRunnable(() -> {
+      T result;
+      RequestContextHolder.setRequestAttributes(requestAttributes);
+      try {
+        result = operation.get();
+      } catch (Throwable t) {
+        record(failureTimer, start);
+        if (settled.compareAndSet(false, true)) {
+          future.completeExceptionally(t);
+        }
+        return;
+      } finally {
+        RequestContextHolder.resetRequestAttributes();
+      }
+      record(successTimer, start);
+      if (settled.compareAndSet(false, true)) {
+        future.complete(result);
+      }
+    });
+
+    try {
+      val submitted = executor.submit(task);
+      if (timeout > 0) {
+        val scheduled = TIMEOUTS.schedule(() -> {
+          if (settled.compareAndSet(false, true)) {
+            if (timedOut != null) {
+              timedOut.increment();
+            }
+            log.warn("Bulkhead {} operation timed out after {} ms", name, timeout);
+            future.completeExceptionally(new RetryableException(new TimeoutException(
+                "Bulkhead " + name + " operation did not complete within " + timeout + " ms")));
+            submitted.cancel(false);
+          }
+        }, timeout, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, t) -> scheduled.cancel(false));
+      }
+    } catch (RejectedExecutionException e) {
+      if (rejected != null) {
+        rejected.increment();
+      }
+      log.warn("Bulkhead {} is full ({} queued), rejecting operation", name, executor.getQueue().size());
+      future.completeExceptionally(new RetryableException(e));
+    }
+
+    return future;
+  }
+
+  public CompletableFuture<Void> run(@NonNull Runnable operation) {
+    return supply(() -> {
+      operation.run();
+      return null;
+    });
+  }
+
+  public int getQueued() {
+    return executor.getQueue().size();
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    Gauge.builder("score.bulkhead.queued", executor, e -> e.getQueue().size())
+        .tag("bulkhead", name)
+        .description("Operations waiting for a bulkhead thread")
+        .register(registry);
+    Gauge.builder("score.bulkhead.active", executor, ThreadPoolExecutor::getActiveCount)
+        .tag("bulkhead", name)
+        .description("Operations running on the bulkhead")
+        .register(registry);
+    successTimer = timer(registry, "success");
+    failureTimer = timer(registry, "failure");
+    rejected = Counter.builder("score.bulkhead.rejected")
+        .tag("bulkhead", name)
+        .description("Operations rejected because the bulkhead queue was full")
+        .register(registry);
+    timedOut = Counter.builder("score.bulkhead.timeouts")
+        .tag("bulkhead", name)
+        .description("Operations that did not complete within the bulkhead timeout")
+        .register(registry);
+  }
+
+  private Timer timer(MeterRegistry registry, String outcome) {
+    return Timer.builder("score.bulkhead.latency")
+        .tags("bulkhead", name, "outcome", outcome)
+        .description("Time from submitting an operation to its completion, including time queued")
+        .register(registry);
+  }
+
+  /**
+   * Request attributes for the worker thread. The submitting thread's are deactivated as soon as it has returned the
+   * future, so servlet requests get attributes of their own, backed by the same request.
+   */
+  private static RequestAttributes forWorker(RequestAttributes attributes) {
+    if (attributes instanceof ServletRequestAttributes) {
+      val servletAttributes = (ServletRequestAttributes) attributes;
+      return new ServletRequestAttributes(servletAttributes.getRequest(), servletAttributes.getResponse());
+    }
+    return attributes;
+  }
+
+  private static ScheduledThreadPoolExecutor createTimeouts() {
+    val timeouts = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("bulkhead-timeouts-%d").setDaemon(true).build());
+    timeouts.setRemoveOnCancelPolicy(true);
+    return timeouts;
+  }
+
+  private static void record(Timer timer, long start) {
+    if (timer != null) {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.bulkhead;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * The server's bulkheads by name. Each is sized from its spec, falling back to the defaults.
+ */
+public class Bulkheads implements MeterBinder {
+
+  /**
+   * Reads and small writes against the object store: specifications, upload initiation and part bookkeeping.
+   */
+  public static final String CONTROL = "control";
+  /**
+   * Completing multipart uploads, which can take minutes on large objects.
+   */
+  public static final String FINALIZE = "finalize";
+  /**
+   * Listing the whole object store.
+   */
+  public static final String LISTING = "listing";
+
+  private final BulkheadSpec defaults;
+  private final Map<String, BulkheadSpec> specs;
+  private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+  private MeterRegistry registry;
+
+  public Bulkheads(@NonNull BulkheadSpec defaults, @NonNull Map<String, BulkheadSpec> specs) {
+    this.defaults = defaults;
+    this.specs = specs;
+  }
+
+  public Bulkhead get(@NonNull String name) {
+    return bulkheads.computeIfAbsent(name, n -> {
+      val bulkhead = new Bulkhead(n, specs.getOrDefault(n, defaults));
+      if (registry != null) {
+        bulkhead.bindTo(registry);
+      }
+      return bulkhead;
+    });
+  }
+
+  @Override
+  public synchronized void bindTo(@NonNull MeterRegistry registry) {
+    this.registry = registry;
+    bulkheads.values().forEach(bulkhead -> bulkhead.bindTo(registry));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    bulkheads.values().forEach(Bulkhead::shutdown);
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.cache;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import lombok.NonNull;
+import lombok.Value;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Spring {@link org.springframework.cache.Cache} backed by a Guava cache built from a {@link CacheSpec}.
+ * <p>
+ * Loads through {@link #get(Object, Callable)} are single-flight per key. When the spec has a refresh interval, a stale
+ * entry is returned as is and reloaded on {@code refreshExecutor}, so callers never wait on a rebuild once the cache is
+ * warm.
+ */
+@Slf4j
+public class GuavaCache extends AbstractValueAdaptingCache {
+
+  private final String name;
+  private final Cache<Object, Entry> cache;
+  private final long refreshNanos;
+  private final Executor refreshExecutor;
+  private final Ticker ticker;
+  private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+  public GuavaCache(@NonNull String name, @NonNull CacheSpec spec, @NonNull Executor refreshExecutor) {
+    this(name, spec, refreshExecutor, Ticker.systemTicker());
+  }
+
+  GuavaCache(String name, CacheSpec spec, Executor refreshExecutor, Ticker ticker) {
+    super(true);
+    this.name = name;
+    this.cache = buildCache(spec, ticker);
+    this.refreshNanos = spec.isRefreshing() ? spec.getRefresh().toNanos() : Long.MAX_VALUE;
+    this.refreshExecutor = refreshExecutor;
+    this.ticker = ticker;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Cache<Object, ?> getNativeCache() {
+    return cache;
+  }
+
+  @Override
+  protected Object lookup(Object key) {
+    val entry = cache.getIfPresent(key);
+    return entry == null ? null : entry.getValue();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    Entry entry;
+    try {
+      entry = cache.get(key, () -> load(valueLoader));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new ValueRetrievalException(key, valueLoader, e.getCause());
+    }
+
+    if (ticker.read() - entry.getLoaded() >= refreshNanos) {
+      refresh(key, valueLoader);
+    }
+
+    return (T) fromStoreValue(entry.getValue());
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    cache.put(key, new Entry(toStoreValue(value), ticker.read()));
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(Object key, Object value) {
+    val previous = cache.asMap().putIfAbsent(key, new Entry(toStoreValue(value), ticker.read()));
+    return previous == null ? null : toValueWrapper(previous.getValue());
+  }
+
+  @Override
+  public void evict(Object key) {
+    cache.invalidate(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  private Entry load(Callable<?> valueLoader) throws Exception {
+    return new Entry(toStoreValue(valueLoader.call()), ticker.read());
+  }
+
+  private void refresh(Object key, Callable<?> valueLoader) {
+    if (!refreshing.add(key)) {
+      // Already being reloaded
+      return;
+    }
+
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          val watch = ticker.read();
+          cache.put(key, load(valueLoader));
+          log.info("Refreshed cache '{}' entry {} in {} ms", name, key, NANOSECONDS.toMillis(ticker.read() - watch));
+        } catch (Exception e) {
+          // Keep serving the stale entry and retry on a later access
+          log.warn("Could not refresh cache '{}' entry {}: {}", name, key, e.getMessage());
+        } finally {
+          refreshing.remove(key);
+        }
+      });
+    } catch (RuntimeException e) {
+      refreshing.remove(key);
+      log.warn("Could not schedule refresh of cache '{}' entry {}: {}", name, key, e.getMessage());
+    }
+  }
+
+  private static Cache<Object, Entry> buildCache(CacheSpec spec, Ticker ticker) {
+    val builder = CacheBuilder.newBuilder().ticker(ticker).recordStats();
+    if (spec.getMaxWeight() > 0) {
+      builder.maximumWeight(spec.getMaxWeight()).weigher((Object key, Entry entry) -> weigh(entry.getValue()));
+    } else {
+      builder.maximumSize(spec.getMaxSize());
+    }
+    if (spec.getTtl() != null && !spec.getTtl().isZero()) {
+      builder.expireAfterWrite(spec.getTtl().toNanos(), NANOSECONDS);
+    }
+
+    return builder.build();
+  }
+
+  private static int weigh(Object value) {
+    if (value instanceof Collection) {
+      return Math.max(1, ((Collection<?>) value).size());
+    }
+    if (value instanceof Map) {
+      return Math.max(1, ((Map<?, ?>) value).size());
+    }
+
+    return 1;
+  }
+
+  @Value
+  static class Entry {
+
+    Object value;
+    long loaded;
+
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.springframework.cache.support.AbstractCacheManager;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+/**
+ * Creates a {@link GuavaCache} per cache name. Caches with a spec of their own are created up front so they can be
+ * bound to metrics at startup; any other name gets the defaults on first use.
+ */
+@RequiredArgsConstructor
+public class GuavaCacheManager extends AbstractCacheManager {
+
+  @NonNull
+  private final CacheSpec defaults;
+  @NonNull
+  private final Map<String, CacheSpec> specs;
+  @NonNull
+  private final Executor refreshExecutor;
+
+  @Override
+  protected Collection<GuavaCache> loadCaches() {
+    val caches = new ArrayList<GuavaCache>();
+    specs.forEach((name, spec) -> caches.add(new GuavaCache(name, spec, refreshExecutor)));
+
+    return caches;
+  }
+
+  @Override
+  protected GuavaCache getMissingCache(String name) {
+    return new GuavaCache(name, specs.getOrDefault(name, defaults), refreshExecutor);
+  }
+
+}
@@ -17,56 +17,56 @@
  */
 package bio.overture.score.server.config;
 
-import static java.util.concurrent.TimeUnit.MINUTES;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-import java.util.concurrent.ConcurrentMap;
-
-import org.springframework.cache.Cache;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCache;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import bio.overture.score.server.cache.CacheSpec;
+import bio.overture.score.server.cache.GuavaCache;
+import bio.overture.score.server.cache.GuavaCacheManager;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * Server wide caching configuration.
+ * <p>
+ * Every named cache is sized from {@code cache.specs.<name>}, falling back to {@code cache.defaults}. Hit, miss,
+ * eviction and load statistics of the configured caches are published as {@code cache.*} meters.
  */
+@Getter
+@Setter
 @Configuration
 @EnableCaching
+@ConfigurationProperties(prefix = "cache")
 public class CacheConfig extends CachingConfigurerSupport {
 
-  /**
-   * Constants.
-   */
-  private static final int CACHE_TTL_MINUTES = 60;
+  private CacheSpec defaults = new CacheSpec();
+  private Map<String, CacheSpec> specs = new LinkedHashMap<>();
+  private int refreshThreads = 2;
 
+  @Bean
   @Override
   public CacheManager cacheManager() {
-    return new ConcurrentMapCacheManager() {
-
-      @Override
-      protected Cache createConcurrentMapCache(String name) {
-        return new ConcurrentMapCache(name, createStore(), false);
-      }
-
-      /**
-       * @return Guava cache instance with a suitable TTL.
-       */
-      private ConcurrentMap<Object, Object> createStore() {
-        return CacheBuilder
-            .newBuilder()
-            .expireAfterWrite(CACHE_TTL_MINUTES, MINUTES)
-            .maximumSize(100)
-            .build()
-            .asMap();
-      }
+    return new GuavaCacheManager(defaults, specs, refreshExecutor());
+  }
 
-    };
+  @Bean
+  public CacheMeterBinderProvider<GuavaCache> guavaCacheMeterBinderProvider() {
+    return (cache, tags) -> new GuavaCacheMetrics(cache.getNativeCache(), cache.getName(), tags);
   }
 
   @Override
@@ -74,4 +74,9 @@ public class CacheConfig extends CachingConfigurerSupport {
     return new SimpleKeyGenerator();
   }
 
-}
\ No newline at end of file
+  private Executor refreshExecutor() {
+    return Executors.newFixedThreadPool(refreshThreads,
+        new ThreadFactoryBuilder().setNameFormat("cache-refresh-%d").setDaemon(true).build());
+  }
+
+}
@@ -13,8 +13,11 @@ import com.amazonaws.services.s3.S3ClientOptions;
 import com.amazonaws.services.s3.internal.S3Signer;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.SSEAlgorithm;
+import bio.overture.score.server.repository.s3.S3Metrics;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -44,6 +47,12 @@ public class S3Config {
   @Value("${upload.connection.timeout}")
   private int connectionTimeout;
 
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  /**
+   * Every call through the client is timed as {@link S3Metrics#REQUESTS} when metrics are enabled.
+   */
   @Bean
   public AmazonS3 s3() {
     AmazonS3 s3Client = null;
@@ -59,7 +68,7 @@ public class S3Config {
     s3Client.setEndpoint(endpoint);
     s3Client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
 
-    return s3Client;
+    return meterRegistry == null ? s3Client : S3Metrics.instrument(s3Client, meterRegistry);
   }
 
   private ClientConfiguration clientConfiguration() {
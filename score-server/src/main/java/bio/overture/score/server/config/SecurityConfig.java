@@ -27,12 +27,19 @@ import javax.servlet.http.HttpServletResponse;
 import bio.overture.score.server.metadata.MetadataService;
 import bio.overture.score.server.security.DownloadScopeAuthorizationStrategy;
 import bio.overture.score.server.security.CachingRemoteTokenServices;
+import bio.overture.score.server.security.JwtKeySource;
+import bio.overture.score.server.security.JwtTokenServices;
 import bio.overture.score.server.security.UploadScopeAuthorizationStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.Scope;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -44,11 +51,14 @@ import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
 import org.springframework.security.web.authentication.preauth.AbstractPreAuthenticatedProcessingFilter;
+import org.springframework.web.client.RestTemplate;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
+import static com.google.common.base.Preconditions.checkState;
+
 /**
  * Resource service configuration file.<br>
  * Protects resources with access token obtained at the authorization server.
@@ -99,6 +109,7 @@ public class SecurityConfig extends ResourceServerConfigurerAdapter {
 
   @Bean
   public RemoteTokenServices remoteTokenServices(
+      ObjectProvider<MeterRegistry> meterRegistry,
       final @Value("${auth.server.url}") String checkTokenUrl,
       final @Value("${auth.server.clientId}") String clientId,
       final @Value("${auth.server.clientSecret}") String clientSecret) {
@@ -107,12 +118,47 @@ public class SecurityConfig extends ResourceServerConfigurerAdapter {
     remoteTokenServices.setClientId(clientId);
     remoteTokenServices.setClientSecret(clientSecret);
     remoteTokenServices.setAccessTokenConverter(accessTokenConverter());
+    meterRegistry.ifAvailable(remoteTokenServices::bindTo);
 
     log.debug("using auth server: " + checkTokenUrl);
 
     return remoteTokenServices;
   }
 
+  /**
+   * Verifies JWTs locally against {@code auth.jwt.publicKey} or the keys at {@code auth.jwt.jwksUrl}, and only asks the
+   * auth server to introspect opaque tokens.
+   */
+  @Bean
+  @Primary
+  @ConditionalOnProperty(value = "auth.jwt.enabled", havingValue = "true")
+  public JwtTokenServices jwtTokenServices(
+      RemoteTokenServices remoteTokenServices,
+      ObjectProvider<MeterRegistry> meterRegistry,
+      final @Value("${auth.jwt.publicKey:}") String publicKey,
+      final @Value("${auth.jwt.jwksUrl:}") String jwksUrl,
+      final @Value("${auth.jwt.leeway:30}") long leeway,
+      final @Value("${auth.jwt.cacheSize:10000}") long cacheSize,
+      final @Value("${auth.jwt.issuer:}") String issuer,
+      final @Value("${auth.jwt.audience:}") String audience,
+      final @Value("${auth.jwt.connectTimeout:5000}") int connectTimeout,
+      final @Value("${auth.jwt.readTimeout:10000}") int readTimeout) {
+    checkState(!publicKey.isEmpty() || !jwksUrl.isEmpty(),
+        "auth.jwt.publicKey or auth.jwt.jwksUrl is required when auth.jwt.enabled is true");
+    val requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout(connectTimeout);
+    requestFactory.setReadTimeout(readTimeout);
+    val keys = publicKey.isEmpty() ? JwtKeySource.fromJwks(jwksUrl, new RestTemplate(requestFactory)) :
+        JwtKeySource.fromPublicKey(publicKey);
+
+    log.info("verifying JWTs locally using {}", publicKey.isEmpty() ? jwksUrl : "the configured public key");
+
+    val tokenServices = new JwtTokenServices(keys, remoteTokenServices, accessTokenConverter(), leeway, cacheSize,
+        issuer, audience);
+    meterRegistry.ifAvailable(tokenServices::bindTo);
+    return tokenServices;
+  }
+
   private void configureAuthorization(HttpSecurity http) throws Exception {
     log.info("using upload scope: {}", uploadScope);
     log.info("using download scope: {}", downloadScope);
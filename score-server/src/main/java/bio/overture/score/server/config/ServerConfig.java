@@ -24,6 +24,7 @@ import bio.overture.score.core.util.PartCalculator;
 import bio.overture.score.server.repository.UploadStateStore;
 import bio.overture.score.server.repository.s3.S3BucketNamingService;
 import bio.overture.score.server.repository.s3.S3URLGenerator;
+import bio.overture.score.server.repository.s3.CompactS3UploadStateStore;
 import bio.overture.score.server.repository.s3.S3UploadStateStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -40,9 +41,12 @@ public class ServerConfig {
   @Value("${upload.partsize}")
   private int partSize;
 
+  @Value("${upload.stateStore:s3}")
+  private String stateStore;
+
   @Bean
   public UploadStateStore stateStore() {
-    return new S3UploadStateStore();
+    return "compact".equals(stateStore) ? new CompactS3UploadStateStore() : new S3UploadStateStore();
   }
 
   @Bean
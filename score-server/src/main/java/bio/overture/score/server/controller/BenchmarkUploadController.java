@@ -19,6 +19,7 @@ package bio.overture.score.server.controller;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -62,7 +63,7 @@ public class BenchmarkUploadController extends UploadController {
 
   @Override
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/uploads")
-  public @ResponseBody ObjectSpecification initializeMultipartUpload(
+  public @ResponseBody CompletableFuture<ObjectSpecification> initializeMultipartUpload(
       @RequestHeader(value = "access-token", required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "overwrite", required = false, defaultValue = "false") boolean overwrite,
@@ -70,13 +71,13 @@ public class BenchmarkUploadController extends UploadController {
       @RequestParam(value = "md5", required = false) String md5,
       @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
       HttpServletRequest request) {
-    return uploadService.initiateUpload(objectId, fileSize, md5, overwrite);
+    return CompletableFuture.completedFuture(uploadService.initiateUpload(objectId, fileSize, md5, overwrite));
   }
 
   @Override
   @RequestMapping(method = RequestMethod.DELETE, value = "/{object-id}/parts")
   @ResponseStatus(value = HttpStatus.OK)
-  public void deletePart(
+  public CompletableFuture<Void> deletePart(
       @RequestHeader(value = "access-token", required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "partNumber", required = true) int partNumber,
@@ -84,12 +85,13 @@ public class BenchmarkUploadController extends UploadController {
       @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
       HttpServletRequest request) {
     // NO-OP
+    return CompletableFuture.completedFuture(null);
   }
 
   @Override
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/parts")
   @ResponseStatus(value = HttpStatus.OK)
-  public void finalizePartUpload(
+  public CompletableFuture<Void> finalizePartUpload(
       @RequestHeader(value = "access-token", required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "partNumber", required = true) int partNumber,
@@ -97,26 +99,29 @@ public class BenchmarkUploadController extends UploadController {
       @RequestParam(value = "md5", required = true) String md5,
       @RequestParam(value = "etag", required = true) String eTag) {
     // NO-OP
+    return CompletableFuture.completedFuture(null);
   }
 
   @Override
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}")
   @ResponseStatus(value = HttpStatus.OK)
-  public void finalizeUpload(
+  public CompletableFuture<Void> finalizeUpload(
       @RequestHeader(value = "access-token", required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "uploadId", required = true) String uploadId) {
     // NO-OP
+    return CompletableFuture.completedFuture(null);
   }
 
   @Override
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/recovery")
   @ResponseStatus(value = HttpStatus.OK)
-  public void tryRecover(
+  public CompletableFuture<Void> tryRecover(
       @RequestHeader(value = "access-token", required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "fileSize", required = true) long fileSize) {
     // NO-OP
+    return CompletableFuture.completedFuture(null);
   }
 
   @RequestMapping(method = RequestMethod.PUT, value = "/data/{object-id}")
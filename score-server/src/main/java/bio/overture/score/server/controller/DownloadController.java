@@ -18,7 +18,10 @@
 package bio.overture.score.server.controller;
 
 import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.server.bulkhead.Bulkheads;
+import bio.overture.score.server.repository.BatchDownloadService;
 import bio.overture.score.server.repository.DownloadService;
+import bio.overture.score.server.repository.ProxyDownloadService;
 import bio.overture.score.server.security.TokenHasher;
 import bio.overture.score.server.util.HttpServletRequests;
 import lombok.Setter;
@@ -31,8 +34,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -41,6 +46,11 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A controller to expose RESTful API for download
@@ -54,6 +64,12 @@ public class DownloadController {
 
   @Autowired
   DownloadService downloadService;
+  @Autowired
+  BatchDownloadService batchDownloadService;
+  @Autowired
+  ProxyDownloadService proxyDownloadService;
+  @Autowired
+  Bulkheads bulkheads;
 
   @RequestMapping(method = RequestMethod.GET, value = "/ping")
   public @ResponseBody String ping(
@@ -73,7 +89,7 @@ public class DownloadController {
 
   @PreAuthorize("@accessSecurity.authorize(authentication,#objectId)")
   @RequestMapping(method = RequestMethod.GET, value = "/{object-id}")
-  public @ResponseBody ObjectSpecification downloadPartialObject(
+  public @ResponseBody CompletableFuture<ObjectSpecification> downloadPartialObject(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "offset", required = true) long offset,
@@ -92,7 +108,89 @@ public class DownloadController {
       ipAddress, 
       userAgent
     );
-    return downloadService.download(objectId, offset, length, external, excludeUrls);
+    return bulkheads.get(Bulkheads.CONTROL)
+        .supply(() -> downloadService.download(objectId, offset, length, external, excludeUrls));
+  }
+
+  /**
+   * Streams the object data through the server, honouring a single-range {@code Range} header. Only available when
+   * {@code download.proxy.enabled} is set.
+   */
+  @PreAuthorize("@accessSecurity.authorize(authentication,#objectId)")
+  @RequestMapping(method = RequestMethod.GET, value = "/{object-id}/data")
+  public void downloadObjectData(
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
+      @PathVariable(value = "object-id") String objectId,
+      @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+      @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
+      HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+
+    val ipAddress = HttpServletRequests.getIpAddress(request);
+
+    log.info(
+      "Requesting data of object id {} (range {}) with access token {} (MD5) from {} and client version {}",
+      objectId,
+      range,
+      identifier(accessToken),
+      ipAddress,
+      userAgent
+    );
+    proxyDownloadService.stream(objectId, range, response);
+  }
+
+  /**
+   * Returns the specifications of all requested objects, in request order. Each object is authorized individually and
+   * the whole batch is denied if any one of them is.
+   */
+  @RequestMapping(method = RequestMethod.POST, value = "/batch")
+  public @ResponseBody CompletableFuture<List<ObjectSpecification>> downloadObjects(
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
+      @RequestBody List<String> objectIds,
+      @RequestParam(value = "offset", defaultValue = "0") long offset,
+      @RequestParam(value = "length", defaultValue = "-1") long length,
+      @RequestParam(value = "external", defaultValue = "false") boolean external,
+      @RequestParam(value = "exclude-urls", defaultValue = "false") boolean excludeUrls,
+      @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
+      HttpServletRequest request) {
+
+    val ipAddress = HttpServletRequests.getIpAddress(request);
+
+    log.info(
+      "Requesting download of {} object ids with access token {} (MD5) from {} and client version {}",
+      objectIds.size(),
+      identifier(accessToken),
+      ipAddress,
+      userAgent
+    );
+    val authentication = SecurityContextHolder.getContext().getAuthentication();
+    return bulkheads.get(Bulkheads.CONTROL)
+        .supply(() -> batchDownloadService.download(authentication, objectIds, offset, length, external, excludeUrls));
+  }
+
+  /**
+   * Returns the size in bytes of each requested object, keyed by object id. Meant for pre-flight space checks: no URL is
+   * signed and no part list is returned.
+   */
+  @RequestMapping(method = RequestMethod.POST, value = "/sizes")
+  public @ResponseBody CompletableFuture<Map<String, Long>> getObjectSizes(
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
+      @RequestBody List<String> objectIds,
+      @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
+      HttpServletRequest request) {
+
+    val ipAddress = HttpServletRequests.getIpAddress(request);
+
+    log.info(
+      "Requesting sizes of {} object ids with access token {} (MD5) from {} and client version {}",
+      objectIds.size(),
+      identifier(accessToken),
+      ipAddress,
+      userAgent
+    );
+    val authentication = SecurityContextHolder.getContext().getAuthentication();
+    return bulkheads.get(Bulkheads.CONTROL)
+        .supply(() -> batchDownloadService.getObjectSizes(authentication, objectIds));
   }
 
   protected String identifier(String accessToken) {
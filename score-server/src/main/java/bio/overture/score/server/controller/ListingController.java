@@ -18,8 +18,10 @@
 package bio.overture.score.server.controller;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import bio.overture.score.core.model.ObjectInfo;
+import bio.overture.score.server.bulkhead.Bulkheads;
 import bio.overture.score.server.repository.ListingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -32,10 +34,12 @@ public class ListingController {
 
   @Autowired
   private ListingService listingService;
+  @Autowired
+  private Bulkheads bulkheads;
 
   @RequestMapping("/listing")
-  public List<ObjectInfo> list() {
-    return listingService.getListing();
+  public CompletableFuture<List<ObjectInfo>> list() {
+    return bulkheads.get(Bulkheads.LISTING).supply(listingService::getListing);
   }
 
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.controller;
+
+import bio.overture.score.server.metadata.MetadataService;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Evicts cached metadata server lookups, so that publish / unpublish events and metadata updates take effect before
+ * the cache TTLs expire.
+ * <p>
+ * Evicting an entity needs the blanket upload scope: authorizing by project would look the entity up through the cache
+ * being evicted, failing on a cached not-found and fetching uncached entities only to drop them. Project scoped tokens
+ * can evict the analyses of their studies instead, which evicts their entities too.
+ */
+@Setter
+@RestController
+@RequestMapping("/metadata/cache")
+@Slf4j
+@Profile({ "prod", "default", "debug" })
+public class MetadataCacheController {
+
+  @Autowired
+  MetadataService metadataService;
+
+  @PreAuthorize("@projectSecurity.authorizeAllProjects(authentication)")
+  @RequestMapping(method = RequestMethod.DELETE, value = "/entities/{object-id}")
+  @ResponseStatus(value = HttpStatus.OK)
+  public void evictEntity(@PathVariable(value = "object-id") String objectId) {
+    metadataService.evictEntity(objectId);
+  }
+
+  @PreAuthorize("@projectSecurity.authorizeProject(authentication,#studyId)")
+  @RequestMapping(method = RequestMethod.DELETE, value = "/studies/{study-id}/analysis/{analysis-id}")
+  @ResponseStatus(value = HttpStatus.OK)
+  public void evictAnalysis(
+      @PathVariable(value = "study-id") String studyId,
+      @PathVariable(value = "analysis-id") String analysisId) {
+    metadataService.evictAnalysis(studyId, analysisId);
+  }
+
+  /**
+   * Exception handler specific to the Spring Security processing in this controller
+   * @return Error if Spring Security policies are violated
+   */
+  @ExceptionHandler(AccessDeniedException.class)
+  public ResponseEntity<Object> handleAccessDeniedException(HttpServletRequest req, AccessDeniedException ex) {
+    log.error("Token missing required scope to evict cached metadata");
+    return new ResponseEntity<Object>("Token missing required scope to evict cached metadata", new HttpHeaders(),
+        HttpStatus.FORBIDDEN);
+  }
+
+}
@@ -20,11 +20,14 @@ package bio.overture.score.server.controller;
 import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import javax.servlet.http.HttpServletRequest;
 
 import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.UploadProgress;
+import bio.overture.score.server.bulkhead.Bulkheads;
 import bio.overture.score.server.util.HttpServletRequests;
 import bio.overture.score.server.repository.UploadService;
 import bio.overture.score.server.security.TokenHasher;
@@ -63,10 +66,12 @@ public class UploadController {
 
   @Autowired
   UploadService uploadService;
+  @Autowired
+  Bulkheads bulkheads;
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/uploads")
-  public @ResponseBody ObjectSpecification initializeMultipartUpload(
+  public @ResponseBody CompletableFuture<ObjectSpecification> initializeMultipartUpload(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "overwrite", required = false, defaultValue = "false") boolean overwrite,
@@ -85,13 +90,13 @@ public class UploadController {
         Long.toString(fileSize),
         ipAddress,
         userAgent);
-    return uploadService.initiateUpload(objectId, fileSize, md5, overwrite);
+    return control(() -> uploadService.initiateUpload(objectId, fileSize, md5, overwrite));
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.DELETE, value = "/{object-id}/parts")
   @ResponseStatus(value = HttpStatus.OK)
-  public void deletePart(
+  public CompletableFuture<Void> deletePart(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "partNumber", required = true) int partNumber,
@@ -109,77 +114,79 @@ public class UploadController {
         identifier(accessToken), 
         ipAddress, 
         userAgent);
-    uploadService.deletePart(objectId, uploadId, partNumber);
+    return control(() -> uploadService.deletePart(objectId, uploadId, partNumber));
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/parts")
   @ResponseStatus(value = HttpStatus.OK)
-  public void finalizePartUpload(
+  public CompletableFuture<Void> finalizePartUpload(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "partNumber", required = true) int partNumber,
       @RequestParam(value = "uploadId", required = true) String uploadId,
       @RequestParam(value = "md5", required = true) String md5,
       @RequestParam(value = "etag", required = true) String eTag) {
-    uploadService.finalizeUploadPart(objectId, uploadId, partNumber, md5, eTag);
+    return control(() -> uploadService.finalizeUploadPart(objectId, uploadId, partNumber, md5, eTag));
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}")
   @ResponseStatus(value = HttpStatus.OK)
-  public void finalizeUpload(
+  public CompletableFuture<Void> finalizeUpload(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "uploadId", required = true) String uploadId) {
     val watch = Stopwatch.createStarted();
-    uploadService.finalizeUpload(objectId, uploadId);
-    log.info("Finalize upload completed in {}", watch);
+    return bulkheads.get(Bulkheads.FINALIZE).run(() -> {
+      uploadService.finalizeUpload(objectId, uploadId);
+      log.info("Finalize upload completed in {}", watch);
+    });
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/recovery")
   @ResponseStatus(value = HttpStatus.OK)
-  public void tryRecover(
+  public CompletableFuture<Void> tryRecover(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "fileSize", required = true) long fileSize) {
-    uploadService.recover(objectId, fileSize);
+    return control(() -> uploadService.recover(objectId, fileSize));
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.GET, value = "/{object-id}/status")
-  public @ResponseBody UploadProgress getUploadProgress(
+  public @ResponseBody CompletableFuture<UploadProgress> getUploadProgress(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable(value = "object-id") String objectId,
       @RequestParam(value = "fileSize", required = true) long fileSize) {
     // TODO: if object id/upload id does not exist, throw not found exception
-    return uploadService.getUploadStatus(objectId, uploadService.getUploadId(objectId), fileSize);
+    return control(() -> uploadService.getUploadStatus(objectId, uploadService.getUploadId(objectId), fileSize));
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.GET, value = "/{object-id}")
-  public @ResponseBody Boolean isObjectExist(
+  public @ResponseBody CompletableFuture<Boolean> isObjectExist(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable("object-id") String objectId) {
-    return uploadService.exists(objectId);
+    return control(() -> uploadService.exists(objectId));
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.DELETE, value = "/{object-id}")
   @ResponseStatus(value = HttpStatus.OK)
-  public void cancelUpload(
+  public CompletableFuture<Void> cancelUpload(
       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false, defaultValue = "<none>") final String accessToken,
       @PathVariable("object-id") String objectId) {
-    uploadService.cancelUpload(objectId, uploadService.getUploadId(objectId));
+    return control(() -> uploadService.cancelUpload(objectId, uploadService.getUploadId(objectId)));
   }
 
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.POST, value = "/cancel")
   @ResponseStatus(value = HttpStatus.OK)
-  public void cancelAll()
+  public CompletableFuture<Void> cancelAll()
       throws IOException {
-    uploadService.cancelUploads();
+    return bulkheads.get(Bulkheads.LISTING).run(uploadService::cancelUploads);
   }
 
   @ProjectCodeScoped
@@ -211,6 +218,20 @@ public class UploadController {
   public @interface ProjectCodeScoped {
   }
 
+  /**
+   * Runs an object store operation on the control-plane bulkhead.
+   */
+  protected <T> CompletableFuture<T> control(Supplier<T> operation) {
+    return bulkheads.get(Bulkheads.CONTROL).supply(operation);
+  }
+
+  /**
+   * Runs an object store operation without a result on the control-plane bulkhead.
+   */
+  protected CompletableFuture<Void> control(Runnable operation) {
+    return bulkheads.get(Bulkheads.CONTROL).run(operation);
+  }
+
   protected String identifier(String accessToken) {
     String identifier = "<none>";
     if ((accessToken != null) && (!accessToken.isEmpty())) {
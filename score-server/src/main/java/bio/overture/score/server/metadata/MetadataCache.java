@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.metadata;
+
+import bio.overture.score.server.exception.IdNotFoundException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Bounded cache of metadata server lookups.
+ * <p>
+ * Values found are kept for {@code ttl} seconds and ids the server doesn't know (an {@link IdNotFoundException}) for
+ * {@code negativeTtl} seconds. Concurrent misses on the same key share a single lookup, and within an HTTP request a
+ * key is looked up at most once, even when caching is disabled with a {@code ttl} of 0.
+ */
+public class MetadataCache<V> {
+
+  @Getter
+  private final String name;
+  private final Cache<String, V> values;
+  private final Cache<String, String> notFound;
+
+  public MetadataCache(@NonNull String name, long maxSize, long ttl, long negativeTtl) {
+    this.name = name;
+    this.values = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl, SECONDS).recordStats().build();
+    this.notFound =
+        CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(negativeTtl, SECONDS).recordStats().build();
+  }
+
+  /**
+   * Returns the value of {@code key}, looking it up with {@code loader} on a miss.
+   * 
+   * @throws IdNotFoundException if the metadata server doesn't know {@code key}, now or as recently cached
+   */
+  public V get(@NonNull String key, @NonNull Supplier<V> loader) {
+    val attributes = RequestContextHolder.getRequestAttributes();
+    val attribute = getClass().getName() + "." + name + "." + key;
+    if (attributes != null) {
+      @SuppressWarnings("unchecked")
+      V value = (V) attributes.getAttribute(attribute, RequestAttributes.SCOPE_REQUEST);
+      if (value != null) {
+        return value;
+      }
+    }
+
+    val message = notFound.getIfPresent(key);
+    if (message != null) {
+      throw new IdNotFoundException(message);
+    }
+
+    val value = load(key, loader);
+    if (attributes != null) {
+      attributes.setAttribute(attribute, value, RequestAttributes.SCOPE_REQUEST);
+    }
+    return value;
+  }
+
+  public void evict(@NonNull String key) {
+    values.invalidate(key);
+    notFound.invalidate(key);
+  }
+
+  /**
+   * Evicts the values for which {@code predicate} holds.
+   */
+  public void evictIf(@NonNull BiPredicate<String, V> predicate) {
+    values.asMap().entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+  }
+
+  public void evictAll() {
+    values.invalidateAll();
+    notFound.invalidateAll();
+  }
+
+  public V getIfPresent(@NonNull String key) {
+    return values.getIfPresent(key);
+  }
+
+  /**
+   * Exports size, hit, miss and eviction counts of the found and not found values as {@code metadata.<name>} and
+   * {@code metadata.<name>.notFound}.
+   */
+  public void bindTo(@NonNull MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, values, "metadata." + name);
+    GuavaCacheMetrics.monitor(registry, notFound, "metadata." + name + ".notFound");
+  }
+
+  private V load(String key, Supplier<V> loader) {
+    Callable<V> lookup = () -> {
+      try {
+        return loader.get();
+      } catch (IdNotFoundException e) {
+        notFound.put(key, e.getMessage());
+        throw e;
+      }
+    };
+
+    try {
+      return values.get(key, lookup);
+    } catch (InvalidCacheLoadException e) {
+      // The server returned no body, which is passed on but not cached
+      return null;
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      // Surface the lookup failure as is, whether it was ours or another thread's
+      val cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+}
@@ -24,12 +24,21 @@ import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
@@ -38,15 +47,83 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 @Slf4j
 @Service
 public class MetadataService {
-  private final RestTemplate restTemplate = new RestTemplate();
+  private final RestTemplate restTemplate = createRestTemplate();
 
   @Value("${metadata.url}")
   private String metadataUrl;
 
+  /**
+   * Cache configuration. TTLs are in seconds; a TTL of 0 disables caching (lookups are still coalesced per request).
+   */
+  @Value("${metadata.cache.maxSize:10000}")
+  private long cacheMaxSize;
+  @Value("${metadata.cache.entity.ttl:600}")
+  private long entityTtl;
+  @Value("${metadata.cache.analysis.ttl:30}")
+  private long analysisTtl;
+  @Value("${metadata.cache.notFound.ttl:30}")
+  private long notFoundTtl;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private MetadataCache<MetadataEntity> entities;
+  private MetadataCache<String> analysisStates;
+
   private static final String ANALYSIS_STATE = "analysisState";
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+  private static final int MAX_CONNECTIONS = 100;
+
+  @PostConstruct
+  public void init() {
+    entities = new MetadataCache<>("entity", cacheMaxSize, entityTtl, notFoundTtl);
+    analysisStates = new MetadataCache<>("analysis", cacheMaxSize, analysisTtl, notFoundTtl);
+    if (meterRegistry != null) {
+      entities.bindTo(meterRegistry);
+      analysisStates.bindTo(meterRegistry);
+    }
+  }
+
   public MetadataEntity getEntity(@NonNull String id) {
+    return entities.get(id, () -> timed("entity", () -> readEntity(id)));
+  }
+
+  public String getAnalysisStateForMetadata(@NonNull MetadataEntity metadataEntity){
+    val studyId = getStudyId(metadataEntity);
+    val analysisId = getAnalysisId(metadataEntity);
+    return analysisStates.get(getAnalysisKey(studyId, analysisId),
+        () -> timed("analysis", () -> readAnalysisState(metadataEntity)));
+  }
+
+  /**
+   * Evicts the cached entity of {@code id} along with the state of its analysis, e.g. after its metadata changed.
+   */
+  public void evictEntity(@NonNull String id) {
+    val entity = entities.getIfPresent(id);
+    if (entity != null) {
+      analysisStates.evict(getAnalysisKey(getStudyId(entity), getAnalysisId(entity)));
+    }
+    entities.evict(id);
+    log.info("Evicted cached metadata of entity {}", id);
+  }
+
+  /**
+   * Evicts the cached state of an analysis and all its cached entities, e.g. when it is published or unpublished.
+   */
+  public void evictAnalysis(@NonNull String studyId, @NonNull String analysisId) {
+    analysisStates.evict(getAnalysisKey(studyId, analysisId));
+    entities.evictIf((id, entity) -> studyId.equals(getStudyId(entity)) && analysisId.equals(getAnalysisId(entity)));
+    log.info("Evicted cached metadata of analysis {} in study {}", analysisId, studyId);
+  }
+
+  public void evictAll() {
+    entities.evictAll();
+    analysisStates.evictAll();
+    log.info("Evicted all cached metadata");
+  }
+
+  private MetadataEntity readEntity(String id) {
     log.debug("using " + metadataUrl + " for MetaData server");
     try {
       return restTemplate.getForEntity(metadataUrl + "/entities/" + id, MetadataEntity.class).getBody();
@@ -61,7 +138,7 @@ public class MetadataService {
     }
   }
 
-  public String getAnalysisStateForMetadata(@NonNull MetadataEntity metadataEntity){
+  private String readAnalysisState(MetadataEntity metadataEntity){
     val studyId = getStudyId(metadataEntity);
     val analysisId = getAnalysisId(metadataEntity);
     try{
@@ -78,6 +155,31 @@ public class MetadataService {
     }
   }
 
+  /**
+   * Times a request to the metadata server as {@code metadata.requests}. Cache hits are not requests and not timed.
+   */
+  private <T> T timed(String operation, Supplier<T> request) {
+    val start = System.nanoTime();
+    String outcome = "success";
+    try {
+      return request.get();
+    } catch (IdNotFoundException e) {
+      outcome = "not_found";
+      throw e;
+    } catch (RuntimeException e) {
+      outcome = "error";
+      throw e;
+    } finally {
+      if (meterRegistry != null) {
+        Timer.builder("metadata.requests")
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
   public static String getAnalysisId(MetadataEntity metadataEntity){
     return metadataEntity.getGnosId();
   }
@@ -93,6 +195,22 @@ public class MetadataService {
     return parseAnalysisState(jsonResponse);
   }
 
+  private static String getAnalysisKey(String studyId, String analysisId) {
+    return studyId + "/" + analysisId;
+  }
+
+  /**
+   * Pooled connections to the metadata server, rather than a new connection per lookup.
+   */
+  private static RestTemplate createRestTemplate() {
+    val httpClient = HttpClientBuilder.create()
+        .setMaxConnTotal(MAX_CONNECTIONS)
+        .setMaxConnPerRoute(MAX_CONNECTIONS)
+        .useSystemProperties()
+        .build();
+    return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+  }
+
   private String getAnalysis(String studyId, String analysisId){
     return format("%s/studies/%s/analysis/%s", metadataUrl, studyId, analysisId);
   }
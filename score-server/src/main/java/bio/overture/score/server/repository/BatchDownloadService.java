@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static com.google.common.base.Throwables.propagateIfPossible;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.server.exception.NotRetryableException;
+import bio.overture.score.server.security.DownloadScopeAuthorizationStrategy;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * Resolves the download specifications or sizes of several objects in one request. The authorization check, metadata
+ * lookups and {@code .meta} read of each object run concurrently on a pool shared by all batch requests. The batch fails as a
+ * whole on the first object that can't be resolved, the same way a client iterating over the objects would.
+ */
+@Slf4j
+@Setter
+@Service
+public class BatchDownloadService {
+
+  /**
+   * Configuration.
+   */
+  @Value("${download.batch.maxSize:1000}")
+  private int maxSize;
+  @Value("${download.batch.threads:16}")
+  private int threads;
+
+  /**
+   * Dependencies.
+   */
+  @Autowired
+  private DownloadService downloadService;
+  @Autowired
+  private DownloadScopeAuthorizationStrategy accessSecurity;
+
+  /**
+   * State.
+   */
+  private ExecutorService executor;
+
+  @PostConstruct
+  public void init() {
+    executor = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("download-batch-%d").setDaemon(true).build());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public List<ObjectSpecification> download(Authentication authentication, @NonNull List<String> objectIds,
+      long offset, long length, boolean forExternalUse, boolean excludeUrls) {
+    return resolve(authentication, objectIds,
+        objectId -> downloadService.download(objectId, offset, length, forExternalUse, excludeUrls));
+  }
+
+  /**
+   * Returns the size of each object keyed by object id, in request order. Only the {@code .meta} files are read; no
+   * URL is signed.
+   */
+  public Map<String, Long> getObjectSizes(Authentication authentication, @NonNull List<String> objectIds) {
+    val sizes = resolve(authentication, objectIds, downloadService::getObjectSize);
+
+    val result = new LinkedHashMap<String, Long>();
+    for (int i = 0; i < objectIds.size(); i++) {
+      result.put(objectIds.get(i), sizes.get(i));
+    }
+
+    return result;
+  }
+
+  private <T> List<T> resolve(Authentication authentication, List<String> objectIds, Function<String, T> resolver) {
+    if (authentication == null) {
+      throw new AccessDeniedException("No authentication available for batch download");
+    }
+    if (objectIds.size() > maxSize) {
+      val msg = String.format("Batch of %d object ids exceeds the maximum of %d", objectIds.size(), maxSize);
+      log.error(msg);
+      throw new NotRetryableException(new IllegalArgumentException(msg));
+    }
+
+    val futures = new ArrayList<CompletableFuture<T>>(objectIds.size());
+    for (val objectId : objectIds) {
+      futures.add(CompletableFuture.supplyAsync(() -> resolve(authentication, objectId, resolver), executor));
+    }
+
+    try {
+      val results = new ArrayList<T>(objectIds.size());
+      for (val future : futures) {
+        results.add(future.join());
+      }
+
+      return results;
+    } catch (CompletionException e) {
+      futures.forEach(future -> future.cancel(true));
+      propagateIfPossible(e.getCause());
+      throw e;
+    }
+  }
+
+  private <T> T resolve(Authentication authentication, String objectId, Function<String, T> resolver) {
+    if (!accessSecurity.authorize(authentication, objectId)) {
+      throw new AccessDeniedException("Access is denied to object id " + objectId);
+    }
+
+    return resolver.apply(objectId);
+  }
+
+}
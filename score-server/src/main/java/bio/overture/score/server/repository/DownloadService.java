@@ -17,12 +17,24 @@
  */
 package bio.overture.score.server.repository;
 
+import java.io.InputStream;
+
 import bio.overture.score.core.model.ObjectSpecification;
 
 public interface DownloadService {
 
   ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse, boolean excludeUrls);
 
+  /**
+   * Returns the size of the object in bytes, without pre-signing any URL.
+   */
+  long getObjectSize(String objectId);
+
+  /**
+   * Opens a stream over {@code length} bytes of the object's data starting at {@code offset}. The caller must close it.
+   */
+  InputStream openObject(String objectId, long offset, long length);
+
   /**
    * Attempts to fetch a pre-defined object id (defined in application.yml) from the object repository. Used to confirm
    * that basic access to the repository is permitted. The AWS S3 bucket blocks access to IP's within the AWS cloud, and
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT;
+import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import bio.overture.score.server.exception.RetryableException;
+import bio.overture.score.server.util.HttpRange;
+import lombok.Setter;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams object data through the server for clients that can't reach the object store. Each stream holds one
+ * {@code download.proxy.bufferSize} buffer, and at most {@code download.proxy.maxStreams} run at once on a node;
+ * requests beyond that are turned away with a 503 for the client to retry rather than queued.
+ */
+@Slf4j
+@Setter
+@Service
+public class ProxyDownloadService {
+
+  /**
+   * Configuration.
+   */
+  @Value("${download.proxy.enabled:false}")
+  private boolean enabled;
+  @Value("${download.proxy.maxStreams:32}")
+  private int maxStreams = 32;
+  @Value("${download.proxy.bufferSize:65536}")
+  private int bufferSize = 65536;
+
+  /**
+   * Dependencies.
+   */
+  @Autowired
+  private DownloadService downloadService;
+
+  /**
+   * State.
+   */
+  private Semaphore streams;
+
+  @PostConstruct
+  public void init() {
+    streams = new Semaphore(maxStreams);
+  }
+
+  /**
+   * Writes the object, or the single byte range requested by the {@code Range} header, to the response.
+   */
+  public void stream(String objectId, String rangeHeader, HttpServletResponse response) throws IOException {
+    if (!enabled) {
+      response.sendError(SC_NOT_FOUND, "Proxied downloads are disabled on this server");
+      return;
+    }
+    if (!streams.tryAcquire()) {
+      log.warn("Rejecting proxied download of objectId: {}: all {} streams are busy", objectId, maxStreams);
+      throw new RetryableException(new IllegalStateException("Too many concurrent proxied downloads"));
+    }
+
+    try {
+      val size = downloadService.getObjectSize(objectId);
+      val range = HttpRange.parse(rangeHeader, size);
+
+      response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+      if (range != null && !range.isSatisfiable()) {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(size));
+        response.sendError(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return;
+      }
+
+      val offset = range == null ? 0 : range.getOffset();
+      val length = range == null ? size : range.getLength();
+      response.setStatus(range == null ? SC_OK : SC_PARTIAL_CONTENT);
+      response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+      response.setContentLengthLong(length);
+      if (range != null) {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(size));
+      }
+      if (length == 0) {
+        return;
+      }
+
+      log.debug("Proxying objectId: {}, offset: {}, length: {}", objectId, offset, length);
+      try (val inputStream = downloadService.openObject(objectId, offset, length)) {
+        copy(inputStream, response.getOutputStream());
+      }
+    } finally {
+      streams.release();
+    }
+  }
+
+  public int getAvailableStreams() {
+    return streams.availablePermits();
+  }
+
+  private long copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+    val buffer = new byte[bufferSize];
+    long total = 0;
+    int n;
+    while ((n = inputStream.read(buffer)) != -1) {
+      outputStream.write(buffer, 0, n);
+      total += n;
+    }
+
+    return total;
+  }
+
+}
@@ -19,8 +19,17 @@ package bio.overture.score.server.repository;
 
 import static com.google.common.base.Strings.repeat;
 import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static java.util.stream.Collectors.toSet;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import bio.overture.score.core.util.ObjectKeys;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,13 +39,25 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.amazonaws.services.s3.model.MultipartUpload;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Setter;
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Service that will periodically remove aborted or failed uploads.
+ * <p>
+ * Stale uploads are cancelled on {@code upload.clean.threads} threads, at no more than {@code upload.clean.rate}
+ * cancellations per second so a large backlog doesn't get the buckets throttled.
+ * <p>
+ * Upload state without an in-progress multipart upload is deleted too: the state of finalized uploads that the
+ * {@link UploadStateCleaner} could not delete, and of uploads cancelled without their state. Otherwise it would be
+ * reported as an upload in progress forever. Only state older than {@code upload.clean.orphanAge} minutes is deleted,
+ * so uploads initiated while listing are left alone.
  */
 @Slf4j
 @Setter
@@ -51,12 +72,27 @@ public class UploadCleanupService {
   private String dataDir;
   @Value("${collaboratory.upload.expiration}")
   private int expiration;
+  @Value("${upload.clean.threads:4}")
+  private int threads = 4;
+  @Value("${upload.clean.rate:10}")
+  private double rate = 10;
+  @Value("${upload.clean.orphanAge:60}")
+  private int orphanAge = 60;
 
   /**
    * Dependencies.
    */
   @Autowired
   private UploadService uploadService;
+  @Autowired
+  private UploadStateStore stateStore;
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  /**
+   * State.
+   */
+  private final AtomicInteger inProgress = new AtomicInteger();
 
   @Scheduled(cron = "${upload.clean.cron}")
   public void clean() {
@@ -64,23 +100,129 @@ public class UploadCleanupService {
     log.info("Cleaning stale uploads");
     log.info(repeat("-", 100));
 
-    log.info("In-progress multipart uploads: ");
-    for (val upload : uploadService.listUploads()) {
-      log.info(" - Upload: {}", formatUpload(upload));
+    val watch = Stopwatch.createStarted();
+    val listed = Instant.now();
+    val uploads = uploadService.listUploads();
+    val stale = new ArrayList<MultipartUpload>();
 
+    log.info("In-progress multipart uploads: {}", uploads.size());
+    for (val upload : uploads) {
+      log.debug(" - Upload: {}", formatUpload(upload));
       if (isStale(upload)) {
+        stale.add(upload);
+      }
+    }
+
+    val cancelled = new AtomicInteger();
+    val failed = new AtomicInteger();
+    if (!stale.isEmpty()) {
+      cancel(stale, cancelled, failed);
+    }
+
+    val orphans = findOrphans(uploads, listed);
+    val deleted = new AtomicInteger();
+    val deleteFailed = new AtomicInteger();
+    if (!orphans.isEmpty()) {
+      delete(orphans, deleted, deleteFailed);
+    }
+
+    val elapsed = watch.elapsed(TimeUnit.MILLISECONDS);
+    log.info("Cancelled {} of {} stale uploads ({} failed) out of {} in {} ms", cancelled, stale.size(), failed,
+        uploads.size(), elapsed);
+    log.info("Deleted {} of {} orphaned upload states ({} failed)", deleted, orphans.size(), deleteFailed);
+
+    if (meterRegistry != null) {
+      meterRegistry.counter("score.upload.clean.uploads", "result", "cancelled").increment(cancelled.get());
+      meterRegistry.counter("score.upload.clean.uploads", "result", "failed").increment(failed.get());
+      meterRegistry.counter("score.upload.clean.states", "result", "deleted").increment(deleted.get());
+      meterRegistry.counter("score.upload.clean.states", "result", "failed").increment(deleteFailed.get());
+      meterRegistry.gauge("score.upload.clean.inProgress", inProgress).set(uploads.size());
+      meterRegistry.timer("score.upload.clean.duration").record(elapsed, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void cancel(Iterable<MultipartUpload> stale, AtomicInteger cancelled, AtomicInteger failed) {
+    val tasks = new ArrayList<Runnable>();
+    for (val upload : stale) {
+      tasks.add(() -> {
         log.info("*** Cancelling stale upload: {}", formatUpload(upload));
 
         try {
           val objectId = ObjectKeys.getObjectId(dataDir, upload.getKey());
           uploadService.cancelUpload(objectId, upload.getUploadId());
+          cancelled.incrementAndGet();
         } catch (Exception e) {
+          failed.incrementAndGet();
           log.error("Error cancelling stale upload: {}: {}", formatUpload(upload), e);
         }
+      });
+    }
+
+    run(tasks, "cancelling stale uploads");
+  }
+
+  private void delete(Iterable<UploadState> orphans, AtomicInteger deleted, AtomicInteger failed) {
+    val tasks = new ArrayList<Runnable>();
+    for (val orphan : orphans) {
+      tasks.add(() -> {
+        log.info("*** Deleting orphaned upload state: {}", orphan);
+
+        try {
+          stateStore.delete(orphan.getObjectId(), orphan.getUploadId());
+          deleted.incrementAndGet();
+        } catch (Exception e) {
+          failed.incrementAndGet();
+          log.error("Error deleting orphaned upload state: {}: {}", orphan, e);
+        }
+      });
+    }
+
+    run(tasks, "deleting orphaned upload states");
+  }
+
+  private void run(Iterable<Runnable> tasks, String description) {
+    val rateLimiter = RateLimiter.create(rate);
+    val executor = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("upload-clean-%d").setDaemon(true).build());
+    try {
+      val futures = new ArrayList<Future<?>>();
+      for (val task : tasks) {
+        futures.add(executor.submit(() -> {
+          rateLimiter.acquire();
+          task.run();
+        }));
       }
+
+      for (val future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while {}", description);
+    } catch (ExecutionException e) {
+      log.error("Error {}: {}", description, e);
+    } finally {
+      executor.shutdownNow();
     }
   }
 
+  /**
+   * @return the upload states, created well before {@code listed}, of uploads not in {@code uploads}
+   */
+  private List<UploadState> findOrphans(List<MultipartUpload> uploads, Instant listed) {
+    val live = uploads.stream().map(MultipartUpload::getUploadId).collect(toSet());
+    val threshold = listed.minus(orphanAge, MINUTES);
+    val orphans = new ArrayList<UploadState>();
+    for (val state : uploadService.listUploadStates()) {
+      if (!live.contains(state.getUploadId()) && state.getCreated().toInstant().isBefore(threshold)) {
+        orphans.add(state);
+      }
+    }
+
+    log.info("Orphaned upload states: {}", orphans.size());
+    return orphans;
+  }
+
   private boolean isStale(MultipartUpload upload) {
     val started = upload.getInitiated().toInstant();
     val threshold = Instant.now().minus(expiration, DAYS);
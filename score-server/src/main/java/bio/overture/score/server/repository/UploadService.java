@@ -51,4 +51,6 @@ public interface UploadService {
 
   List<MultipartUpload> listUploads();
 
+  List<UploadState> listUploadStates();
+
 }
\ No newline at end of file
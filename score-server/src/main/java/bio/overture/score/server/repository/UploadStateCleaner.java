@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Setter;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deletes the upload state of finalized uploads in the background so finalizing doesn't wait on it. Failed deletes are
+ * retried with exponential backoff. State that still can't be deleted is left for the stale upload cleanup to find.
+ */
+@Slf4j
+@Setter
+@Service
+public class UploadStateCleaner {
+
+  /**
+   * Configuration.
+   */
+  @Value("${upload.state.cleanup.async:true}")
+  private boolean async = true;
+  @Value("${upload.state.cleanup.threads:2}")
+  private int threads = 2;
+  @Value("${upload.state.cleanup.maxAttempts:5}")
+  private int maxAttempts = 5;
+  @Value("${upload.state.cleanup.retryDelay:1000}")
+  private long retryDelay = 1000;
+
+  /**
+   * Dependencies.
+   */
+  @Autowired
+  private UploadStateStore stateStore;
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  /**
+   * State.
+   */
+  private final AtomicInteger backlog = new AtomicInteger();
+  private ScheduledExecutorService executor;
+  private Counter failures;
+
+  @PostConstruct
+  public void init() {
+    executor = Executors.newScheduledThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("upload-state-cleanup-%d").setDaemon(true).build());
+
+    if (meterRegistry != null) {
+      Gauge.builder("score.upload.state.cleanup.backlog", backlog, AtomicInteger::get)
+          .description("Uploads whose state is waiting to be deleted")
+          .register(meterRegistry);
+      failures = Counter.builder("score.upload.state.cleanup.failures")
+          .description("Uploads whose state could not be deleted after all attempts")
+          .register(meterRegistry);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    val pending = executor.shutdownNow().size();
+    if (pending > 0) {
+      log.warn("Abandoning state cleanup of {} uploads on shutdown", pending);
+    }
+  }
+
+  /**
+   * Deletes the state of the upload, in the background unless {@code upload.state.cleanup.async} is false.
+   */
+  public void delete(String objectId, String uploadId) {
+    if (!async) {
+      stateStore.delete(objectId, uploadId);
+      return;
+    }
+
+    backlog.incrementAndGet();
+    executor.execute(() -> attempt(objectId, uploadId, 1));
+  }
+
+  public int getBacklog() {
+    return backlog.get();
+  }
+
+  private void attempt(String objectId, String uploadId, int attempt) {
+    try {
+      stateStore.delete(objectId, uploadId);
+      backlog.decrementAndGet();
+      log.debug("Deleted upload state of objectId: {}, uploadId: {}", objectId, uploadId);
+    } catch (Exception e) {
+      if (attempt >= maxAttempts) {
+        backlog.decrementAndGet();
+        if (failures != null) {
+          failures.increment();
+        }
+        log.error("Giving up deleting upload state of objectId: {}, uploadId: {} after {} attempts: {}",
+            objectId, uploadId, attempt, e);
+        return;
+      }
+
+      val delay = retryDelay << (attempt - 1);
+      log.warn("Failed to delete upload state of objectId: {}, uploadId: {} (attempt {}), retrying in {} ms: {}",
+          objectId, uploadId, attempt, delay, e.getMessage());
+      executor.schedule(() -> attempt(objectId, uploadId, attempt + 1), delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+}
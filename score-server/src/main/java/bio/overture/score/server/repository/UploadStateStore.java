@@ -46,4 +46,9 @@ public interface UploadStateStore {
 
   String getUploadId(String objectId);
 
+  /**
+   * Lists the uploads with state in {@code bucketName}.
+   */
+  List<UploadState> listUploadStates(String bucketName);
+
 }
\ No newline at end of file
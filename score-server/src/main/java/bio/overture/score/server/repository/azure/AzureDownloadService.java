@@ -27,10 +27,12 @@ import bio.overture.score.server.repository.BucketNamingService;
 import bio.overture.score.server.repository.DownloadService;
 import bio.overture.score.core.util.PartCalculator;
 import bio.overture.score.server.repository.URLGenerator;
+import com.google.common.io.ByteStreams;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import lombok.Setter;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,6 +41,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.List;
 
@@ -113,6 +117,30 @@ public class AzureDownloadService implements DownloadService {
     return null;
   }
 
+  @Override
+  @SneakyThrows(URISyntaxException.class)
+  public long getObjectSize(String objectId) {
+    try {
+      return getBlobReference(objectId).getProperties().getLength();
+    } catch (StorageException e) {
+      log.error("Failed to get size of objectId: {}: {}", objectId, e);
+      throw new NotRetryableException(e);
+    }
+  }
+
+  @Override
+  @SneakyThrows({ URISyntaxException.class, IOException.class })
+  public InputStream openObject(String objectId, long offset, long length) {
+    try {
+      val inputStream = getBlobReference(objectId).openInputStream();
+      ByteStreams.skipFully(inputStream, offset);
+      return ByteStreams.limit(inputStream, length);
+    } catch (StorageException e) {
+      log.error("Failed to open objectId: {}, offset: {}, length: {}: {}", objectId, offset, length, e);
+      throw new NotRetryableException(e);
+    }
+  }
+
   public CloudBlockBlob getBlobReference(String objectId) throws URISyntaxException, StorageException {
     val result = container.getBlockBlobReference(objectId);
     if (result.exists()) {
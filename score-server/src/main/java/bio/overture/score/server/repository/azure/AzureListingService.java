@@ -48,7 +48,7 @@ public class AzureListingService implements ListingService {
   private CloudBlobContainer container;
 
   @Override
-  @Cacheable("listing")
+  @Cacheable(value = "listing", sync = true)
   public List<ObjectInfo> getListing() {
     log.info(String.format("Mounting to '%s' (%s)", container.getName(), container.getUri().toString()));
     val listing = Lists.<ObjectInfo> newArrayList();
@@ -33,6 +33,7 @@ import bio.overture.score.server.exception.NotRetryableException;
 import bio.overture.score.server.repository.URLGenerator;
 import bio.overture.score.core.util.PartCalculator;
 import bio.overture.score.server.repository.UploadService;
+import bio.overture.score.server.repository.UploadState;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
@@ -165,4 +166,11 @@ public class AzureUploadService implements UploadService {
     // SDK
     return Collections.<MultipartUpload> emptyList();
   }
+
+  @Override
+  public List<UploadState> listUploadStates() {
+    // Empty implementation - not applicable for Azure Upload since we're using the Upload implementation supplied by
+    // SDK
+    return Collections.<UploadState> emptyList();
+  }
 }
@@ -20,12 +20,14 @@ package bio.overture.score.server.repository.azure;
 import bio.overture.score.server.repository.UploadStateStore;
 import lombok.Setter;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.Part;
 import bio.overture.score.server.repository.UploadPartDetail;
+import bio.overture.score.server.repository.UploadState;
 import bio.overture.score.server.repository.UploadStateStore;
 
 /**
@@ -88,4 +90,10 @@ public class AzureUploadStateStore implements UploadStateStore {
     // TODO Auto-generated method stub
     return null;
   }
+
+  @Override
+  public List<UploadState> listUploadStates(String bucketName) {
+    // Azure manages block uploads itself, so there is no orphaned state to sweep
+    return Collections.emptyList();
+  }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import static org.apache.commons.lang.StringUtils.removeStart;
+import static org.apache.commons.lang.StringUtils.substringAfter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import bio.overture.score.core.model.CompletedPart;
+import bio.overture.score.core.model.Part;
+import bio.overture.score.server.exception.NotRetryableException;
+import bio.overture.score.server.exception.RetryableException;
+import bio.overture.score.server.repository.UploadPartDetail;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Upload state store that folds completed parts into a compact snapshot object.
+ * <p>
+ * Each completed part is still journaled as its own zero-byte key, as in {@link S3UploadStateStore}, since S3 has no
+ * conditional writes to append to a shared object safely. Every {@code upload.state.compactEvery} parts, the journal
+ * and existing snapshots are merged into a new {@code state-*.json} snapshot and the merged keys are removed with
+ * batched {@code DeleteObjects} calls. Snapshots are never overwritten, only superseded, so concurrent compactions can
+ * leave more than one behind but can't lose a part. Reads list the upload prefix once and fetch the (usually single)
+ * snapshot.
+ */
+@Slf4j
+@Setter
+public class CompactS3UploadStateStore extends S3UploadStateStore {
+
+  /**
+   * Constants.
+   */
+  private static final String JOURNAL_PREFIX = "part-";
+  private static final String SNAPSHOT_PREFIX = "state-";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final TypeReference<List<CompletedPart>> SNAPSHOT_TYPE = new TypeReference<List<CompletedPart>>() {};
+
+  /**
+   * Configuration.
+   */
+  @Value("${upload.state.compactEvery:100}")
+  private int compactEvery = 100;
+
+  @Override
+  public void finalizeUploadPart(String objectId, String uploadId, int partNumber, String md5, String eTag) {
+    super.finalizeUploadPart(objectId, uploadId, partNumber, md5, eTag);
+
+    if (compactEvery > 0 && partNumber % compactEvery == 0) {
+      try {
+        compact(objectId, uploadId, readState(objectId, uploadId));
+      } catch (Exception e) {
+        // The journal entries stay in place, so nothing is lost
+        log.warn("Failed to compact upload state of objectId: {}, uploadId: {}: {}", objectId, uploadId, e);
+      }
+    }
+  }
+
+  @Override
+  public void markCompletedParts(String objectId, String uploadId, List<Part> parts) {
+    if (parts == null || parts.isEmpty()) {
+      return;
+    }
+
+    // Resuming is a good time to fold whatever was journaled since the last compaction
+    val state = readState(objectId, uploadId);
+    compact(objectId, uploadId, state);
+
+    for (val part : parts) {
+      val completed = state.getParts().get(part.getPartNumber());
+      if (completed != null) {
+        part.setSourceMd5(completed.getMd5());
+      }
+    }
+  }
+
+  @Override
+  public boolean isCompleted(String objectId, String uploadId) {
+    val spec = read(objectId, uploadId);
+    val completed = readState(objectId, uploadId).getParts();
+
+    return spec.getParts().stream().allMatch(part -> completed.containsKey(part.getPartNumber()));
+  }
+
+  @Override
+  public Map<Integer, UploadPartDetail> getUploadStatePartDetails(String objectId, String uploadId) {
+    val details = new TreeMap<Integer, UploadPartDetail>();
+    readState(objectId, uploadId).getParts().forEach((partNumber, part) -> details.put(partNumber,
+        UploadPartDetail.builder()
+            .partNumber(partNumber)
+            .md5(part.getMd5())
+            .etag(new PartETag(partNumber, part.getEtag()))
+            .build()));
+
+    return details;
+  }
+
+  /**
+   * Removes the part from the journal and, if it was already compacted, writes a snapshot without it. Expected to be
+   * called while no other part of the same upload is being finalized.
+   */
+  @Override
+  public void deletePart(String objectId, String uploadId, int partNumber) {
+    val state = readState(objectId, uploadId);
+    val journalKeys = state.getJournalKeys().get(partNumber);
+    val obsolete = new ArrayList<String>(journalKeys == null ? new ArrayList<String>() : journalKeys);
+
+    val inSnapshot = state.getSnapshotParts().containsKey(partNumber);
+    if (inSnapshot) {
+      val remaining = new TreeMap<Integer, CompletedPart>(state.getSnapshotParts());
+      remaining.remove(partNumber);
+      writeSnapshot(objectId, uploadId, remaining);
+      obsolete.addAll(state.getSnapshotKeys());
+    }
+
+    deleteKeys(objectId, obsolete);
+  }
+
+  private void compact(String objectId, String uploadId, State state) {
+    if (state.getJournalKeys().isEmpty() && state.getSnapshotKeys().size() <= 1) {
+      return;
+    }
+
+    writeSnapshot(objectId, uploadId, state.getParts());
+
+    val merged = new ArrayList<String>(state.getSnapshotKeys());
+    state.getJournalKeys().values().forEach(merged::addAll);
+    deleteKeys(objectId, merged);
+    log.debug("Compacted {} parts of objectId: {}, uploadId: {} ({} keys removed)", state.getParts().size(),
+        objectId, uploadId, merged.size());
+  }
+
+  @SneakyThrows
+  private State readState(String objectId, String uploadId) {
+    val prefix = getUploadStateKey(objectId, uploadId, "");
+    val state = new State();
+    eachObjectSummary(objectId, prefix, summary -> {
+      val key = summary.getKey();
+      val name = removeStart(key, prefix);
+      if (name.startsWith(JOURNAL_PREFIX)) {
+        val part = readJournalEntry(objectId, uploadId, name);
+        state.getJournalParts().put(part.getPartNumber(), part);
+        state.getJournalKeys().computeIfAbsent(part.getPartNumber(), n -> new ArrayList<>()).add(key);
+      } else if (name.startsWith(SNAPSHOT_PREFIX)) {
+        state.getSnapshotKeys().add(key);
+      }
+    });
+
+    for (val key : state.getSnapshotKeys()) {
+      for (val part : readSnapshot(objectId, key)) {
+        state.getSnapshotParts().put(part.getPartNumber(), part);
+      }
+    }
+
+    return state;
+  }
+
+  private CompletedPart readJournalEntry(String objectId, String uploadId, String name) {
+    try {
+      return MAPPER.readValue(substringAfter(name, "|"), CompletedPart.class);
+    } catch (IOException e) {
+      log.error("Failed to read journaled part {} of objectId: {}, uploadId: {}: {}", name, objectId, uploadId, e);
+      throw new NotRetryableException(e);
+    }
+  }
+
+  private List<CompletedPart> readSnapshot(String objectId, String key) throws IOException {
+    val bucketName = getBucketNamingService().getStateBucketName(objectId);
+    try (val inputStream = getS3Client().getObject(bucketName, key).getObjectContent()) {
+      return MAPPER.readValue(inputStream, SNAPSHOT_TYPE);
+    } catch (AmazonServiceException e) {
+      log.error("Failed to read upload state snapshot {}: {}", key, e);
+      throw new RetryableException(e);
+    }
+  }
+
+  private void writeSnapshot(String objectId, String uploadId, Map<Integer, CompletedPart> parts) {
+    // Time ordered so listings return the newest snapshot last
+    val name = String.format("%s%013d-%s.json", SNAPSHOT_PREFIX, System.currentTimeMillis(), UUID.randomUUID());
+    try {
+      val content = MAPPER.writeValueAsBytes(new ArrayList<CompletedPart>(parts.values()));
+      val meta = new ObjectMetadata();
+      meta.setContentLength(content.length);
+
+      getS3Client().putObject(getBucketNamingService().getStateBucketName(objectId),
+          getUploadStateKey(objectId, uploadId, name), new ByteArrayInputStream(content), meta);
+    } catch (AmazonServiceException e) {
+      log.error("Failed to write upload state snapshot for objectId: {}, uploadId: {}: {}", objectId, uploadId, e);
+      throw new RetryableException(e);
+    } catch (IOException e) {
+      throw new NotRetryableException(e);
+    }
+  }
+
+  /**
+   * Upload state as read from one listing of the upload prefix.
+   */
+  @lombok.Value
+  private static class State {
+
+    Map<Integer, CompletedPart> snapshotParts = new TreeMap<>();
+    Map<Integer, CompletedPart> journalParts = new TreeMap<>();
+    Map<Integer, List<String>> journalKeys = new TreeMap<>();
+    List<String> snapshotKeys = new ArrayList<>();
+
+    /**
+     * Snapshot parts overlaid with the journal, which is always at least as recent.
+     */
+    Map<Integer, CompletedPart> getParts() {
+      val parts = new TreeMap<Integer, CompletedPart>(snapshotParts);
+      parts.putAll(journalParts);
+      return parts;
+    }
+
+  }
+
+}
@@ -17,9 +17,18 @@
  */
 package bio.overture.score.server.repository.s3;
 
+import static lombok.AccessLevel.NONE;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.commons.lang.StringUtils;
@@ -45,12 +54,22 @@ public class S3BucketNamingService implements BucketNamingService {
   private int bucketKeySize;
 
   public final static int MAX_KEY_LENGTH = 7;
+  private final static int MAX_NAME_TABLE_SIZE = 1 << 16;
   private static Pattern P = Pattern.compile(".+\\.\\d+$");
 
+  /**
+   * Partition bucket names by index and base name, built on first use so every lookup is an array access. Pools too
+   * large to tabulate fall back to formatting the name each time.
+   */
+  @Getter(NONE)
+  @Setter(NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private final Map<String, String[]> bucketNames = new ConcurrentHashMap<>();
+
   int doStrategyCalculation(String objectId) {
     Preconditions.checkArgument(bucketKeySize > 0);
-    String piece = String.format("0x%s", scrubObjectKey(objectId).substring(0, bucketKeySize));
-    return Integer.decode(piece);
+    return Integer.parseInt(scrubObjectKey(objectId).substring(0, bucketKeySize), 16);
   }
 
   int calculateIndex(String objectId) {
@@ -95,7 +114,8 @@ public class S3BucketNamingService implements BucketNamingService {
 
     if (isPartitioned()) {
       int bucketIndex = calculateIndex(objectId);
-      result = constructBucketName(baseName, bucketIndex);
+      result = bucketPoolSize <= MAX_NAME_TABLE_SIZE ? getBucketNames(baseName)[bucketIndex] :
+          constructBucketName(baseName, bucketIndex);
     } else {
       log.trace("Bucket partitioning disabled: bucketPoolSize = {}", bucketKeySize, bucketPoolSize);
     }
@@ -111,6 +131,21 @@ public class S3BucketNamingService implements BucketNamingService {
     }
   }
 
+  public void setBucketPoolSize(int bucketPoolSize) {
+    this.bucketPoolSize = bucketPoolSize;
+    bucketNames.clear();
+  }
+
+  private String[] getBucketNames(String baseName) {
+    return bucketNames.computeIfAbsent(baseName, name -> {
+      val names = new String[bucketPoolSize];
+      for (int i = 0; i < bucketPoolSize; i++) {
+        names[i] = constructBucketName(name, i);
+      }
+      return names;
+    });
+  }
+
   public String constructBucketName(String baseName, int bucketIndex) {
     // deliberately does not pad single digits with leading 0's
     return String.format("%s.%d", baseName, bucketIndex);
@@ -50,6 +50,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
@@ -98,6 +99,8 @@ public class S3DownloadService implements DownloadService {
   private PartCalculator partCalculator;
   @Autowired
   private MetadataService metadataService;
+  @Autowired
+  private S3ObjectLocationCache locationCache;
 
 
   @Override
@@ -109,8 +112,8 @@ public class S3DownloadService implements DownloadService {
 
       checkArgument(offset > -1L);
 
-      // Retrieve our meta file for object id
-      val objectSpec = getSpecification(objectId);
+      // Retrieve our meta file for object id, skipping the part URLs when they won't be returned
+      val objectSpec = excludeUrls ? getSpecification(objectId, false) : getSpecification(objectId);
 
       // Short-circuit in default case
       if (!forExternalUse && (offset == 0L && length < 0L)) {
@@ -177,8 +180,72 @@ public class S3DownloadService implements DownloadService {
     }
   }
 
+  /**
+   * Only published objects have a size to stream, so a proxied download is rejected before any of the response is
+   * written.
+   */
+  @Override
+  public long getObjectSize(String objectId) {
+    checkPublishedAnalysisState(metadataService.getEntity(objectId));
+    return getSpecification(objectId, false).getObjectSize();
+  }
+
+  /**
+   * Reads straight from the object bucket. The bucket is taken from the location cache, which the preceding
+   * {@link #getObjectSize(String)} or {@link #getSpecification(String)} call normally populates. When the object isn't
+   * in the partition bucket, e.g. because the cache entry has expired since, the master bucket is tried like
+   * {@link #getObject(String, String)} does for the {@code .meta} file.
+   * <p>
+   * Only published objects can be read, like with {@link #download}. Clients streaming through the server get their
+   * specifications with {@code exclude-urls}, so this is where their access is checked.
+   */
+  @Override
+  public InputStream openObject(String objectId, long offset, long length) {
+    checkPublishedAnalysisState(metadataService.getEntity(objectId));
+
+    val partitioned = bucketNamingService.isPartitioned();
+    val relocated = partitioned && Boolean.TRUE.equals(locationCache.isRelocated(objectId));
+    try {
+      return openObject(objectId, offset, length, relocated);
+    } catch (IdNotFoundException e) {
+      if (!partitioned || relocated) {
+        throw e;
+      }
+
+      log.info("objectId: {} not found in its partition bucket, trying the master bucket", objectId);
+      val stream = openObject(objectId, offset, length, true);
+      locationCache.put(objectId, true);
+      return stream;
+    }
+  }
+
+  private InputStream openObject(String objectId, long offset, long length, boolean relocated) {
+    val bucketName = bucketNamingService.getObjectBucketName(objectId, relocated);
+    val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
+
+    try {
+      val request = new GetObjectRequest(bucketName, objectKey.getKey()).withRange(offset, offset + length - 1);
+      return s3Client.getObject(request).getObjectContent();
+    } catch (AmazonServiceException e) {
+      if (e.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+        log.debug("objectId: {} not found in {}", objectId, bucketName);
+        throw new IdNotFoundException(objectId);
+      }
+      log.error("Failed to open objectId: {} in {}, offset: {}, length: {}: {}", objectId, bucketName, offset, length,
+          e);
+      throw new RetryableException(e);
+    }
+  }
+
   // This really is a misleading method name - should be retrieveMetaFile() or something
   public ObjectSpecification getSpecification(String objectId) {
+    return getSpecification(objectId, true);
+  }
+
+  /**
+   * Reads the .meta file of the object, pre-signing the URL of every part only if {@code withUrls} is set.
+   */
+  public ObjectSpecification getSpecification(String objectId, boolean withUrls) {
     val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
     val objectMetaKey = ObjectKeys.getObjectMetaKey(dataDir, objectId);
     log.debug("Getting specification for objectId: {}, objectKey: {}, objectMetaKey: {}", objectId, objectKey,
@@ -193,7 +260,9 @@ public class S3DownloadService implements DownloadService {
       spec.setRelocated(obj.isRelocated());
 
       // We do this now in case we are returning it immediately in download() call
-      fillPartUrls(objectKey, spec.getParts(), obj.isRelocated(), false);
+      if (withUrls) {
+        fillPartUrls(objectKey, spec.getParts(), obj.isRelocated(), false);
+      }
 
       return spec;
     } catch (JsonParseException | JsonMappingException e) {
@@ -236,6 +305,31 @@ public class S3DownloadService implements DownloadService {
    * Retrieve meta file object
    */
   private S3FetchedObject getObject(String objectId, String objectMetaKey) {
+    if (!bucketNamingService.isPartitioned()) {
+      return lookupObject(objectId, objectMetaKey);
+    }
+
+    // Go straight to the bucket the object was last found in
+    val relocated = locationCache.isRelocated(objectId);
+    if (relocated != null) {
+      try {
+        val obj = fetchObject(relocated ? bucketNamingService.getBaseStateBucketName() :
+            bucketNamingService.getStateBucketName(objectId), objectMetaKey);
+        obj.setRelocated(relocated);
+        return obj;
+      } catch (AmazonServiceException e) {
+        log.info("Object with objectId: {} no longer found where expected (relocated: {}): {}", objectId, relocated,
+            e.getMessage());
+        locationCache.evict(objectId);
+      }
+    }
+
+    val obj = lookupObject(objectId, objectMetaKey);
+    locationCache.put(objectId, obj.isRelocated());
+    return obj;
+  }
+
+  private S3FetchedObject lookupObject(String objectId, String objectMetaKey) {
     String stateBucketName = bucketNamingService.getStateBucketName(objectId);
     try {
       return fetchObject(stateBucketName, objectMetaKey);
@@ -75,7 +75,7 @@ public class S3ListingService implements ListingService {
    * @see org.icgc.dcc.storage.server.service.ListingService#getListing()
    */
   @Override
-  @Cacheable("listing")
+  @Cacheable(value = "listing", sync = true)
   public List<ObjectInfo> getListing() {
     val listing = Lists.<ObjectInfo> newArrayList();
 
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+/**
+ * Times every call made through an {@link AmazonS3} client as {@code score.s3.requests}, tagged by:
+ * <ul>
+ * <li>{@code operation}: the client method, e.g. {@code getObject} or {@code generatePresignedUrl}</li>
+ * <li>{@code partition}: the index of the partition bucket addressed, or {@code none} for unpartitioned buckets</li>
+ * <li>{@code outcome}: {@code success}, {@code not_found}, {@code client_error}, {@code server_error} or {@code error}
+ * when no response was received</li>
+ * </ul>
+ * Streams returned by the client are not covered, so {@code getObject} measures the time to the first byte.
+ */
+@RequiredArgsConstructor
+public class S3Metrics implements InvocationHandler {
+
+  public static final String REQUESTS = "score.s3.requests";
+
+  private static final Pattern PARTITION = Pattern.compile(".+\\.(\\d+)$");
+  private static final String NONE = "none";
+
+  /**
+   * {@code getBucketName} accessor of each request type, if it has one.
+   */
+  private static final Map<Class<?>, Optional<Method>> BUCKET_ACCESSORS = new ConcurrentHashMap<>();
+
+  @NonNull
+  private final AmazonS3 delegate;
+  @NonNull
+  private final MeterRegistry registry;
+
+  public static AmazonS3 instrument(@NonNull AmazonS3 s3Client, @NonNull MeterRegistry registry) {
+    return (AmazonS3) Proxy.newProxyInstance(AmazonS3.class.getClassLoader(), new Class<?>[] { AmazonS3.class },
+        new S3Metrics(s3Client, registry));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(delegate, args);
+    }
+
+    val start = System.nanoTime();
+    String outcome = "success";
+    try {
+      return method.invoke(delegate, args);
+    } catch (InvocationTargetException e) {
+      outcome = getOutcome(e.getCause());
+      throw e.getCause();
+    } finally {
+      Timer.builder(REQUESTS)
+          .tag("operation", method.getName())
+          .tag("partition", getPartition(args))
+          .tag("outcome", outcome)
+          .register(registry)
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  static String getPartition(Object[] args) {
+    val bucketName = getBucketName(args);
+    if (bucketName == null) {
+      return NONE;
+    }
+
+    val matcher = PARTITION.matcher(bucketName);
+    return matcher.matches() ? matcher.group(1) : NONE;
+  }
+
+  private static String getBucketName(Object[] args) {
+    if (args == null || args.length == 0 || args[0] == null) {
+      return null;
+    }
+
+    // Client methods either take the bucket name first or a request carrying it
+    val arg = args[0];
+    if (arg instanceof String) {
+      return (String) arg;
+    }
+
+    val accessor = BUCKET_ACCESSORS.computeIfAbsent(arg.getClass(), S3Metrics::getBucketAccessor);
+    if (!accessor.isPresent()) {
+      return null;
+    }
+
+    try {
+      return (String) accessor.get().invoke(arg);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static Optional<Method> getBucketAccessor(Class<?> type) {
+    try {
+      val method = type.getMethod("getBucketName");
+      return method.getReturnType() == String.class ? Optional.of(method) : Optional.empty();
+    } catch (NoSuchMethodException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static String getOutcome(Throwable t) {
+    if (!(t instanceof AmazonServiceException)) {
+      return "error";
+    }
+
+    val statusCode = ((AmazonServiceException) t).getStatusCode();
+    if (statusCode == 404) {
+      return "not_found";
+    }
+    return statusCode >= 500 ? "server_error" : "client_error";
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.stereotype.Service;
+
+import lombok.Setter;
+
+/**
+ * Remembers whether an object lives in its partition bucket or was found in the master bucket (i.e. is relocated), so
+ * objects uploaded before partitioning don't cost a failed request to the partition bucket on every lookup.
+ * <p>
+ * Backed by the {@code bucketLocation} cache, which is sized like any other through {@code cache.specs}.
+ */
+@Setter
+@Service
+public class S3ObjectLocationCache {
+
+  /**
+   * Constants.
+   */
+  public static final String CACHE_NAME = "bucketLocation";
+
+  /**
+   * Dependencies.
+   */
+  @Autowired(required = false)
+  private CacheManager cacheManager;
+
+  /**
+   * State.
+   */
+  private Cache cache;
+
+  @PostConstruct
+  public void init() {
+    cache = cacheManager == null ? new NoOpCache(CACHE_NAME) : cacheManager.getCache(CACHE_NAME);
+  }
+
+  /**
+   * @return whether the object was last found in the master bucket, or {@code null} if it hasn't been looked up
+   */
+  public Boolean isRelocated(String objectId) {
+    return cache.get(objectId, Boolean.class);
+  }
+
+  public void put(String objectId, boolean relocated) {
+    cache.put(objectId, relocated);
+  }
+
+  public void evict(String objectId) {
+    cache.evict(objectId);
+  }
+
+}
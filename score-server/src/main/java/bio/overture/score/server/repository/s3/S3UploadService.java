@@ -15,6 +15,8 @@ import bio.overture.score.core.util.PartCalculator;
 import bio.overture.score.server.repository.URLGenerator;
 import bio.overture.score.server.repository.UploadPartDetail;
 import bio.overture.score.server.repository.UploadService;
+import bio.overture.score.server.repository.UploadState;
+import bio.overture.score.server.repository.UploadStateCleaner;
 import bio.overture.score.server.repository.UploadStateStore;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
@@ -26,9 +28,12 @@ import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
 import com.amazonaws.services.s3.model.ListPartsRequest;
 import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartListing;
 import com.amazonaws.services.s3.model.PartSummary;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.SneakyThrows;
@@ -47,7 +52,13 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static bio.overture.score.server.metadata.MetadataService.getAnalysisId;
@@ -77,6 +88,10 @@ public class S3UploadService implements UploadService {
 
   @Value("${metadata.useLegacyMode:false}")
   private boolean useLegacyMode;
+  @Value("${upload.deferPartVerification:false}")
+  private boolean deferPartVerification;
+  @Value("${upload.clean.listThreads:8}")
+  private int listThreads = 8;
 
   @Autowired
   private S3Config s3Conf;
@@ -93,6 +108,10 @@ public class S3UploadService implements UploadService {
   @Autowired
   private UploadStateStore stateStore;
   @Autowired
+  private UploadStateCleaner stateCleaner;
+  @Autowired
+  private S3ObjectLocationCache locationCache;
+  @Autowired
   private URLGenerator urlGenerator;
   @Autowired
   private PartCalculator partCalculator;
@@ -162,6 +181,18 @@ public class S3UploadService implements UploadService {
   public boolean exists(@NonNull String objectId) {
     val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
     String actualBucketName = bucketNamingService.getStateBucketName(objectId);
+
+    // Objects last found in the master bucket are checked there first
+    val relocated = bucketNamingService.isPartitioned() && Boolean.TRUE.equals(locationCache.isRelocated(objectId));
+    if (relocated) {
+      try {
+        s3Client.getObjectMetadata(bucketNamingService.getBaseStateBucketName(), objectKey.getMetaKey());
+        return true;
+      } catch (AmazonServiceException e) {
+        locationCache.evict(objectId);
+      }
+    }
+
     try {
       s3Client.getObjectMetadata(actualBucketName, objectKey.getMetaKey());
       return true;
@@ -177,6 +208,7 @@ public class S3UploadService implements UploadService {
             actualBucketName = bucketNamingService.getBaseStateBucketName(); // use base bucket name
             s3Client.getObjectMetadata(actualBucketName, objectKey.getMetaKey());
             log.info("ObjectKey {} found in master bucket {}", objectKey, actualBucketName);
+            locationCache.put(objectId, true);
             return true;
           } catch (AmazonServiceException e2) {
             log.info("ObjectKey {} also not found in master bucket {}", objectKey, actualBucketName);
@@ -232,7 +264,9 @@ public class S3UploadService implements UploadService {
   @SneakyThrows
   public void finalizeUploadPart(String objectId, String uploadId, int partNumber, String md5, String eTag) {
     if (md5 != null && eTag != null && !md5.isEmpty() && !eTag.isEmpty()) {
-      if (isPartExists(ObjectKeys.getObjectKey(dataDir, objectId), uploadId, partNumber, eTag)) {
+      // When deferred, all parts are checked against S3 at once in finalizeUpload()
+      if (deferPartVerification
+          || isPartExists(ObjectKeys.getObjectKey(dataDir, objectId), uploadId, partNumber, eTag)) {
         stateStore.finalizeUploadPart(objectId, uploadId, partNumber, md5, eTag);
       } else {
         val message = String.format("Part does not exist with number %s for objectId %s and uploadId %s",
@@ -255,11 +289,17 @@ public class S3UploadService implements UploadService {
     val actualBucketName = bucketNamingService.getObjectBucketName(objectId);
     val actualStateBucketName = bucketNamingService.getStateBucketName(objectId);
 
-    if (stateStore.isCompleted(objectId, uploadId)) {
+    // The recorded parts are listed once, both to check completeness and to complete the upload
+    val spec = stateStore.read(objectId, uploadId);
+    val details = stateStore.getUploadStatePartDetails(objectId, uploadId);
+    if (isCompleted(spec, details)) {
       try {
-        val details = stateStore.getUploadStatePartDetails(objectId, uploadId);
-        val etags = details.values().stream().map(detail -> detail.getEtag()).collect(Collectors.toList());
         val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
+        if (deferPartVerification) {
+          verifyParts(objectKey, uploadId, spec, details);
+        }
+
+        val etags = details.values().stream().map(detail -> detail.getEtag()).collect(Collectors.toList());
         val request = new CompleteMultipartUploadRequest(actualBucketName, objectKey.getKey(), uploadId, etags);
 
         try {
@@ -275,8 +315,6 @@ public class S3UploadService implements UploadService {
           throw e;
         }
 
-
-        val spec = stateStore.read(objectId, uploadId);
         // Update meta with md5's
         spec.getParts().forEach(part -> {
           UploadPartDetail detail = details.get(part.getPartNumber());
@@ -290,9 +328,12 @@ public class S3UploadService implements UploadService {
         val objectMetaKey = ObjectKeys.getObjectMetaKey(dataDir, objectId);
         log.debug("about to s3.putObject into " + actualStateBucketName + ": " + objectMetaKey.toString());
         s3Client.putObject(actualStateBucketName, objectMetaKey, data, meta);
-        // Delete working files in upload directory
+        // New uploads always land in the partition bucket
+        locationCache.put(objectId, false);
+        // Delete working files in upload directory. The object is complete at this point, so this needn't hold up the
+        // client; a retried finalize before it's done gets a 404 from S3 and returns above.
         log.debug("About to delete working files from state directory");
-        stateStore.delete(objectId, uploadId);
+        stateCleaner.delete(objectId, uploadId);
         log.debug("Upload for {} (upload id {}) finalized", objectId, uploadId);
       } catch (AmazonServiceException e) {
         if (e.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
@@ -311,6 +352,62 @@ public class S3UploadService implements UploadService {
     }
   }
 
+  private static boolean isCompleted(ObjectSpecification spec, Map<Integer, UploadPartDetail> details) {
+    return spec.getParts().stream().allMatch(part -> details.containsKey(part.getPartNumber()));
+  }
+
+  /**
+   * Checks every recorded part against a single paginated listing of the multipart upload: the part must exist with the
+   * expected size and with the ETag the client received when uploading it. Parts that fail are removed from the upload
+   * state so that the client uploads them again when it resumes.
+   */
+  private void verifyParts(ObjectKey objectKey, String uploadId, ObjectSpecification spec,
+      Map<Integer, UploadPartDetail> details) {
+    val objectId = objectKey.getObjectId();
+    val uploaded = listParts(objectKey, uploadId);
+
+    val failed = new ArrayList<Integer>();
+    for (val part : spec.getParts()) {
+      val partNumber = part.getPartNumber();
+      val summary = uploaded.get(partNumber);
+      val etag = details.get(partNumber).getEtag().getETag();
+      if (summary == null || summary.getSize() != part.getPartSize() || !summary.getETag().equals(etag)) {
+        log.warn("Part {} of objectId {} and uploadId {} failed verification: recorded eTag {}, uploaded {}",
+            partNumber, objectId, uploadId, etag, summary == null ? "<missing>" : summary.getETag());
+        failed.add(partNumber);
+      }
+    }
+
+    if (!failed.isEmpty()) {
+      failed.forEach(partNumber -> stateStore.deletePart(objectId, uploadId, partNumber));
+      val message = String.format("Parts %s do not match the uploaded data for objectId %s and uploadId %s",
+          failed, objectId, uploadId);
+      throw new NotRetryableException(new IOException(message));
+    }
+  }
+
+  private Map<Integer, PartSummary> listParts(ObjectKey objectKey, String uploadId) {
+    val actualBucketName = bucketNamingService.getObjectBucketName(objectKey.getObjectId());
+    val request = new ListPartsRequest(actualBucketName, objectKey.getKey(), uploadId);
+    val parts = new HashMap<Integer, PartSummary>();
+    try {
+      PartListing listing;
+      do {
+        listing = s3Client.listParts(request);
+        listing.getParts().forEach(part -> parts.put(part.getPartNumber(), part));
+        request.setPartNumberMarker(listing.getNextPartNumberMarker());
+      } while (listing.isTruncated());
+    } catch (AmazonServiceException e) {
+      // Handled by finalizeUpload()
+      throw e;
+    } catch (AmazonClientException e) {
+      log.error("Request failure listing parts with objectKey: {}, uploadId: {}: ", objectKey, uploadId, e);
+      throw new RetryableException(e);
+    }
+
+    return parts;
+  }
+
   @Override
   public String getUploadId(String objectId) {
     return stateStore.getUploadId(objectId);
@@ -426,29 +523,77 @@ public class S3UploadService implements UploadService {
     }
   }
 
+  /**
+   * Lists every in-progress multipart upload, following pagination in each bucket. Partition buckets are listed
+   * concurrently.
+   */
   @Override
   public List<MultipartUpload> listUploads() {
-    List<MultipartUpload> result = null;
+    return listEachBucket(bucketNamingService.getBaseObjectBucketName(), this::listUploads);
+  }
+
+  /**
+   * Lists the uploads with state in every state bucket. Partition buckets are listed concurrently.
+   */
+  @Override
+  public List<UploadState> listUploadStates() {
+    return listEachBucket(bucketNamingService.getBaseStateBucketName(), stateStore::listUploadStates);
+  }
+
+  @SneakyThrows
+  private <T> List<T> listEachBucket(String baseBucketName, Function<String, List<T>> lister) {
+    val bucketNames = new ArrayList<String>();
+    if (bucketNamingService.isPartitioned()) {
+      for (int i = 0; i < bucketNamingService.getBucketPoolSize(); i++) {
+        bucketNames.add(bucketNamingService.constructBucketName(baseBucketName, i));
+      }
+    } else {
+      bucketNames.add(baseBucketName);
+    }
+
+    if (bucketNames.size() == 1) {
+      return lister.apply(bucketNames.get(0));
+    }
+
+    val executor = Executors.newFixedThreadPool(Math.min(listThreads, bucketNames.size()),
+        new ThreadFactoryBuilder().setNameFormat("upload-list-%d").setDaemon(true).build());
     try {
-      if (bucketNamingService.isPartitioned()) {
-        result = new ArrayList<MultipartUpload>();
-        for (int i = 0; i < bucketNamingService.getBucketPoolSize(); i++) {
-          val actualBucketName =
-              bucketNamingService.constructBucketName(bucketNamingService.getBaseObjectBucketName(), i);
-          val request = new ListMultipartUploadsRequest(actualBucketName);
-          val response = s3Client.listMultipartUploads(request);
-          result.addAll(response.getMultipartUploads());
-        }
+      val futures = new ArrayList<Future<List<T>>>();
+      for (val bucketName : bucketNames) {
+        futures.add(executor.submit(() -> lister.apply(bucketName)));
+      }
 
-      } else {
-        val request = new ListMultipartUploadsRequest(bucketNamingService.getBaseObjectBucketName());
-        val response = s3Client.listMultipartUploads(request);
-        result = response.getMultipartUploads();
+      val result = new ArrayList<T>();
+      for (val future : futures) {
+        try {
+          result.addAll(future.get());
+        } catch (ExecutionException e) {
+          throw e.getCause();
+        }
       }
 
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  List<MultipartUpload> listUploads(String bucketName) {
+    val result = new ArrayList<MultipartUpload>();
+    try {
+      val request = new ListMultipartUploadsRequest(bucketName);
+      MultipartUploadListing listing;
+      do {
+        listing = s3Client.listMultipartUploads(request);
+        result.addAll(listing.getMultipartUploads());
+
+        request.setKeyMarker(listing.getNextKeyMarker());
+        request.setUploadIdMarker(listing.getNextUploadIdMarker());
+      } while (listing.isTruncated());
+
       return result;
     } catch (AmazonServiceException e) {
-      log.error("Failed to list uploads on partition : ", e);
+      log.error("Failed to list uploads in bucket {}: ", bucketName, e);
       throw new RetryableException(e);
     }
   }
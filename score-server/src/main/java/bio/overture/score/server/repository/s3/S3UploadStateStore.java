@@ -17,13 +17,17 @@
  */
 package bio.overture.score.server.repository.s3;
 
+import static com.google.common.collect.Iterables.partition;
+import static lombok.AccessLevel.PACKAGE;
 import static org.apache.commons.lang.StringUtils.removeEnd;
 import static org.apache.commons.lang.StringUtils.removeStart;
 import static org.apache.commons.lang.StringUtils.substringAfter;
+import static org.apache.commons.lang.StringUtils.substringBefore;
 import static org.apache.commons.lang.StringUtils.substringBetween;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +43,7 @@ import bio.overture.score.server.exception.RetryableException;
 import bio.overture.score.server.repository.BucketNamingService;
 import bio.overture.score.server.repository.UploadPartDetail;
 import bio.overture.score.server.repository.UploadPartDetail.UploadPartDetailBuilder;
+import bio.overture.score.server.repository.UploadState;
 import bio.overture.score.server.repository.UploadStateStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -47,6 +52,8 @@ import org.springframework.http.HttpStatus;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
@@ -58,6 +65,7 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Maps;
 
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.SneakyThrows;
@@ -79,6 +87,7 @@ public class S3UploadStateStore implements UploadStateStore {
   private static final String META = ".meta";
   private static final String PART = "part";
   private static final Integer MAX_KEYS = 5000;
+  private static final int MAX_DELETE_KEYS = 1000;
   private static final ObjectMapper MAPPER = new ObjectMapper();
 
   /**
@@ -93,8 +102,10 @@ public class S3UploadStateStore implements UploadStateStore {
    * Dependencies.
    */
   @Autowired
+  @Getter(PACKAGE)
   private AmazonS3 s3Client;
   @Autowired
+  @Getter(PACKAGE)
   private BucketNamingService bucketNamingService;
 
   /*
@@ -160,28 +171,16 @@ public class S3UploadStateStore implements UploadStateStore {
    */
   @Override
   public void delete(String objectId, String uploadId) {
-    val uploadStateKey = getUploadStateKey(objectId, uploadId, META);
-    try {
-
-      // Delete the meta file
-      val spec = read(objectId, uploadId);
-      log.debug("About to delete (bucket) {} / (uploadStateKey) {}", bucketNamingService.getStateBucketName(objectId),
-          uploadStateKey);
-      deleteObject(objectId, uploadStateKey);
-
-      // Delete the part files
-      for (val part : spec.getParts()) {
-        try {
-          deletePart(objectId, uploadId, part.getPartNumber());
-        } catch (Exception e) {
-          log.warn("Error deleting objectId: {}, uploadId: {} part: {} : {}", objectId, uploadId, part, e);
-        }
-      }
-    } catch (Exception e) {
-      log.error("Error deleting objectId: {}, uploadId: {}: {}", objectId, uploadId, e);
-
-      throw e;
+    // One listing of the upload directory finds the .meta and every part, whatever the spec says
+    val keys = new ArrayList<String>();
+    eachObjectSummary(objectId, getUploadStateKey(objectId, uploadId, ""), summary -> keys.add(summary.getKey()));
+    if (keys.isEmpty()) {
+      log.debug("No upload state to delete for objectId: {}, uploadId: {}", objectId, uploadId);
+      return;
     }
+
+    log.debug("Deleting {} upload state keys for objectId: {}, uploadId: {}", keys.size(), objectId, uploadId);
+    deleteKeys(objectId, keys);
   }
 
   /*
@@ -195,29 +194,29 @@ public class S3UploadStateStore implements UploadStateStore {
     val partName = formatUploadPartName(partNumber, "");
     val uploadStateKey = getUploadStateKey(objectId, uploadId, partName);
 
-    log.debug("About to deleteObject in bucket {} ", bucketNamingService.getStateBucketName(objectId));
-    eachObjectSummary(
-        objectId,
-        uploadStateKey,
-        objectSummary -> deleteObject(objectId,objectSummary.getKey()));
+    val keys = new ArrayList<String>();
+    eachObjectSummary(objectId, uploadStateKey, objectSummary -> keys.add(objectSummary.getKey()));
+    deleteKeys(objectId, keys);
   }
 
-
-  /* Deletes object only if it is available
-     A connection reset might cause this request to be re-issued from the client and object might actually be
-     deleted as a result of the original request
-     DCC-5673: https://jira.oicr.on.ca/browse/DCC-5673
-     */
-  void deleteObject(String objectId, String objectKey){
-
-    // if object keys don't exist - it means it is already deleted, no need to delete again
-    // it does add an additional step before deletion of every part;
-    // an alternative way would be to directly catch a "NOT FOUND" exception from s3Client.deleteObject
-    // but that also throws a null pointer exception and we cannot assume all Null pointer exceptions
-    // mean that object has already been deleted.
-    if(!isPartAvailable(objectId,objectKey)) return;
-    // delete object if still available
-    s3Client.deleteObject(bucketNamingService.getStateBucketName(objectId),objectKey);
+  /*
+   * Deletes keys with multi-object deletes of up to 1000 keys each. Keys that are already gone are not an error, so a
+   * request re-issued after a connection reset is harmless (DCC-5673).
+   */
+  void deleteKeys(String objectId, List<String> keys) {
+    val bucketName = bucketNamingService.getStateBucketName(objectId);
+    for (val batch : partition(keys, MAX_DELETE_KEYS)) {
+      val keyVersions = new ArrayList<KeyVersion>(batch.size());
+      batch.forEach(key -> keyVersions.add(new KeyVersion(key)));
+
+      try {
+        log.debug("About to delete {} keys in bucket {}", batch.size(), bucketName);
+        s3Client.deleteObjects(new DeleteObjectsRequest(bucketName).withKeys(keyVersions).withQuiet(true));
+      } catch (AmazonServiceException e) {
+        log.error("Failed to delete {} upload state keys in bucket {}: {}", batch.size(), bucketName, e);
+        throw new RetryableException(e);
+      }
+    }
   }
 
   /*
@@ -413,6 +412,26 @@ public class S3UploadStateStore implements UploadStateStore {
     throw new IdNotFoundException("Upload ID not found for object ID: " + objectId);
   }
 
+  /**
+   * Lists the uploads with a {@code .meta} file in {@code bucketName}. Lists every state key, which is one per part for
+   * uploads in progress, so meant for the periodic cleanup only.
+   */
+  @Override
+  public List<UploadState> listUploadStates(String bucketName) {
+    val prefix = uploadDir + getDirectorySeparator();
+    val suffix = getDirectorySeparator() + META;
+    val states = new ArrayList<UploadState>();
+    eachObjectSummaryInBucket(bucketName, prefix, summary -> {
+      if (summary.getKey().endsWith(suffix)) {
+        val upload = removeEnd(removeStart(summary.getKey(), prefix), suffix);
+        states.add(new UploadState(substringBefore(upload, UPLOAD_SEPARATOR), substringAfter(upload, UPLOAD_SEPARATOR),
+            summary.getLastModified()));
+      }
+    });
+
+    return states;
+  }
+
   @SneakyThrows
   private CompletedPart readCompletedPart(String objectId, String uploadId, S3ObjectSummary objectSummary) {
     try {
@@ -426,9 +445,13 @@ public class S3UploadStateStore implements UploadStateStore {
     }
   }
 
-  private void eachObjectSummary(String objectId, String prefix, Consumer<S3ObjectSummary> callback) {
+  void eachObjectSummary(String objectId, String prefix, Consumer<S3ObjectSummary> callback) {
+    eachObjectSummaryInBucket(bucketNamingService.getStateBucketName(objectId), prefix, callback);
+  }
+
+  private void eachObjectSummaryInBucket(String bucketName, String prefix, Consumer<S3ObjectSummary> callback) {
     val request = new ListObjectsRequest()
-        .withBucketName(bucketNamingService.getStateBucketName(objectId))
+        .withBucketName(bucketName)
         .withMaxKeys(MAX_KEYS)
         .withPrefix(prefix);
 
@@ -506,7 +529,7 @@ public class S3UploadStateStore implements UploadStateStore {
     return substringAfter(removeStart(key, uploadStateKey), "|");
   }
 
-  private String getUploadStateKey(String objectId, String uploadId, String filename) {
+  String getUploadStateKey(String objectId, String uploadId, String filename) {
     val directorySeparator = getDirectorySeparator();
 
     return new StringBuilder(uploadDir)
@@ -42,6 +42,14 @@ public abstract class AbstractScopeAuthorizationStrategy {
    */
   public boolean authorize(@NonNull Authentication authentication, @NonNull final String objectId) {
     log.info("Checking authorization for operation with scope {} on object with id {} ", scope, objectId);
+    val applicableScopes = getApplicableScopes(authentication);
+
+    val status = verify(applicableScopes, objectId);
+    log.info("Authorization was {}", status? "granted":"denied");
+    return status;
+  }
+
+  protected List<AuthScope> getApplicableScopes(@NonNull Authentication authentication) {
     List<AuthScope> applicableScopes;
 
     if (authentication instanceof OAuth2Authentication) {
@@ -53,9 +61,7 @@ public abstract class AbstractScopeAuthorizationStrategy {
       applicableScopes = Collections.emptyList();
     }
 
-    val status = verify(applicableScopes, objectId);
-    log.info("Authorization was {}", status? "granted":"denied");
-    return status;
+    return applicableScopes;
   }
 
 }
@@ -17,19 +17,49 @@
  */
 package bio.overture.score.server.security;
 
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
 import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.val;
+
 public class CachingRemoteTokenServices extends RemoteTokenServices {
 
+  private MeterRegistry meterRegistry;
+
+  /**
+   * Times calls to the auth server as {@code auth.token.introspect}. Cached tokens are not introspected.
+   */
+  public void bindTo(@NonNull MeterRegistry registry) {
+    this.meterRegistry = registry;
+  }
+
   @Override
   @Cacheable("tokens")
   public OAuth2Authentication loadAuthentication(String accessToken)
       throws AuthenticationException, InvalidTokenException {
-    return super.loadAuthentication(accessToken);
+    val start = System.nanoTime();
+    String result = "valid";
+    try {
+      return super.loadAuthentication(accessToken);
+    } catch (RuntimeException e) {
+      result = "invalid";
+      throw e;
+    } finally {
+      if (meterRegistry != null) {
+        Timer.builder("auth.token.introspect")
+            .tag("result", result)
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
   }
 
-}
\ No newline at end of file
+}
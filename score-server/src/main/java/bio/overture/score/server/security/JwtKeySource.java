@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Public keys that JWT signatures are verified against: either a single configured key, or the RSA keys published at
+ * a JWKS URL. The JWKS is fetched on first use and again when a token names a key id it doesn't contain (key rotation),
+ * at most once per {@link #MIN_REFRESH_INTERVAL_MS}.
+ */
+@Slf4j
+public class JwtKeySource {
+
+  private static final long MIN_REFRESH_INTERVAL_MS = 60_000;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final PublicKey publicKey;
+  private final String jwksUrl;
+  private final RestTemplate restTemplate;
+
+  private volatile Map<String, PublicKey> keys = ImmutableMap.of();
+  private long lastRefresh = 0;
+
+  private JwtKeySource(PublicKey publicKey, String jwksUrl, RestTemplate restTemplate) {
+    this.publicKey = publicKey;
+    this.jwksUrl = jwksUrl;
+    this.restTemplate = restTemplate;
+  }
+
+  /**
+   * @param publicKey - PEM or base64 encoded X.509 RSA public key
+   */
+  public static JwtKeySource fromPublicKey(@NonNull String publicKey) {
+    return new JwtKeySource(parsePublicKey(publicKey), null, null);
+  }
+
+  public static JwtKeySource fromJwks(@NonNull String jwksUrl, @NonNull RestTemplate restTemplate) {
+    return new JwtKeySource(null, jwksUrl, restTemplate);
+  }
+
+  /**
+   * @return the key to verify a token signed with key {@code keyId} (may be {@code null}), or {@code null} if unknown
+   */
+  public PublicKey getKey(String keyId) {
+    if (publicKey != null) {
+      return publicKey;
+    }
+
+    val key = findKey(keyId);
+    if (key != null) {
+      return key;
+    }
+
+    refresh();
+    return findKey(keyId);
+  }
+
+  private PublicKey findKey(String keyId) {
+    val current = keys;
+    if (keyId == null) {
+      return current.size() == 1 ? current.values().iterator().next() : null;
+    }
+    return current.get(keyId);
+  }
+
+  private synchronized void refresh() {
+    val now = System.currentTimeMillis();
+    if (now - lastRefresh < MIN_REFRESH_INTERVAL_MS) {
+      return;
+    }
+    lastRefresh = now;
+
+    try {
+      keys = parseJwks(restTemplate.getForObject(jwksUrl, String.class));
+      log.info("Loaded {} JWT signing keys from {}", keys.size(), jwksUrl);
+    } catch (Exception e) {
+      log.error("Could not load JWT signing keys from {}: {}", jwksUrl, e.getMessage());
+    }
+  }
+
+  @SneakyThrows
+  static Map<String, PublicKey> parseJwks(@NonNull String jwks) {
+    val keys = ImmutableMap.<String, PublicKey> builder();
+    for (val key : OBJECT_MAPPER.readTree(jwks).path("keys")) {
+      if (!"RSA".equals(key.path("kty").asText()) || !"sig".equals(key.path("use").asText("sig"))) {
+        continue;
+      }
+      val spec = new RSAPublicKeySpec(decodeUnsigned(key, "n"), decodeUnsigned(key, "e"));
+      keys.put(key.path("kid").asText(""), KeyFactory.getInstance("RSA").generatePublic(spec));
+    }
+    return keys.build();
+  }
+
+  @SneakyThrows
+  static PublicKey parsePublicKey(@NonNull String publicKey) {
+    val encoded = publicKey
+        .replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "")
+        .replaceAll("\\s", "");
+    val spec = new X509EncodedKeySpec(Base64.getDecoder().decode(encoded));
+    return KeyFactory.getInstance("RSA").generatePublic(spec);
+  }
+
+  private static BigInteger decodeUnsigned(JsonNode key, String field) {
+    return new BigInteger(1, Base64.getUrlDecoder().decode(key.path(field).asText()));
+  }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.security;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import java.io.IOException;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Authenticates signed JWT access tokens locally, against the keys of a {@link JwtKeySource}, instead of asking the
+ * authorization server to introspect every token. Opaque (non-JWT) tokens are still passed to {@code remote}.
+ * <p>
+ * Scopes are read from the {@code scope} claim (a list or a space separated string) or, for Ego tokens, from
+ * {@code context.scope}, and the token is converted with {@code accessTokenConverter} like an introspection response,
+ * so {@link AbstractScopeAuthorizationStrategy} sees the same {@link OAuth2Authentication} either way. Verified tokens
+ * are cached until they expire, for at most {@link #CACHE_TTL_MINUTES}. Tokens must carry an {@code exp} claim, and
+ * their {@code iss} and {@code aud} claims are checked when an issuer or audience is configured.
+ * <p>
+ * Exports {@code auth.token.verify} timers (tagged by {@code type} jwt / remote and {@code result}) and
+ * {@code auth.jwt} cache statistics.
+ */
+@Slf4j
+public class JwtTokenServices implements ResourceServerTokenServices {
+
+  private static final int CACHE_TTL_MINUTES = 5;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final Map<String, String> ALGORITHMS = ImmutableMap.of(
+      "RS256", "SHA256withRSA",
+      "RS384", "SHA384withRSA",
+      "RS512", "SHA512withRSA");
+
+  @Value
+  private static class Verified {
+
+    OAuth2Authentication authentication;
+    long expiresAt;
+
+  }
+
+  private final JwtKeySource keys;
+  private final ResourceServerTokenServices remote;
+  private final AccessTokenConverter accessTokenConverter;
+  private final long leewaySeconds;
+  private final String issuer;
+  private final String audience;
+  private final Cache<String, Verified> cache;
+
+  private MeterRegistry meterRegistry;
+
+  public JwtTokenServices(@NonNull JwtKeySource keys, @NonNull ResourceServerTokenServices remote,
+      @NonNull AccessTokenConverter accessTokenConverter, long leewaySeconds, long cacheSize, String issuer,
+      String audience) {
+    this.keys = keys;
+    this.remote = remote;
+    this.accessTokenConverter = accessTokenConverter;
+    this.leewaySeconds = leewaySeconds;
+    this.issuer = Strings.emptyToNull(issuer);
+    this.audience = Strings.emptyToNull(audience);
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(cacheSize)
+        .expireAfterWrite(CACHE_TTL_MINUTES, MINUTES)
+        .recordStats()
+        .build();
+  }
+
+  public void bindTo(@NonNull MeterRegistry registry) {
+    this.meterRegistry = registry;
+    GuavaCacheMetrics.monitor(registry, cache, "auth.jwt");
+  }
+
+  @Override
+  public OAuth2Authentication loadAuthentication(String accessToken)
+      throws AuthenticationException, InvalidTokenException {
+    val parts = accessToken.split("\\.", -1);
+    val header = parts.length == 3 ? readHeader(parts[0]) : null;
+    if (header == null) {
+      return timed("remote", () -> remote.loadAuthentication(accessToken));
+    }
+
+    val cached = cache.getIfPresent(accessToken);
+    if (cached != null && cached.getExpiresAt() > now()) {
+      return cached.getAuthentication();
+    }
+
+    val verified = timed("jwt", () -> verify(header, parts));
+    cache.put(accessToken, verified);
+    return verified.getAuthentication();
+  }
+
+  @Override
+  public OAuth2AccessToken readAccessToken(String accessToken) {
+    return remote.readAccessToken(accessToken);
+  }
+
+  private Verified verify(JsonNode header, String[] parts) {
+    val algorithm = ALGORITHMS.get(header.path("alg").asText());
+    if (algorithm == null) {
+      throw new InvalidTokenException("Unsupported JWT algorithm " + header.path("alg").asText());
+    }
+    val key = keys.getKey(header.hasNonNull("kid") ? header.get("kid").asText() : null);
+    if (key == null) {
+      throw new InvalidTokenException("Unknown JWT signing key " + header.path("kid").asText());
+    }
+
+    try {
+      val signature = Signature.getInstance(algorithm);
+      signature.initVerify(key);
+      signature.update((parts[0] + "." + parts[1]).getBytes(US_ASCII));
+      if (!signature.verify(Base64.getUrlDecoder().decode(parts[2]))) {
+        throw new InvalidTokenException("Invalid JWT signature");
+      }
+    } catch (InvalidTokenException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new InvalidTokenException("Could not verify JWT signature: " + e.getMessage());
+    }
+
+    val claims = readClaims(parts[1]);
+    val now = now();
+    if (!claims.path("exp").canConvertToLong()) {
+      throw new InvalidTokenException("Token has no expiry");
+    }
+    val expiresAt = claims.get("exp").asLong() + leewaySeconds;
+    if (expiresAt < now) {
+      throw new InvalidTokenException("Token has expired");
+    }
+    if (claims.path("nbf").asLong(0) - leewaySeconds > now) {
+      throw new InvalidTokenException("Token is not valid yet");
+    }
+    if (issuer != null && !issuer.equals(claims.path("iss").asText(null))) {
+      throw new InvalidTokenException("Token has the wrong issuer " + claims.path("iss").asText());
+    }
+    if (audience != null && !toList(claims.path(AccessTokenConverter.AUD)).contains(audience)) {
+      throw new InvalidTokenException("Token is not intended for audience " + audience);
+    }
+
+    return new Verified(accessTokenConverter.extractAuthentication(toIntrospection(claims)), expiresAt);
+  }
+
+  /**
+   * Maps claims to the shape of a {@code check_token} response: scopes and audiences as lists, and the user name in
+   * {@code user_name}.
+   */
+  private static Map<String, Object> toIntrospection(JsonNode claims) {
+    Map<String, Object> map = OBJECT_MAPPER.convertValue(claims, new TypeReference<HashMap<String, Object>>() {});
+    val scope = claims.has("scope") ? claims.get("scope") : claims.path("context").path("scope");
+    map.put(AccessTokenConverter.SCOPE, toList(scope));
+    if (claims.has(AccessTokenConverter.AUD)) {
+      map.put(AccessTokenConverter.AUD, toList(claims.get(AccessTokenConverter.AUD)));
+    }
+    if (!claims.has("user_name")) {
+      val user = claims.path("context").path("user").path("name");
+      map.put("user_name", user.isTextual() ? user.asText() : claims.path("sub").asText(null));
+    }
+    return map;
+  }
+
+  private static List<String> toList(JsonNode node) {
+    if (node.isTextual()) {
+      return Arrays.asList(node.asText().trim().split("\\s+"));
+    }
+    val values = ImmutableList.<String> builder();
+    node.forEach(value -> values.add(value.asText()));
+    return values.build();
+  }
+
+  /**
+   * @return the decoded header, or {@code null} if {@code encoded} isn't a JWT header (an opaque token)
+   */
+  private static JsonNode readHeader(String encoded) {
+    try {
+      val header = OBJECT_MAPPER.readTree(Base64.getUrlDecoder().decode(encoded));
+      return header != null && header.has("alg") ? header : null;
+    } catch (IllegalArgumentException | IOException e) {
+      return null;
+    }
+  }
+
+  private static JsonNode readClaims(String encoded) {
+    try {
+      return OBJECT_MAPPER.readTree(Base64.getUrlDecoder().decode(encoded));
+    } catch (IllegalArgumentException | IOException e) {
+      throw new InvalidTokenException("Malformed JWT claims");
+    }
+  }
+
+  private <T> T timed(String type, Supplier<T> verification) {
+    val start = System.nanoTime();
+    String result = "valid";
+    try {
+      return verification.get();
+    } catch (RuntimeException e) {
+      result = "invalid";
+      throw e;
+    } finally {
+      if (meterRegistry != null) {
+        Timer.builder("auth.token.verify")
+            .tag("type", type)
+            .tag("result", result)
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private static long now() {
+    return System.currentTimeMillis() / 1000;
+  }
+
+}
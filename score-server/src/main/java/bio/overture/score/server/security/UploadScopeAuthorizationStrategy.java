@@ -22,6 +22,7 @@ import bio.overture.score.server.metadata.MetadataService;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.springframework.security.core.Authentication;
 
 import java.util.Collection;
 import java.util.List;
@@ -57,6 +58,37 @@ public class UploadScopeAuthorizationStrategy extends AbstractScopeAuthorization
     return result;
   }
 
+  /**
+   * Version of authorize() for operations on a whole project (study) rather than a single object.
+   */
+  public boolean authorizeProject(@NonNull Authentication authentication, @NonNull final String projectCode) {
+    if(!this.securityIsEnabled) {
+      return true;
+    }
+
+    val grantedScopes = getApplicableScopes(authentication);
+    val result = grantedScopes.stream().anyMatch(AuthScope::allowAllProjects)
+        || getAuthorizedProjectCodes(grantedScopes).contains(projectCode);
+    log.info("checking for permission to project {} ({})", projectCode, result);
+
+    return result;
+  }
+
+  /**
+   * Version of authorize() for operations on an object whose project must not be looked up, e.g. because the lookup
+   * would go through the very cache being operated on. Only the blanket scope is accepted.
+   */
+  public boolean authorizeAllProjects(@NonNull Authentication authentication) {
+    if(!this.securityIsEnabled) {
+      return true;
+    }
+
+    val result = getApplicableScopes(authentication).stream().anyMatch(AuthScope::allowAllProjects);
+    log.info("checking for permission to all projects ({})", result);
+
+    return result;
+  }
+
   protected List<String> getAuthorizedProjectCodes(@NonNull List<AuthScope> grantedScopes) {
     return getScope().matchingProjects(grantedScopes);
   }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.util;
+
+import lombok.Value;
+import lombok.val;
+
+/**
+ * A single byte range of an HTTP {@code Range: bytes=...} request header, resolved against the size of the resource.
+ */
+@Value
+public class HttpRange {
+
+  private static final String BYTES_UNIT = "bytes=";
+
+  long offset;
+  long length;
+
+  /**
+   * Resolves a {@code Range} header against a resource of {@code size} bytes.
+   * 
+   * @return the requested range, possibly with a length of 0 if it is not satisfiable, or {@code null} if the whole
+   * resource should be sent: the header is absent, malformed or asks for several ranges, all of which a server may
+   * ignore.
+   */
+  public static HttpRange parse(String header, long size) {
+    if (header == null || !header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0) {
+      return null;
+    }
+
+    val spec = header.substring(BYTES_UNIT.length()).trim();
+    val dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+
+    try {
+      val first = spec.substring(0, dash).trim();
+      val last = spec.substring(dash + 1).trim();
+      if (first.isEmpty()) {
+        // Suffix range: the last N bytes
+        val suffix = Long.parseLong(last);
+        val offset = Math.max(0, size - suffix);
+        return new HttpRange(offset, suffix > 0 ? size - offset : 0);
+      }
+
+      val start = Long.parseLong(first);
+      val end = last.isEmpty() ? size - 1 : Long.parseLong(last);
+      if (start < 0 || !last.isEmpty() && end < start) {
+        return null;
+      }
+      if (start >= size) {
+        return new HttpRange(start, 0);
+      }
+
+      return new HttpRange(start, Math.min(end, size - 1) - start + 1);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public boolean isSatisfiable() {
+    return length > 0;
+  }
+
+  /**
+   * @return the {@code Content-Range} header value of this range of a resource of {@code size} bytes
+   */
+  public String toContentRange(long size) {
+    return isSatisfiable() ? String.format("bytes %d-%d/%d", offset, offset + length - 1, size) :
+        String.format("bytes */%d", size);
+  }
+
+}
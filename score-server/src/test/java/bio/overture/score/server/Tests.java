@@ -25,6 +25,7 @@ import lombok.val;
 
 import bio.overture.score.server.config.S3Config;
 import bio.overture.score.server.repository.UploadService;
+import bio.overture.score.server.repository.UploadStateStore;
 import bio.overture.score.server.repository.s3.S3BucketNamingService;
 import bio.overture.score.server.repository.s3.S3UploadService;
 import bio.overture.score.server.repository.s3.S3UploadStateStore;
@@ -38,21 +39,14 @@ public class Tests {
   public static final String STATE_BUCKET_NAME = "oicr.icgc.state";
 
   public static UploadService createUploadService() {
-    val endpoint = "https://www.cancercollaboratory.org:9080";
-    val s3Config = new S3Config();
-    s3Config.setEndpoint(endpoint);
+    val s3Config = createS3Config();
     val s3Client = s3Config.s3();
 
-    val namingService = new S3BucketNamingService();
-    namingService.setObjectBucketName(OBJECT_BUCKET_NAME);
-    namingService.setStateBucketName(STATE_BUCKET_NAME);
-    val stateStore = new S3UploadStateStore();
-    stateStore.setBucketNamingService(namingService);
-    stateStore.setUploadDir(UPLOAD_DIR);
-    stateStore.setS3Client(s3Client);
+    val namingService = createNamingService();
+    val stateStore = createStateStore();
 
     val uploadService = new S3UploadService();
-    stateStore.setBucketNamingService(namingService);
+    uploadService.setBucketNamingService(namingService);
     uploadService.setDataDir(DATA_DIR);
     uploadService.setS3Conf(s3Config);
     uploadService.setS3Client(s3Client);
@@ -61,4 +55,27 @@ public class Tests {
     return uploadService;
   }
 
+  public static UploadStateStore createStateStore() {
+    val stateStore = new S3UploadStateStore();
+    stateStore.setBucketNamingService(createNamingService());
+    stateStore.setUploadDir(UPLOAD_DIR);
+    stateStore.setS3Client(createS3Config().s3());
+
+    return stateStore;
+  }
+
+  private static S3Config createS3Config() {
+    val endpoint = "https://www.cancercollaboratory.org:9080";
+    val s3Config = new S3Config();
+    s3Config.setEndpoint(endpoint);
+    return s3Config;
+  }
+
+  private static S3BucketNamingService createNamingService() {
+    val namingService = new S3BucketNamingService();
+    namingService.setObjectBucketName(OBJECT_BUCKET_NAME);
+    namingService.setStateBucketName(STATE_BUCKET_NAME);
+    return namingService;
+  }
+
 }
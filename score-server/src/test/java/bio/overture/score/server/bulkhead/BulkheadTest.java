@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.bulkhead;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import bio.overture.score.server.exception.RetryableException;
+import bio.overture.score.server.metadata.MetadataCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+
+public class BulkheadTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private Bulkhead sut;
+
+  @Before
+  public void setUp() {
+    val spec = new BulkheadSpec();
+    spec.setThreads(1);
+    spec.setQueue(1);
+    sut = new Bulkhead("test", spec);
+    sut.bindTo(meterRegistry);
+  }
+
+  @After
+  public void tearDown() {
+    sut.shutdown();
+    SecurityContextHolder.clearContext();
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  public void test_operation_runs_with_caller_security_context() throws Exception {
+    val authentication = new TestingAuthenticationToken("user", "password");
+    SecurityContextHolder.getContext().setAuthentication(authentication);
+
+    val result = sut.supply(() -> SecurityContextHolder.getContext().getAuthentication()).get(5, TimeUnit.SECONDS);
+
+    assertThat(result).isSameAs(authentication);
+    assertThat(meterRegistry.get("score.bulkhead.latency").tag("outcome", "success").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_metadata_is_looked_up_once_per_request_across_threads() throws Exception {
+    val cache = new MetadataCache<String>("entity", 10, 0, 0);
+    val lookups = new AtomicInteger();
+    val attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+    RequestContextHolder.setRequestAttributes(attributes);
+
+    // Authorization on the request thread, then the operation on the bulkhead after the request thread returned
+    assertThat(cache.get("object", () -> "entity-" + lookups.incrementAndGet())).isEqualTo("entity-1");
+    val release = new CountDownLatch(1);
+    val future = sut.supply(() -> {
+      await(release);
+      return cache.get("object", () -> "entity-" + lookups.incrementAndGet());
+    });
+    attributes.requestCompleted();
+    RequestContextHolder.resetRequestAttributes();
+    release.countDown();
+
+    assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("entity-1");
+    assertThat(lookups.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_failure_completes_future_exceptionally() throws Exception {
+    val future = sut.supply(() -> {
+      throw new IllegalStateException("boom");
+    });
+
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Expected failure");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    assertThat(meterRegistry.get("score.bulkhead.latency").tag("outcome", "failure").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_full_bulkhead_rejects_with_retryable_exception() throws Exception {
+    val release = new CountDownLatch(1);
+    val running = sut.run(() -> await(release));
+    val queued = sut.run(() -> {});
+
+    val rejected = sut.run(() -> {});
+
+    assertThat(rejected).isCompletedExceptionally();
+    try {
+      rejected.get();
+      fail("Expected rejection");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(RetryableException.class);
+    }
+    assertThat(meterRegistry.get("score.bulkhead.rejected").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("score.bulkhead.queued").gauge().value()).isEqualTo(1);
+
+    release.countDown();
+    running.get(5, TimeUnit.SECONDS);
+    queued.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void test_slow_operation_times_out_with_retryable_exception() throws Exception {
+    val spec = new BulkheadSpec();
+    spec.setThreads(1);
+    spec.setQueue(1);
+    spec.setTimeout(100);
+    val bulkhead = new Bulkhead("slow", spec);
+    bulkhead.bindTo(meterRegistry);
+    val release = new CountDownLatch(1);
+    try {
+      val running = bulkhead.run(() -> await(release));
+      val queued = bulkhead.supply(() -> "never");
+
+      for (val future : new CompletableFuture<?>[] { running, queued }) {
+        try {
+          future.get(5, TimeUnit.SECONDS);
+          fail("Expected timeout");
+        } catch (ExecutionException e) {
+          assertThat(e.getCause()).isInstanceOf(RetryableException.class)
+              .hasCauseInstanceOf(TimeoutException.class);
+        }
+      }
+      assertThat(meterRegistry.get("score.bulkhead.timeouts").tag("bulkhead", "slow").counter().count())
+          .isEqualTo(2);
+    } finally {
+      release.countDown();
+      bulkhead.shutdown();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
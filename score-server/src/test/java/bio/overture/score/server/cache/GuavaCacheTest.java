@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.cache;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.springframework.cache.Cache.ValueRetrievalException;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+
+import lombok.val;
+
+public class GuavaCacheTest {
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final List<Runnable> refreshes = new ArrayList<>();
+
+  @Test
+  public void test_stale_entry_is_served_while_refreshing() {
+    val spec = new CacheSpec();
+    spec.setTtl(Duration.ofHours(24));
+    spec.setRefresh(Duration.ofMinutes(15));
+    val sut = new GuavaCache("listing", spec, refreshes::add, ticker);
+    val loads = new AtomicInteger();
+
+    assertThat(sut.get("key", loads::incrementAndGet)).isEqualTo(1);
+    ticker.advance(10);
+    assertThat(sut.get("key", loads::incrementAndGet)).isEqualTo(1);
+    assertThat(refreshes).isEmpty();
+
+    ticker.advance(10);
+    assertThat(sut.get("key", loads::incrementAndGet)).isEqualTo(1);
+    assertThat(sut.get("key", loads::incrementAndGet)).isEqualTo(1);
+    assertThat(refreshes).hasSize(1);
+
+    refreshes.remove(0).run();
+    assertThat(sut.get("key", loads::incrementAndGet)).isEqualTo(2);
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  public void test_failed_refresh_keeps_stale_entry() {
+    val spec = new CacheSpec();
+    spec.setRefresh(Duration.ofMinutes(1));
+    val sut = new GuavaCache("listing", spec, refreshes::add, ticker);
+
+    sut.put("key", "value");
+    ticker.advance(2);
+    assertThat(sut.<String> get("key", () -> {
+      throw new IllegalStateException("backend down");
+    })).isEqualTo("value");
+    refreshes.remove(0).run();
+
+    assertThat(sut.get("key").get()).isEqualTo("value");
+  }
+
+  @Test
+  public void test_entries_expire_without_refresh() {
+    val spec = new CacheSpec();
+    spec.setTtl(Duration.ofMinutes(5));
+    val sut = new GuavaCache("tokens", spec, refreshes::add, ticker);
+
+    sut.put("token", "authentication");
+    ticker.advance(6);
+
+    assertThat(sut.get("token")).isNull();
+    assertThat(refreshes).isEmpty();
+  }
+
+  @Test
+  public void test_weight_bounds_by_elements() {
+    val spec = new CacheSpec();
+    spec.setMaxWeight(10);
+    val sut = new GuavaCache("test", spec, refreshes::add, ticker);
+
+    sut.put("a", ImmutableList.of(1, 2, 3, 4, 5, 6));
+    sut.put("b", ImmutableList.of(1, 2, 3, 4, 5, 6));
+    sut.getNativeCache().cleanUp();
+
+    assertThat(sut.getNativeCache().size()).isEqualTo(1);
+    assertThat(sut.get("b")).isNotNull();
+  }
+
+  @Test
+  public void test_loader_failure() {
+    val sut = new GuavaCache("test", new CacheSpec(), refreshes::add, ticker);
+
+    assertThatThrownBy(() -> sut.get("key", () -> {
+      throw new IllegalStateException("boom");
+    })).isInstanceOf(ValueRetrievalException.class).hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(sut.<String> get("key", () -> null)).isNull();
+    assertThat(sut.get("key")).isNotNull();
+  }
+
+  private static class FakeTicker extends Ticker {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(long minutes) {
+      nanos.addAndGet(MINUTES.toNanos(minutes));
+    }
+
+  }
+
+}
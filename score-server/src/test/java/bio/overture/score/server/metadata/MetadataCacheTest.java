@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.metadata;
+
+import bio.overture.score.server.exception.IdNotFoundException;
+import lombok.val;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MetadataCacheTest {
+
+  private final AtomicInteger lookups = new AtomicInteger();
+
+  @After
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  public void test_hit_after_miss() {
+    val sut = new MetadataCache<String>("test", 10, 60, 60);
+
+    assertThat(sut.get("a", () -> lookup("A"))).isEqualTo("A");
+    assertThat(sut.get("a", () -> lookup("B"))).isEqualTo("A");
+    assertThat(lookups.get()).isEqualTo(1);
+
+    sut.evict("a");
+    assertThat(sut.get("a", () -> lookup("B"))).isEqualTo("B");
+    assertThat(lookups.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void test_not_found_is_cached() {
+    val sut = new MetadataCache<String>("test", 10, 60, 60);
+
+    assertThatThrownBy(() -> sut.get("missing", this::notFound)).isInstanceOf(IdNotFoundException.class)
+        .hasMessage("missing not registered");
+    assertThatThrownBy(() -> sut.get("missing", () -> lookup("A"))).isInstanceOf(IdNotFoundException.class)
+        .hasMessage("missing not registered");
+    assertThat(lookups.get()).isEqualTo(1);
+
+    sut.evict("missing");
+    assertThat(sut.get("missing", () -> lookup("A"))).isEqualTo("A");
+  }
+
+  @Test
+  public void test_other_errors_are_not_cached() {
+    val sut = new MetadataCache<String>("test", 10, 60, 60);
+
+    assertThatThrownBy(() -> sut.get("a", () -> {
+      throw new IllegalStateException("unavailable");
+    })).isInstanceOf(IllegalStateException.class);
+    assertThat(sut.get("a", () -> lookup("A"))).isEqualTo("A");
+  }
+
+  @Test
+  public void test_concurrent_misses_share_one_lookup() throws Exception {
+    val sut = new MetadataCache<String>("test", 10, 60, 60);
+    val started = new CountDownLatch(1);
+    val release = new CountDownLatch(1);
+
+    val executor = Executors.newFixedThreadPool(4);
+    try {
+      val first = executor.submit(() -> sut.get("a", () -> {
+        started.countDown();
+        await(release);
+        return lookup("A");
+      }));
+      started.await();
+      val others = new Future<?>[3];
+      for (int i = 0; i < others.length; i++) {
+        others[i] = executor.submit(() -> sut.get("a", () -> lookup("B")));
+      }
+      release.countDown();
+
+      assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("A");
+      for (val other : others) {
+        assertThat(other.get(10, TimeUnit.SECONDS)).isEqualTo("A");
+      }
+      assertThat(lookups.get()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void test_lookups_are_coalesced_per_request_when_not_cached() {
+    val sut = new MetadataCache<String>("test", 10, 0, 0);
+
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    assertThat(sut.get("a", () -> lookup("A"))).isEqualTo("A");
+    assertThat(sut.get("a", () -> lookup("B"))).isEqualTo("A");
+    assertThat(lookups.get()).isEqualTo(1);
+
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    assertThat(sut.get("a", () -> lookup("B"))).isEqualTo("B");
+    assertThat(lookups.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void test_evict_if() {
+    val sut = new MetadataCache<String>("test", 10, 60, 60);
+    sut.get("a", () -> lookup("keep"));
+    sut.get("b", () -> lookup("drop"));
+
+    sut.evictIf((key, value) -> value.equals("drop"));
+    assertThat(sut.getIfPresent("a")).isEqualTo("keep");
+    assertThat(sut.getIfPresent("b")).isNull();
+  }
+
+  private String lookup(String value) {
+    lookups.incrementAndGet();
+    return value;
+  }
+
+  private String notFound() {
+    lookups.incrementAndGet();
+    throw new IdNotFoundException("missing not registered");
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
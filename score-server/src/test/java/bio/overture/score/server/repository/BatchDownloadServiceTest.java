@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+
+import com.google.common.collect.ImmutableList;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.server.exception.IdNotFoundException;
+import bio.overture.score.server.exception.NotRetryableException;
+import bio.overture.score.server.security.DownloadScopeAuthorizationStrategy;
+import lombok.val;
+
+public class BatchDownloadServiceTest {
+
+  private final Authentication authentication = mock(Authentication.class);
+  private final DownloadService downloadService = mock(DownloadService.class);
+  private final DownloadScopeAuthorizationStrategy accessSecurity = mock(DownloadScopeAuthorizationStrategy.class);
+  private BatchDownloadService sut;
+
+  @Before
+  public void setUp() {
+    sut = new BatchDownloadService();
+    sut.setMaxSize(100);
+    sut.setThreads(4);
+    sut.setDownloadService(downloadService);
+    sut.setAccessSecurity(accessSecurity);
+    sut.init();
+
+    when(accessSecurity.authorize(eq(authentication), any())).thenReturn(true);
+    when(downloadService.download(any(), eq(0L), eq(-1L), eq(false), eq(true))).then(invocation -> {
+      val spec = new ObjectSpecification();
+      spec.setObjectId(invocation.getArgument(0));
+      spec.setObjectSize(42);
+      return spec;
+    });
+  }
+
+  @After
+  public void tearDown() {
+    sut.shutdown();
+  }
+
+  @Test
+  public void test_specifications_are_returned_in_request_order() {
+    val objectIds = IntStream.range(0, 50).mapToObj(i -> "object-" + i).collect(Collectors.toList());
+
+    val specs = sut.download(authentication, objectIds, 0, -1, false, true);
+
+    assertThat(specs.stream().map(ObjectSpecification::getObjectId)).containsExactlyElementsOf(objectIds);
+  }
+
+  @Test
+  public void test_sizes_are_keyed_by_object_id() {
+    when(downloadService.getObjectSize("a")).thenReturn(1L);
+    when(downloadService.getObjectSize("b")).thenReturn(2L);
+
+    val sizes = sut.getObjectSizes(authentication, ImmutableList.of("b", "a"));
+
+    assertThat(sizes).containsExactly(entry("b", 2L), entry("a", 1L));
+  }
+
+  @Test
+  public void test_unauthorized_object_denies_batch() {
+    when(accessSecurity.authorize(authentication, "secret")).thenReturn(false);
+
+    assertThatThrownBy(() -> sut.download(authentication, ImmutableList.of("a", "secret", "b"), 0, -1, false, true))
+        .isInstanceOf(AccessDeniedException.class).hasMessageContaining("secret");
+  }
+
+  @Test
+  public void test_missing_object_fails_batch() {
+    when(downloadService.download("missing", 0, -1, false, true)).thenThrow(new IdNotFoundException("missing"));
+
+    assertThatThrownBy(() -> sut.download(authentication, ImmutableList.of("a", "missing"), 0, -1, false, true))
+        .isInstanceOf(IdNotFoundException.class);
+  }
+
+  @Test
+  public void test_oversized_batch_is_rejected() {
+    List<String> objectIds = IntStream.range(0, 101).mapToObj(i -> "object-" + i).collect(Collectors.toList());
+
+    assertThatThrownBy(() -> sut.download(authentication, objectIds, 0, -1, false, true))
+        .isInstanceOf(NotRetryableException.class);
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import bio.overture.score.server.exception.RetryableException;
+import lombok.val;
+
+public class ProxyDownloadServiceTest {
+
+  private static final String OBJECT_ID = "object";
+  private static final byte[] DATA = "0123456789".getBytes(UTF_8);
+
+  private final DownloadService downloadService = mock(DownloadService.class);
+  private final ProxyDownloadService sut = new ProxyDownloadService();
+
+  @Before
+  public void setUp() {
+    sut.setEnabled(true);
+    sut.setMaxStreams(1);
+    sut.setBufferSize(4);
+    sut.setDownloadService(downloadService);
+    sut.init();
+
+    when(downloadService.getObjectSize(OBJECT_ID)).thenReturn((long) DATA.length);
+    when(downloadService.openObject(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+      int offset = invocation.<Long> getArgument(1).intValue();
+      int length = invocation.<Long> getArgument(2).intValue();
+      return new ByteArrayInputStream(DATA, offset, length);
+    });
+  }
+
+  @Test
+  public void test_whole_object() throws Exception {
+    val response = new MockHttpServletResponse();
+
+    sut.stream(OBJECT_ID, null, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    assertThat(response.getContentLengthLong()).isEqualTo(10);
+    assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+    assertThat(sut.getAvailableStreams()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_range() throws Exception {
+    val response = new MockHttpServletResponse();
+
+    sut.stream(OBJECT_ID, "bytes=3-8", response);
+
+    assertThat(response.getStatus()).isEqualTo(206);
+    assertThat(response.getContentAsString()).isEqualTo("345678");
+    assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 3-8/10");
+  }
+
+  @Test
+  public void test_unsatisfiable_range() throws Exception {
+    val response = new MockHttpServletResponse();
+
+    sut.stream(OBJECT_ID, "bytes=10-", response);
+
+    assertThat(response.getStatus()).isEqualTo(416);
+    assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+    verify(downloadService, never()).openObject(anyString(), anyLong(), anyLong());
+  }
+
+  @Test
+  public void test_busy_streams_are_rejected() throws Exception {
+    sut.setMaxStreams(0);
+    sut.init();
+
+    val throwable = catchThrowable(() -> sut.stream(OBJECT_ID, null, new MockHttpServletResponse()));
+
+    assertThat(throwable).isInstanceOf(RetryableException.class);
+    verify(downloadService, never()).getObjectSize(OBJECT_ID);
+  }
+
+  @Test
+  public void test_disabled() throws Exception {
+    sut.setEnabled(false);
+    val response = new MockHttpServletResponse();
+
+    sut.stream(OBJECT_ID, null, response);
+
+    assertThat(response.getStatus()).isEqualTo(404);
+  }
+
+}
@@ -17,16 +17,89 @@
  */
 package bio.overture.score.server.repository;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
 import bio.overture.score.server.Tests;
+import bio.overture.score.server.exception.RetryableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.google.common.collect.ImmutableList;
+
 import lombok.val;
 
-@Ignore("For development only")
 public class UploadCleanupServiceTest {
 
   @Test
+  public void testCleanCancelsStaleUploads() {
+    val uploadService = mock(UploadService.class);
+    when(uploadService.listUploads()).thenReturn(ImmutableList.of(
+        upload("object1", 10), upload("object2", 1), upload("object3", 30), upload("object4", 8)));
+    doThrow(new RetryableException()).when(uploadService).cancelUpload("object4", "object4-upload");
+    val meterRegistry = new SimpleMeterRegistry();
+
+    val cleanupService = new UploadCleanupService();
+    cleanupService.setDataDir("data");
+    cleanupService.setExpiration(7);
+    cleanupService.setRate(1000);
+    cleanupService.setUploadService(uploadService);
+    cleanupService.setStateStore(mock(UploadStateStore.class));
+    cleanupService.setMeterRegistry(meterRegistry);
+
+    cleanupService.clean();
+
+    verify(uploadService).cancelUpload("object1", "object1-upload");
+    verify(uploadService).cancelUpload("object3", "object3-upload");
+    verify(uploadService, never()).cancelUpload("object2", "object2-upload");
+    assertThat(meterRegistry.get("score.upload.clean.uploads").tag("result", "cancelled").counter().count())
+        .isEqualTo(2);
+    assertThat(meterRegistry.get("score.upload.clean.uploads").tag("result", "failed").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("score.upload.clean.inProgress").gauge().value()).isEqualTo(4);
+    assertThat(meterRegistry.get("score.upload.clean.duration").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCleanDeletesOrphanedState() {
+    val uploadService = mock(UploadService.class);
+    val stateStore = mock(UploadStateStore.class);
+    when(uploadService.listUploads()).thenReturn(ImmutableList.of(upload("object1", 1)));
+    when(uploadService.listUploadStates()).thenReturn(ImmutableList.of(
+        state("object1", "object1-upload", 24 * 60), state("object2", "object2-upload", 24 * 60),
+        state("object3", "object3-upload", 5)));
+    val meterRegistry = new SimpleMeterRegistry();
+
+    val cleanupService = new UploadCleanupService();
+    cleanupService.setDataDir("data");
+    cleanupService.setExpiration(7);
+    cleanupService.setRate(1000);
+    cleanupService.setUploadService(uploadService);
+    cleanupService.setStateStore(stateStore);
+    cleanupService.setMeterRegistry(meterRegistry);
+
+    cleanupService.clean();
+
+    // In progress, and just initiated
+    verify(stateStore).delete("object2", "object2-upload");
+    verify(stateStore, never()).delete("object1", "object1-upload");
+    verify(stateStore, never()).delete("object3", "object3-upload");
+    assertThat(meterRegistry.get("score.upload.clean.states").tag("result", "deleted").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  @Ignore("For development only")
   public void testClean() {
     val cleanupService = createCleanupService();
 
@@ -40,7 +113,20 @@ public class UploadCleanupServiceTest {
     cleanupService.setDataDir(Tests.DATA_DIR);
     cleanupService.setExpiration(7);
     cleanupService.setUploadService(uploadService);
+    cleanupService.setStateStore(Tests.createStateStore());
     return cleanupService;
   }
 
+  private static UploadState state(String objectId, String uploadId, int ageMinutes) {
+    return new UploadState(objectId, uploadId, Date.from(Instant.now().minus(ageMinutes, ChronoUnit.MINUTES)));
+  }
+
+  private static MultipartUpload upload(String objectId, int ageDays) {
+    val upload = new MultipartUpload();
+    upload.setKey("data/" + objectId);
+    upload.setUploadId(objectId + "-upload");
+    upload.setInitiated(Date.from(Instant.now().minus(ageDays, ChronoUnit.DAYS)));
+    return upload;
+  }
+
 }
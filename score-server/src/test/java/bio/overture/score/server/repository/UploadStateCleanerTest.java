@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import bio.overture.score.server.exception.RetryableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+
+public class UploadStateCleanerTest {
+
+  private final UploadStateStore stateStore = mock(UploadStateStore.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final UploadStateCleaner sut = new UploadStateCleaner();
+
+  @Before
+  public void setUp() {
+    sut.setStateStore(stateStore);
+    sut.setMeterRegistry(meterRegistry);
+    sut.setMaxAttempts(3);
+    sut.setRetryDelay(1);
+    sut.init();
+  }
+
+  @After
+  public void tearDown() {
+    sut.shutdown();
+  }
+
+  @Test
+  public void test_failed_delete_is_retried() {
+    doThrow(new RetryableException()).doNothing().when(stateStore).delete("object", "upload");
+
+    sut.delete("object", "upload");
+
+    verify(stateStore, timeout(5000).times(2)).delete("object", "upload");
+    awaitEmptyBacklog();
+    assertThat(meterRegistry.get("score.upload.state.cleanup.failures").counter().count()).isZero();
+  }
+
+  @Test
+  public void test_delete_gives_up_after_max_attempts() {
+    doThrow(new RetryableException()).when(stateStore).delete("object", "upload");
+
+    sut.delete("object", "upload");
+
+    verify(stateStore, timeout(5000).times(3)).delete("object", "upload");
+    awaitEmptyBacklog();
+    assertThat(meterRegistry.get("score.upload.state.cleanup.failures").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_synchronous_delete() {
+    sut.setAsync(false);
+    doNothing().when(stateStore).delete("object", "upload");
+
+    sut.delete("object", "upload");
+
+    verify(stateStore, times(1)).delete("object", "upload");
+    assertThat(sut.getBacklog()).isZero();
+  }
+
+  private void awaitEmptyBacklog() {
+    val gauge = meterRegistry.get("score.upload.state.cleanup.backlog").gauge();
+    for (int i = 0; i < 500 && gauge.value() > 0; i++) {
+      sleep();
+    }
+    assertThat(gauge.value()).isZero();
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(10);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
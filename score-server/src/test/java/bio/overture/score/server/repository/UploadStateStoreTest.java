@@ -20,8 +20,11 @@ package bio.overture.score.server.repository;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,14 +39,19 @@ import bio.overture.score.server.repository.s3.S3UploadStateStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 @RunWith(MockitoJUnitRunner.class)
 public class UploadStateStoreTest {
@@ -116,6 +124,27 @@ public class UploadStateStoreTest {
     assertThat(spec.getUploadId()).isEqualTo(uploadId);
   }
 
+  @Test
+  public void testDeleteBatchesKeys() throws Exception {
+    val objectId = "objectId1";
+    val uploadId = "uploadId1";
+    val listing = new ObjectListing();
+    for (int i = 0; i < 2500; i++) {
+      val summary = new S3ObjectSummary();
+      summary.setKey("upload/" + objectId + "_" + uploadId + "/" + S3UploadStateStore.formatUploadPartName(i, "{}"));
+      listing.getObjectSummaries().add(summary);
+    }
+    when(s3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(listing);
+
+    store.delete(objectId, uploadId);
+
+    val requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+    verify(s3Client, times(3)).deleteObjects(requests.capture());
+    assertThat(requests.getAllValues().stream().map(request -> request.getKeys().size()))
+        .containsExactly(1000, 1000, 500);
+    verify(s3Client, never()).getObjectMetadata(anyString(), anyString());
+  }
+
   @Test
   public void testFormatUploadPartName() throws Exception {
     val partNumber = 17;
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import lombok.SneakyThrows;
+import lombok.val;
+
+public class CompactS3UploadStateStoreTest {
+
+  private static final String OBJECT_ID = "45dfcd17-8e80-53fc-b400-cc8b583dae05";
+  private static final String UPLOAD_ID = "upload-1";
+
+  /**
+   * In-memory state bucket backing the mocked client.
+   */
+  private final TreeMap<String, byte[]> bucket = new TreeMap<>();
+  private final AmazonS3 s3Client = mock(AmazonS3.class);
+  private final S3BucketNamingService bucketNamingService = mock(S3BucketNamingService.class);
+  private final CompactS3UploadStateStore sut = new CompactS3UploadStateStore();
+
+  @Before
+  @SneakyThrows
+  public void setUp() {
+    sut.setUploadDir("upload");
+    sut.setCompactEvery(2);
+    sut.setS3Client(s3Client);
+    sut.setBucketNamingService(bucketNamingService);
+    when(bucketNamingService.getStateBucketName(OBJECT_ID)).thenReturn("state");
+
+    when(s3Client.putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class)))
+        .thenAnswer(invocation -> {
+          bucket.put(invocation.getArgument(1), ByteStreams.toByteArray(invocation.<InputStream> getArgument(2)));
+          return null;
+        });
+    when(s3Client.getObject(anyString(), anyString()))
+        .thenAnswer(invocation -> object(invocation.getArgument(1)));
+    when(s3Client.getObject(any(GetObjectRequest.class)))
+        .thenAnswer(invocation -> object(invocation.<GetObjectRequest> getArgument(0).getKey()));
+    when(s3Client.listObjects(any(ListObjectsRequest.class))).thenAnswer(invocation -> {
+      val prefix = invocation.<ListObjectsRequest> getArgument(0).getPrefix();
+      val listing = new ObjectListing();
+      bucket.keySet().stream().filter(key -> key.startsWith(prefix)).forEach(key -> {
+        val summary = new S3ObjectSummary();
+        summary.setKey(key);
+        listing.getObjectSummaries().add(summary);
+      });
+      return listing;
+    });
+    when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenAnswer(invocation -> {
+      invocation.<DeleteObjectsRequest> getArgument(0).getKeys().forEach(key -> bucket.remove(key.getKey()));
+      return new DeleteObjectsResult(ImmutableList.of());
+    });
+
+    val spec = new ObjectSpecification();
+    spec.setObjectId(OBJECT_ID);
+    spec.setUploadId(UPLOAD_ID);
+    spec.setParts(ImmutableList.of(part(1), part(2), part(3)));
+    sut.create(spec);
+  }
+
+  @Test
+  public void test_parts_are_compacted_into_a_snapshot() {
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 1, "md5-1", "etag-1");
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 2, "md5-2", "etag-2");
+
+    assertThat(names()).hasSize(2).contains(".meta");
+    assertThat(names().stream().filter(name -> name.startsWith("state-"))).hasSize(1);
+
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 3, "md5-3", "etag-3");
+
+    val details = sut.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID);
+    assertThat(details).containsOnlyKeys(1, 2, 3);
+    assertThat(details.get(2).getMd5()).isEqualTo("md5-2");
+    assertThat(details.get(3).getEtag().getETag()).isEqualTo("etag-3");
+    assertThat(sut.isCompleted(OBJECT_ID, UPLOAD_ID)).isTrue();
+  }
+
+  @Test
+  public void test_resume_marks_compacted_and_journaled_parts() {
+    sut.setCompactEvery(0);
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 1, "md5-1", "etag-1");
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 3, "md5-3", "etag-3");
+    assertThat(sut.isCompleted(OBJECT_ID, UPLOAD_ID)).isFalse();
+
+    val parts = ImmutableList.of(part(1), part(2), part(3));
+    sut.markCompletedParts(OBJECT_ID, UPLOAD_ID, parts);
+
+    assertThat(parts.stream().map(Part::getSourceMd5).collect(Collectors.toList()))
+        .containsExactly("md5-1", null, "md5-3");
+    assertThat(names().stream().filter(name -> name.startsWith("part-"))).isEmpty();
+  }
+
+  @Test
+  public void test_deleted_part_is_removed_from_snapshot() {
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 1, "md5-1", "etag-1");
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 2, "md5-2", "etag-2");
+
+    sut.deletePart(OBJECT_ID, UPLOAD_ID, 2);
+
+    assertThat(sut.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID)).containsOnlyKeys(1);
+    assertThat(names().stream().filter(name -> name.startsWith("state-"))).hasSize(1);
+  }
+
+  @Test
+  public void test_delete_removes_everything_without_head_requests() {
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 1, "md5-1", "etag-1");
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 2, "md5-2", "etag-2");
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 3, "md5-3", "etag-3");
+
+    sut.delete(OBJECT_ID, UPLOAD_ID);
+
+    assertThat(bucket).isEmpty();
+    verify(s3Client, never()).getObjectMetadata(anyString(), anyString());
+    verify(s3Client, never()).deleteObject(anyString(), anyString());
+  }
+
+  private List<String> names() {
+    val prefix = sut.getUploadStateKey(OBJECT_ID, UPLOAD_ID, "");
+    return bucket.keySet().stream().map(key -> key.substring(prefix.length())).collect(Collectors.toList());
+  }
+
+  private S3Object object(String key) {
+    val object = new S3Object();
+    object.setKey(key);
+    object.setObjectContent(new ByteArrayInputStream(bucket.get(key)));
+    return object;
+  }
+
+  private static Part part(int partNumber) {
+    return Part.builder().partNumber(partNumber).partSize(10L).offset((partNumber - 1) * 10L).build();
+  }
+
+}
@@ -1,6 +1,10 @@
 package bio.overture.score.server.repository.s3;
 
 import bio.overture.score.server.exception.NotRetryableException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import bio.overture.score.server.metadata.MetadataEntity;
 import bio.overture.score.server.metadata.MetadataService;
 import lombok.extern.slf4j.Slf4j;
@@ -10,10 +14,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+
 import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @Slf4j
@@ -60,4 +69,44 @@ public class S3DownloadServiceTest {
         assertThat(throwable).isExactlyInstanceOf(NotRetryableException.class);
     }
 
+    @Test
+    public void verify_if_streaming_is_blocked_with_unpublished_objectId() {
+        when(mockService.getEntity(objectId)).thenReturn(metadataEntity);
+
+        assertThat(catchThrowable(() -> s3DownloadService.getObjectSize(objectId)))
+                .isExactlyInstanceOf(NotRetryableException.class);
+        assertThat(catchThrowable(() -> s3DownloadService.openObject(objectId, 0, 10)))
+                .isExactlyInstanceOf(NotRetryableException.class);
+    }
+
+    @Test
+    public void verify_if_streaming_falls_back_to_the_master_bucket() {
+        when(mockService.getAnalysisStateForMetadata(metadataEntity)).thenReturn("PUBLISHED");
+        when(mockService.getEntity(objectId)).thenReturn(metadataEntity);
+        val namingService = new S3BucketNamingService();
+        namingService.setObjectBucketName("objects");
+        namingService.setBucketPoolSize(2);
+        namingService.setBucketKeySize(2);
+        val locationCache = new S3ObjectLocationCache();
+        locationCache.init();
+        val s3Client = mock(AmazonS3.class);
+        val notFound = new AmazonS3Exception("Not Found");
+        notFound.setStatusCode(404);
+        val content = new S3Object();
+        content.setObjectContent(new ByteArrayInputStream(new byte[10]));
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            if (!"objects".equals(invocation.<GetObjectRequest> getArgument(0).getBucketName())) {
+                throw notFound;
+            }
+            return content;
+        });
+        s3DownloadService.setDataDir("data");
+        s3DownloadService.setBucketNamingService(namingService);
+        s3DownloadService.setLocationCache(locationCache);
+        s3DownloadService.setS3Client(s3Client);
+
+        assertThat(s3DownloadService.openObject(objectId, 0, 10)).isNotNull();
+        verify(s3Client, times(2)).getObject(any(GetObjectRequest.class));
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+
+public class S3MetricsTest {
+
+  private final AmazonS3 s3Client = mock(AmazonS3.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AmazonS3 sut = S3Metrics.instrument(s3Client, meterRegistry);
+
+  @Test
+  public void test_request_is_timed_with_partition() {
+    val listing = new ObjectListing();
+    when(s3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(listing);
+
+    assertThat(sut.listObjects(new ListObjectsRequest().withBucketName("oicr.icgc.12"))).isSameAs(listing);
+
+    val timer = meterRegistry.get(S3Metrics.REQUESTS)
+        .tag("operation", "listObjects")
+        .tag("partition", "12")
+        .tag("outcome", "success")
+        .timer();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_failure_is_timed_and_rethrown() {
+    val notFound = new AmazonServiceException("Not Found");
+    notFound.setStatusCode(404);
+    when(s3Client.getObjectMetadata("oicr.icgc", "data/object")).thenThrow(notFound);
+
+    try {
+      sut.getObjectMetadata("oicr.icgc", "data/object");
+      fail("Expected failure");
+    } catch (AmazonServiceException e) {
+      assertThat(e).isSameAs(notFound);
+    }
+
+    val timer = meterRegistry.get(S3Metrics.REQUESTS)
+        .tag("operation", "getObjectMetadata")
+        .tag("partition", "none")
+        .tag("outcome", "not_found")
+        .timer();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_server_error_outcome() {
+    val unavailable = new AmazonServiceException("Slow Down");
+    unavailable.setStatusCode(503);
+    when(s3Client.getObjectMetadata("oicr.icgc.3", "data/object")).thenThrow(unavailable).thenReturn(new ObjectMetadata());
+
+    try {
+      sut.getObjectMetadata("oicr.icgc.3", "data/object");
+      fail("Expected failure");
+    } catch (AmazonServiceException e) {
+      // Expected
+    }
+    sut.getObjectMetadata("oicr.icgc.3", "data/object");
+
+    assertThat(meterRegistry.get(S3Metrics.REQUESTS).tag("outcome", "server_error").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get(S3Metrics.REQUESTS).tag("outcome", "success").tag("partition", "3").timer().count())
+        .isEqualTo(1);
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
+
+import lombok.val;
+
+public class S3UploadServiceListUploadsTest {
+
+  private final AmazonS3 s3Client = mock(AmazonS3.class);
+  private final S3BucketNamingService bucketNamingService = new S3BucketNamingService();
+  private final S3UploadService sut = new S3UploadService();
+
+  @Before
+  public void setUp() {
+    bucketNamingService.setObjectBucketName("objects");
+    bucketNamingService.setStateBucketName("state");
+    bucketNamingService.setBucketPoolSize(2);
+    bucketNamingService.setBucketKeySize(2);
+    sut.setS3Client(s3Client);
+    sut.setBucketNamingService(bucketNamingService);
+    sut.setListThreads(2);
+  }
+
+  @Test
+  public void test_all_pages_of_all_buckets_are_listed() {
+    // Two pages in the first bucket, one in the second
+    when(s3Client.listMultipartUploads(any(ListMultipartUploadsRequest.class))).thenAnswer(invocation -> {
+      val request = invocation.<ListMultipartUploadsRequest> getArgument(0);
+      if (request.getBucketName().equals("objects.1")) {
+        return listing(false, "d");
+      }
+      return request.getKeyMarker() == null ? listing(true, "a", "b") : listing(false, "c");
+    });
+
+    val uploads = sut.listUploads();
+
+    assertThat(uploads.stream().map(MultipartUpload::getKey).collect(Collectors.toList()))
+        .containsExactly("a", "b", "c", "d");
+  }
+
+  private static MultipartUploadListing listing(boolean truncated, String... keys) {
+    val listing = new MultipartUploadListing();
+    for (val key : keys) {
+      val upload = new MultipartUpload();
+      upload.setKey(key);
+      upload.setUploadId(key + "-upload");
+      listing.getMultipartUploads().add(upload);
+    }
+    listing.setTruncated(truncated);
+    listing.setNextKeyMarker(keys[keys.length - 1]);
+    listing.setNextUploadIdMarker(keys[keys.length - 1] + "-upload");
+    return listing;
+  }
+
+}
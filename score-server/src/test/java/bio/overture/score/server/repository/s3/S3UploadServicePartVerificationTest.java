@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import bio.overture.score.server.exception.NotRetryableException;
+import bio.overture.score.server.repository.UploadPartDetail;
+import bio.overture.score.server.repository.UploadStateCleaner;
+import bio.overture.score.server.repository.UploadStateStore;
+import lombok.val;
+
+public class S3UploadServicePartVerificationTest {
+
+  private static final String OBJECT_ID = "45dfcd17-8e80-53fc-b400-cc8b583dae05";
+  private static final String UPLOAD_ID = "upload-1";
+
+  private final AmazonS3 s3Client = mock(AmazonS3.class);
+  private final UploadStateStore stateStore = mock(UploadStateStore.class);
+  private final S3BucketNamingService bucketNamingService = mock(S3BucketNamingService.class);
+  private final S3UploadService sut = new S3UploadService();
+
+  @Before
+  public void setUp() {
+    sut.setDataDir("data");
+    sut.setDeferPartVerification(true);
+    sut.setS3Client(s3Client);
+    sut.setStateStore(stateStore);
+    sut.setBucketNamingService(bucketNamingService);
+    val stateCleaner = new UploadStateCleaner();
+    stateCleaner.setAsync(false);
+    stateCleaner.setStateStore(stateStore);
+    sut.setStateCleaner(stateCleaner);
+    val locationCache = new S3ObjectLocationCache();
+    locationCache.init();
+    sut.setLocationCache(locationCache);
+    when(bucketNamingService.getObjectBucketName(OBJECT_ID)).thenReturn("objects");
+    when(bucketNamingService.getStateBucketName(OBJECT_ID)).thenReturn("state");
+
+    val spec = new ObjectSpecification();
+    spec.setObjectId(OBJECT_ID);
+    spec.setParts(ImmutableList.of(part(1, 10), part(2, 5)));
+    when(stateStore.read(OBJECT_ID, UPLOAD_ID)).thenReturn(spec);
+    when(stateStore.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID)).thenReturn(details("aaa", "bbb"));
+  }
+
+  @Test
+  public void test_parts_are_not_listed_per_part() {
+    sut.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 1, "aaa", "aaa");
+
+    verify(stateStore).finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 1, "aaa", "aaa");
+    verify(s3Client, never()).listParts(any());
+  }
+
+  @Test
+  public void test_finalize_verifies_all_pages() {
+    when(s3Client.listParts(any(ListPartsRequest.class)))
+        .thenReturn(listing(true, summary(1, 10, "aaa")))
+        .thenReturn(listing(false, summary(2, 5, "bbb")));
+
+    sut.finalizeUpload(OBJECT_ID, UPLOAD_ID);
+
+    verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    verify(s3Client).putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class));
+    verify(stateStore).delete(OBJECT_ID, UPLOAD_ID);
+  }
+
+  @Test
+  public void test_mismatched_parts_fail_finalize() {
+    when(s3Client.listParts(any(ListPartsRequest.class)))
+        .thenReturn(listing(false, summary(1, 10, "aaa"), summary(2, 5, "ccc")));
+
+    val throwable = catchThrowable(() -> sut.finalizeUpload(OBJECT_ID, UPLOAD_ID));
+
+    assertThat(throwable).isInstanceOf(NotRetryableException.class).hasMessageContaining("[2]");
+    verify(stateStore).deletePart(OBJECT_ID, UPLOAD_ID, 2);
+    verify(stateStore, never()).deletePart(OBJECT_ID, UPLOAD_ID, 1);
+    verify(s3Client, never()).completeMultipartUpload(any());
+  }
+
+  @Test
+  public void test_incomplete_upload_is_not_verified() {
+    when(stateStore.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID))
+        .thenReturn(ImmutableMap.of(1, detail(1, "aaa")));
+
+    val throwable = catchThrowable(() -> sut.finalizeUpload(OBJECT_ID, UPLOAD_ID));
+
+    assertThat(throwable).isInstanceOf(NotRetryableException.class);
+    verify(s3Client, never()).listParts(any());
+  }
+
+  private static Part part(int partNumber, long partSize) {
+    return Part.builder().partNumber(partNumber).partSize(partSize).offset((partNumber - 1) * 10L).build();
+  }
+
+  private static Map<Integer, UploadPartDetail> details(String etag1, String etag2) {
+    return ImmutableMap.of(1, detail(1, etag1), 2, detail(2, etag2));
+  }
+
+  private static UploadPartDetail detail(int partNumber, String etag) {
+    return UploadPartDetail.builder().partNumber(partNumber).md5(etag).etag(new PartETag(partNumber, etag)).build();
+  }
+
+  private static PartSummary summary(int partNumber, long size, String etag) {
+    val summary = new PartSummary();
+    summary.setPartNumber(partNumber);
+    summary.setSize(size);
+    summary.setETag(etag);
+    return summary;
+  }
+
+  private static PartListing listing(boolean truncated, PartSummary... parts) {
+    val listing = new PartListing();
+    listing.setParts(ImmutableList.copyOf(parts));
+    listing.setTruncated(truncated);
+    listing.setNextPartNumberMarker(parts[parts.length - 1].getPartNumber());
+    return listing;
+  }
+
+}
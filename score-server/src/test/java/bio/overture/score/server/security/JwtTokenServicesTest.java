@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class JwtTokenServicesTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private KeyPair keyPair;
+  private ResourceServerTokenServices remote;
+  private SimpleMeterRegistry registry;
+  private JwtTokenServices sut;
+
+  @Before
+  @SneakyThrows
+  public void setUp() {
+    val generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    keyPair = generator.generateKeyPair();
+
+    remote = mock(ResourceServerTokenServices.class);
+    registry = new SimpleMeterRegistry();
+    val publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+    sut = new JwtTokenServices(JwtKeySource.fromPublicKey(publicKey), remote, new DefaultAccessTokenConverter(), 0,
+        100, null, null);
+    sut.bindTo(registry);
+  }
+
+  @Test
+  public void test_jwt_is_verified_locally() {
+    val token = sign(keyPair, ImmutableMap.of("alg", "RS256"), ImmutableMap.of(
+        "sub", "user-1", "scope", "test.download test.PROJ-CD.upload", "exp", now() + 60));
+
+    val authentication = sut.loadAuthentication(token);
+    assertThat(authentication.getOAuth2Request().getScope()).containsOnly("test.download", "test.PROJ-CD.upload");
+    assertThat(authentication.getName()).isEqualTo("user-1");
+    verifyZeroInteractions(remote);
+
+    // Second time from the cache
+    assertThat(sut.loadAuthentication(token)).isSameAs(authentication);
+    assertThat(registry.get("auth.token.verify").tag("type", "jwt").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_ego_scopes_are_read_from_context() {
+    val token = sign(keyPair, ImmutableMap.of("alg", "RS256", "typ", "JWT"), ImmutableMap.of(
+        "sub", "1234", "exp", now() + 60,
+        "context", ImmutableMap.of("scope", new String[] { "score.READ" }, "user", ImmutableMap.of("name", "jane"))));
+
+    val authentication = sut.loadAuthentication(token);
+    assertThat(authentication.getOAuth2Request().getScope()).containsOnly("score.READ");
+    assertThat(authentication.getName()).isEqualTo("jane");
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_invalid_jwts_are_rejected() {
+    val claims = ImmutableMap.<String, Object> of("sub", "user-1", "scope", "test.download", "exp", now() + 60);
+    val otherKey = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+    assertThatThrownBy(() -> sut.loadAuthentication(sign(otherKey, ImmutableMap.of("alg", "RS256"), claims)))
+        .isInstanceOf(InvalidTokenException.class).hasMessageContaining("signature");
+    assertThatThrownBy(() -> sut.loadAuthentication(sign(keyPair, ImmutableMap.of("alg", "HS256"), claims)))
+        .isInstanceOf(InvalidTokenException.class).hasMessageContaining("algorithm");
+    assertThatThrownBy(() -> sut.loadAuthentication(sign(keyPair, ImmutableMap.of("alg", "RS256"),
+        ImmutableMap.of("sub", "user-1", "exp", now() - 60)))).isInstanceOf(InvalidTokenException.class)
+        .hasMessageContaining("expired");
+    assertThatThrownBy(() -> sut.loadAuthentication(sign(keyPair, ImmutableMap.of("alg", "RS256"),
+        ImmutableMap.of("sub", "user-1")))).isInstanceOf(InvalidTokenException.class)
+        .hasMessageContaining("expiry");
+    verifyZeroInteractions(remote);
+  }
+
+  @Test
+  public void test_issuer_and_audience_are_checked() {
+    val publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+    sut = new JwtTokenServices(JwtKeySource.fromPublicKey(publicKey), remote, new DefaultAccessTokenConverter(), 0,
+        100, "https://ego.example.org", "score");
+    val header = ImmutableMap.of("alg", "RS256");
+
+    assertThat(sut.loadAuthentication(sign(keyPair, header, ImmutableMap.of("sub", "user-1", "exp", now() + 60,
+        "iss", "https://ego.example.org", "aud", new String[] { "song", "score" })))).isNotNull();
+    assertThatThrownBy(() -> sut.loadAuthentication(sign(keyPair, header, ImmutableMap.of("sub", "user-1",
+        "exp", now() + 60, "iss", "https://other.example.org", "aud", "score"))))
+        .isInstanceOf(InvalidTokenException.class).hasMessageContaining("issuer");
+    assertThatThrownBy(() -> sut.loadAuthentication(sign(keyPair, header, ImmutableMap.of("sub", "user-1",
+        "exp", now() + 60, "iss", "https://ego.example.org", "aud", "song"))))
+        .isInstanceOf(InvalidTokenException.class).hasMessageContaining("audience");
+  }
+
+  @Test
+  public void test_opaque_tokens_are_introspected_remotely() {
+    val authentication = mock(OAuth2Authentication.class);
+    when(remote.loadAuthentication("e6e1fa1c-24c9-4ba4-a7b4-31c6ecf1ec2e")).thenReturn(authentication);
+
+    assertThat(sut.loadAuthentication("e6e1fa1c-24c9-4ba4-a7b4-31c6ecf1ec2e")).isSameAs(authentication);
+    verify(remote, times(1)).loadAuthentication("e6e1fa1c-24c9-4ba4-a7b4-31c6ecf1ec2e");
+    assertThat(registry.get("auth.token.verify").tag("type", "remote").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  @SneakyThrows
+  public void test_jwks_keys() {
+    val key = (java.security.interfaces.RSAPublicKey) keyPair.getPublic();
+    val encoder = Base64.getUrlEncoder().withoutPadding();
+    val jwks = OBJECT_MAPPER.writeValueAsString(ImmutableMap.of("keys", new Object[] {
+        ImmutableMap.of("kty", "EC", "kid", "ec-1"),
+        ImmutableMap.of("kty", "RSA", "kid", "rsa-1", "use", "sig",
+            "n", encoder.encodeToString(key.getModulus().toByteArray()),
+            "e", encoder.encodeToString(key.getPublicExponent().toByteArray())) }));
+
+    val keys = JwtKeySource.parseJwks(jwks);
+    assertThat(keys).containsOnlyKeys("rsa-1");
+    assertThat(keys.get("rsa-1")).isEqualTo(keyPair.getPublic());
+  }
+
+  @SneakyThrows
+  private static String sign(KeyPair keyPair, Map<String, ?> header, Map<String, ?> claims) {
+    val encoder = Base64.getUrlEncoder().withoutPadding();
+    val content = encoder.encodeToString(OBJECT_MAPPER.writeValueAsBytes(header)) + "."
+        + encoder.encodeToString(OBJECT_MAPPER.writeValueAsBytes(claims));
+
+    val signature = Signature.getInstance("SHA256withRSA");
+    signature.initSign(keyPair.getPrivate());
+    signature.update(content.getBytes(UTF_8));
+    return content + "." + encoder.encodeToString(signature.sign());
+  }
+
+  private static long now() {
+    return System.currentTimeMillis() / 1000;
+  }
+
+}
@@ -23,6 +23,8 @@ import bio.overture.score.server.metadata.MetadataService;
 import lombok.val;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -31,6 +33,7 @@ import java.util.HashSet;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class UploadScopeAuthorizationStrategyTest {
@@ -52,6 +55,16 @@ public class UploadScopeAuthorizationStrategyTest {
     sut = new UploadScopeAuthorizationStrategy(TEST_SCOPE, meta, true);
   }
 
+  @Test
+  public void test_all_projects_requires_blanket_scope() {
+    val meta = mock(MetadataService.class);
+    sut = new UploadScopeAuthorizationStrategy(TEST_SCOPE, meta, true);
+
+    assertTrue(sut.authorizeAllProjects(authentication(TEST_SCOPE, "test.download")));
+    assertFalse(sut.authorizeAllProjects(authentication("test." + PROJECT1 + ".upload")));
+    verifyZeroInteractions(meta);
+  }
+
   @Test
   public void test_extract_scopes_handle_multiple() {
     val scopeStrs =
@@ -161,4 +174,10 @@ public class UploadScopeAuthorizationStrategyTest {
       exception.getMessage());
   }
 
+  private static OAuth2Authentication authentication(String... scopes) {
+    val request = new OAuth2Request(null, "client", null, true, new HashSet<>(Arrays.asList(scopes)), null, null, null,
+        null);
+    return new OAuth2Authentication(request, null);
+  }
+
 }
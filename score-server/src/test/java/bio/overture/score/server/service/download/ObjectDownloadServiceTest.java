@@ -25,9 +25,13 @@ import bio.overture.score.server.metadata.MetadataEntity;
 import bio.overture.score.server.metadata.MetadataService;
 import bio.overture.score.server.repository.s3.S3BucketNamingService;
 import bio.overture.score.server.repository.s3.S3DownloadService;
+import bio.overture.score.server.repository.s3.S3ObjectLocationCache;
 import bio.overture.score.server.repository.s3.S3URLGenerator;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Splitter;
 import lombok.val;
 import org.junit.Before;
@@ -36,10 +40,12 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
 import java.net.URL;
 import java.util.regex.Pattern;
 
@@ -48,6 +54,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -73,6 +81,8 @@ public class ObjectDownloadServiceTest extends S3DownloadService {
 
   S3BucketNamingService namingService = new S3BucketNamingService();
 
+  S3ObjectLocationCache locationCache = new S3ObjectLocationCache();
+
   MetadataService mockService;
 
   MetadataEntity metadataEntity;
@@ -85,6 +95,9 @@ public class ObjectDownloadServiceTest extends S3DownloadService {
     namingService.setBucketKeySize(3);
     service.setBucketNamingService(namingService);
     service.setS3Client(s3Client);
+    locationCache.setCacheManager(new ConcurrentMapCacheManager());
+    locationCache.init();
+    service.setLocationCache(locationCache);
 
     ReflectionTestUtils.setField(service, "dataDir", dataDir);
     ReflectionTestUtils.setField(service, "expiration", 7);
@@ -118,6 +131,31 @@ public class ObjectDownloadServiceTest extends S3DownloadService {
     service.download(objectId, 0, 1000, false, false);
   }
 
+  @Test
+  public void relocated_object_is_read_from_master_bucket_after_first_lookup() throws Exception {
+    val notFound = new AmazonServiceException("Didn't find Object Id in bucket");
+    notFound.setStatusCode(HttpStatus.NOT_FOUND.value());
+    val os = ObjectDownloadServiceStubFactory.createObjectSpecification(objectId,
+        ObjectKeys.getObjectKey(dataDir, objectId), 104857600);
+    os.setParts(ObjectDownloadServiceStubFactory.createParts(5));
+    val json = new ObjectMapper().writeValueAsBytes(os);
+
+    when(s3Client.getObject(Mockito.any(GetObjectRequest.class))).thenAnswer(invocation -> {
+      if (!invocation.<GetObjectRequest> getArgument(0).getBucketName().equals(stateBucketName)) {
+        throw notFound;
+      }
+      val obj = new S3Object();
+      obj.setObjectContent(new ByteArrayInputStream(json));
+      return obj;
+    });
+
+    assertTrue(service.getSpecification(objectId, false).isRelocated());
+    assertTrue(service.getSpecification(objectId, false).isRelocated());
+
+    // Only the first lookup tries the partition bucket
+    verify(s3Client, times(3)).getObject(Mockito.any(GetObjectRequest.class));
+  }
+
   @Test
   public void verify_fallback_in_download_presigned_urls() throws Exception {
     // stubbing appears before the actual execution
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import lombok.val;
+
+public class HttpRangeTest {
+
+  @Test
+  public void test_closed_range() {
+    assertThat(HttpRange.parse("bytes=10-19", 100)).isEqualTo(new HttpRange(10, 10));
+    assertThat(HttpRange.parse("bytes=90-200", 100)).isEqualTo(new HttpRange(90, 10));
+    assertThat(HttpRange.parse("bytes=10-19", 100).toContentRange(100)).isEqualTo("bytes 10-19/100");
+  }
+
+  @Test
+  public void test_open_and_suffix_ranges() {
+    assertThat(HttpRange.parse("bytes=40-", 100)).isEqualTo(new HttpRange(40, 60));
+    assertThat(HttpRange.parse("bytes=-30", 100)).isEqualTo(new HttpRange(70, 30));
+    assertThat(HttpRange.parse("bytes=-300", 100)).isEqualTo(new HttpRange(0, 100));
+  }
+
+  @Test
+  public void test_unsatisfiable_range() {
+    val range = HttpRange.parse("bytes=100-", 100);
+
+    assertThat(range.isSatisfiable()).isFalse();
+    assertThat(range.toContentRange(100)).isEqualTo("bytes */100");
+    assertThat(HttpRange.parse("bytes=-0", 100).isSatisfiable()).isFalse();
+  }
+
+  @Test
+  public void test_ignored_headers() {
+    assertThat(HttpRange.parse(null, 100)).isNull();
+    assertThat(HttpRange.parse("items=0-10", 100)).isNull();
+    assertThat(HttpRange.parse("bytes=0-10,20-30", 100)).isNull();
+    assertThat(HttpRange.parse("bytes=20-10", 100)).isNull();
+    assertThat(HttpRange.parse("bytes=a-b", 100)).isNull();
+  }
+
+}